@@ -285,6 +285,7 @@
       <jms-queue name="hawkular/metrics/gauges/new" entries="java:/queue/hawkular/metrics/gauges/new"/>
       <jms-queue name="hawkular/metrics/counters/new" entries="java:/queue/hawkular/metrics/counters/new"/>
       <jms-queue name="hawkular/metrics/availability/new" entries="java:/queue/hawkular/metrics/availability/new"/>
+      <jms-topic name="HawkularPingerHeartbeat" entries="java:/topic/HawkularPingerHeartbeat"/>
 
       <xsl:comment> Required by Hawkular BTM </xsl:comment>
       <jms-topic name="BusinessTransactions" entries="java:/BusinessTransactions"/>
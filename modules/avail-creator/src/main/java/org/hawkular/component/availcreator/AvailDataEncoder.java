@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.availcreator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Streams an {@link AvailDataMessage} to JSON as {@link MetricReceiver} derives the availabilities from the incoming
+ * status codes, so that neither the {@link AvailDataMessage.SingleAvail}s nor the substrings of the metric names
+ * holding the ids need to be allocated. The result is the same as the one of {@link AvailDataMessage#toJSON()}, e.g.
+ *
+ * <pre>
+ * {"availData":{"data":[{"tenantId":"t1","id":"r1","timestamp":1462288000000,"avail":"UP"}]}}
+ * </pre>
+ *
+ * Not thread safe. A {@link StringWriter} can serve one encoder after another if it is {@link #reset(StringWriter)}
+ * in between.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class AvailDataEncoder {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * @param buffer the {@link StringWriter} used by a finished {@link AvailDataEncoder}
+     * @return {@code buffer} emptied but with its capacity kept
+     */
+    public static StringWriter reset(StringWriter buffer) {
+        buffer.getBuffer().setLength(0);
+        return buffer;
+    }
+
+    private final StringWriter buffer;
+
+    private final JsonGenerator generator;
+
+    /** The id of the current availability, cut out of the metric name */
+    private char[] id = new char[64];
+
+    private int size;
+
+    /**
+     * @param buffer an empty {@link StringWriter} to write to
+     */
+    public AvailDataEncoder(StringWriter buffer) {
+        super();
+        this.buffer = buffer;
+        try {
+            this.generator = jsonFactory.createGenerator(buffer);
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("availData");
+            generator.writeArrayFieldStart("data");
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write to a StringWriter", e);
+        }
+    }
+
+    /**
+     * Writes an availability whose id is the first {@code idLength} characters of {@code source}, typically a metric
+     * name such as {@code <id>.status.code}.
+     *
+     * @param tenantId the tenant the availability belongs to
+     * @param source the string whose beginning is the id
+     * @param idLength the number of characters of {@code source} to use as the id
+     * @param timestamp the timestamp of the availability
+     * @param avail {@code "UP"} or {@code "DOWN"}
+     */
+    public void add(String tenantId, String source, int idLength, long timestamp, String avail) {
+        if (idLength > id.length) {
+            id = new char[Math.max(idLength, id.length * 2)];
+        }
+        source.getChars(0, idLength, id, 0);
+        try {
+            generator.writeStartObject();
+            generator.writeStringField("tenantId", tenantId);
+            generator.writeFieldName("id");
+            generator.writeString(id, 0, idLength);
+            generator.writeNumberField("timestamp", timestamp);
+            generator.writeStringField("avail", avail);
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write to a StringWriter", e);
+        }
+        size++;
+    }
+
+    /**
+     * @param avail the availability to write
+     */
+    public void add(AvailDataMessage.SingleAvail avail) {
+        String availId = avail.getId();
+        add(avail.getTenantId(), availId, availId.length(), avail.getTimestamp(), avail.getAvail());
+    }
+
+    /**
+     * @return how many availabilities were written so far
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the complete JSON document; this encoder cannot be used anymore afterwards
+     */
+    public String finish() {
+        try {
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write to a StringWriter", e);
+        }
+        return buffer.toString();
+    }
+
+}
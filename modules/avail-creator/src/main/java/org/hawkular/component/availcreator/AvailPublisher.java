@@ -18,6 +18,7 @@ package org.hawkular.component.availcreator;
 
 import static javax.ejb.TransactionAttributeType.NOT_SUPPORTED;
 
+import java.io.StringWriter;
 import java.util.List;
 
 import javax.annotation.PostConstruct;
@@ -31,7 +32,6 @@ import javax.jms.JMSContext;
 import javax.jms.JMSProducer;
 import javax.jms.Queue;
 
-import org.hawkular.component.availcreator.AvailDataMessage.AvailData;
 import org.hawkular.component.availcreator.AvailDataMessage.SingleAvail;
 
 /**
@@ -60,13 +60,26 @@ public class AvailPublisher {
 
     @Asynchronous
     public void publish(List<SingleAvail> availabilities) {
+        AvailDataEncoder data = new AvailDataEncoder(new StringWriter(availabilities.size() * 96));
+        for (SingleAvail avail : availabilities) {
+            data.add(avail);
+        }
+        send(data.finish());
+    }
 
-        AvailData availData = new AvailData();
-        availData.setData(availabilities);
-        AvailDataMessage availDataMessage = new AvailDataMessage(availData);
+    /**
+     * Sends the given JSON form of an {@link AvailDataMessage} as produced by {@link AvailDataEncoder#finish()}.
+     *
+     * @param availDataJson the message to send
+     */
+    @Asynchronous
+    public void publish(String availDataJson) {
+        send(availDataJson);
+    }
 
+    private void send(String availDataJson) {
         try {
-            producer.send(availabilityQueue, availDataMessage.toJSON());
+            producer.send(availabilityQueue, availDataJson);
         } catch (Exception e) {
             Log.LOG.wAvailPostStatus(e.getMessage());
         }
@@ -18,9 +18,8 @@ package org.hawkular.component.availcreator;
 
 import static javax.ejb.TransactionAttributeType.NOT_SUPPORTED;
 
-import java.util.ArrayList;
+import java.io.StringWriter;
 import java.util.Iterator;
-import java.util.List;
 
 import javax.ejb.ActivationConfigProperty;
 import javax.ejb.EJB;
@@ -30,8 +29,6 @@ import javax.jms.Message;
 import javax.jms.MessageListener;
 import javax.jms.TextMessage;
 
-import org.hawkular.component.availcreator.AvailDataMessage.SingleAvail;
-
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -61,6 +58,12 @@ public class MetricReceiver implements MessageListener {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    /**
+     * Reused by the subsequent messages to encode the availabilities in. A message driven bean instance handles only
+     * one message at a time, so there is no need to synchronize.
+     */
+    private final StringWriter buffer = new StringWriter(1024);
+
     @EJB
     AvailPublisher availPublisher;
 
@@ -75,7 +78,7 @@ public class MetricReceiver implements MessageListener {
             // Get <rid>.status.code  metrics
             String tenant = metricData.get("tenantId").textValue();
             JsonNode data = metricData.get("data");
-            List<SingleAvail> outer = new ArrayList<>();
+            AvailDataEncoder outer = new AvailDataEncoder(AvailDataEncoder.reset(buffer));
 
             Iterator<JsonNode> items = data.elements();
             while (items.hasNext()) {
@@ -85,17 +88,16 @@ public class MetricReceiver implements MessageListener {
                 if (source.endsWith(".status.code")) {
                     int code = item.get("value").intValue();
 
-                    String id = source.substring(0, source.indexOf("."));
+                    int idLength = source.indexOf('.');
                     long timestamp = item.get("timestamp").longValue();
 
                     String avail = computeAvail(code);
 
-                    SingleAvail ar = new SingleAvail(tenant, id, timestamp, avail);
-                    outer.add(ar);
+                    outer.add(tenant, source, idLength, timestamp, avail);
                 }
             }
-            if (!outer.isEmpty()) {
-                availPublisher.publish(outer);
+            if (outer.size() > 0) {
+                availPublisher.publish(outer.finish());
             }
 
         } catch (Exception e) {
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.availcreator;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hawkular.component.availcreator.AvailDataMessage.AvailData;
+import org.hawkular.component.availcreator.AvailDataMessage.SingleAvail;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that {@link AvailDataEncoder} produces exactly what {@link AvailDataMessage#toJSON()} does.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class AvailDataEncoderTest {
+
+    private static String toJson(List<SingleAvail> data) {
+        AvailData availData = new AvailData();
+        availData.setData(data);
+        return new AvailDataMessage(availData).toJSON();
+    }
+
+    @Test
+    public void testIdPrefix() {
+        /* ids needing escaping, a non-ASCII one and one longer than the initial scratch buffer */
+        List<String> ids = Arrays.asList("r1", "\"quoted\"", "back\\slash", "tab\tand\u0001control", "ünïcödé",
+                new String(new char[300]).replace('\0', 'y'));
+
+        List<SingleAvail> expected = new ArrayList<>();
+        AvailDataEncoder encoder = new AvailDataEncoder(new StringWriter());
+        long timestamp = 1462288000000L;
+        for (String id : ids) {
+            String tenantId = "tenant-" + id.length();
+            String avail = timestamp % 2 == 0 ? "UP" : "DOWN";
+            expected.add(new SingleAvail(tenantId, id, timestamp, avail));
+            String metricName = id + ".status.code";
+            encoder.add(tenantId, metricName, id.length(), timestamp, avail);
+            timestamp++;
+        }
+        Assert.assertEquals(ids.size(), encoder.size());
+        Assert.assertEquals(toJson(expected), encoder.finish());
+    }
+
+    @Test
+    public void testSingleAvailAndReuse() {
+        StringWriter buffer = new StringWriter();
+        SingleAvail avail = new SingleAvail("t\"1\"", "r\n1", 1000L, "DOWN");
+        AvailDataEncoder encoder = new AvailDataEncoder(buffer);
+        encoder.add(avail);
+        Assert.assertEquals(toJson(Arrays.asList(avail)), encoder.finish());
+
+        encoder = new AvailDataEncoder(AvailDataEncoder.reset(buffer));
+        Assert.assertEquals(0, encoder.size());
+        Assert.assertEquals(toJson(new ArrayList<>()), encoder.finish());
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.component.pinger.MetricDataMessage.MetricData;
+import org.hawkular.component.pinger.MetricDataMessage.SingleMetric;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the encoding of a batch of gauges through {@link MetricDataMessage#toJSON()} with the streaming
+ * {@link MetricDataEncoder} used by {@link MetricPublisher}. Both variants start from the same resourceIds and
+ * suffixes, so the cost of composing the gauge names is included. Run with {@code -prof gc} to see the allocation
+ * rate per operation:
+ *
+ * <pre>
+ * mvn -Pbenchmarks -pl modules/pinger,modules/pinger-benchmarks package -DskipTests
+ * java -jar modules/pinger-benchmarks/target/benchmarks.jar MetricDataEncoderBenchmark -prof gc
+ * </pre>
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricDataEncoderBenchmark {
+
+    /** The gauges {@link MetricPublisher} sends per {@link PingStatus} */
+    private static final String[] SUFFIXES = { ".status.duration", ".status.code", ".status.duration.dns",
+            ".status.duration.connect", ".status.duration.tls", ".status.duration.ttfb", ".status.duration.body",
+            ".status.size" };
+
+    /** The number of {@link PingStatus}es per batch */
+    @Param({ "1", "16", "128" })
+    public int statuses;
+
+    private String[] resourceIds;
+
+    private final StringWriter buffer = new StringWriter();
+
+    @Setup
+    public void setUp() {
+        resourceIds = new String[statuses];
+        for (int i = 0; i < statuses; i++) {
+            resourceIds[i] = "b8a4fc48-5cfb-4d5e-9c87-2a0b3f4a" + (1000 + i);
+        }
+    }
+
+    @Benchmark
+    public String databind() {
+        List<SingleMetric> data = new ArrayList<>(statuses * SUFFIXES.length);
+        long timestamp = 1431620591000L;
+        for (String resourceId : resourceIds) {
+            for (int i = 0; i < SUFFIXES.length; i++) {
+                data.add(new SingleMetric(resourceId + SUFFIXES[i], timestamp, 200 + i));
+            }
+        }
+        MetricData metricData = new MetricData();
+        metricData.setTenantId("28026b36-8fe4-4332-84c8-524e173a68bf");
+        metricData.setData(data);
+        return new MetricDataMessage(metricData).toJSON();
+    }
+
+    @Benchmark
+    public String streaming() {
+        MetricDataEncoder data = new MetricDataEncoder("28026b36-8fe4-4332-84c8-524e173a68bf",
+                MetricDataEncoder.reset(buffer));
+        long timestamp = 1431620591000L;
+        for (String resourceId : resourceIds) {
+            for (int i = 0; i < SUFFIXES.length; i++) {
+                data.add(resourceId, SUFFIXES[i], timestamp, 200 + i);
+            }
+        }
+        return data.finish();
+    }
+
+}
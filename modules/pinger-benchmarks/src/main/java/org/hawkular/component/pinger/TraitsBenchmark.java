@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of {@link Traits#collect(HttpResponse, long, java.net.InetAddress)} on header sets taken
+ * from real responses. Run with {@code -prof gc} to see the allocation rate per operation:
+ *
+ * <pre>
+ * mvn -Pbenchmarks -pl modules/pinger,modules/pinger-benchmarks package -DskipTests
+ * java -jar modules/pinger-benchmarks/target/benchmarks.jar TraitsBenchmark -prof gc
+ * </pre>
+ *
+ * {@link #iterateHeaders(Blackhole)} is the baseline showing the cost of merely walking the headers.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraitsBenchmark {
+
+    /** Header sets of some well known sites */
+    private static final String[][] HEADER_SETS = {
+            /* gws: google.cz, a single Server header among many others */
+            { "Date", "Thu, 14 May 2015 16:23:11 GMT", "Expires", "-1", "Cache-Control", "private, max-age=0",
+                    "Content-Type", "text/html; charset=ISO-8859-2", "Set-Cookie", "PREF=ID=1cf542d95de677ce",
+                    "Set-Cookie", "NID=67=UwDo4W6rmaylwdjaMgnLW6N_Mtd5X4lFth36C", "Server", "gws",
+                    "X-XSS-Protection", "1; mode=block", "X-Frame-Options", "SAMEORIGIN", "Alternate-Protocol",
+                    "80:quic,p=1", "Accept-Ranges", "none", "Vary", "Accept-Encoding", "Transfer-Encoding",
+                    "chunked" },
+            /* iis: an ASP.NET site behind ARR */
+            { "Cache-Control", "private", "Content-Type", "text/html; charset=utf-8", "Server",
+                    "Microsoft-IIS/8.5", "X-AspNet-Version", "4.0.30319", "X-Powered-By", "ASP.NET",
+                    "X-Powered-By", "ARR/2.5", "X-Powered-By", "ASP.NET", "Date", "Thu, 14 May 2015 16:23:11 GMT",
+                    "Content-Length", "104523" },
+            /* php: Apache with PHP */
+            { "Date", "Thu, 14 May 2015 16:23:11 GMT", "Server", "Apache/2.4.7 (Ubuntu)", "X-Powered-By",
+                    "PHP/5.5.9-1ubuntu4.9", "Expires", "Thu, 19 Nov 1981 08:52:00 GMT", "Vary", "Accept-Encoding",
+                    "Content-Type", "text/html; charset=UTF-8", "Keep-Alive", "timeout=5, max=100",
+                    "Connection", "Keep-Alive" },
+            /* none: a CDN that reveals nothing */
+            { "Content-Type", "text/html", "Content-Length", "5120", "Connection", "keep-alive", "Date",
+                    "Thu, 14 May 2015 16:23:11 GMT", "Cache-Control", "max-age=600", "Age", "42", "Via",
+                    "1.1 varnish", "X-Cache", "HIT" } };
+
+    @Param({ "0", "1", "2", "3" })
+    public int headerSet;
+
+    private HttpResponse response;
+
+    @Setup
+    public void setUp() {
+        response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        String[] headers = HEADER_SETS[headerSet];
+        for (int i = 0; i < headers.length; i += 2) {
+            response.addHeader(headers[i], headers[i + 1]);
+        }
+    }
+
+    @Benchmark
+    public Traits collect() {
+        return Traits.collect(response, 0, null);
+    }
+
+    @Benchmark
+    public void iterateHeaders(Blackhole blackhole) {
+        HeaderIterator headers = response.headerIterator();
+        while (headers.hasNext()) {
+            Header header = headers.nextHeader();
+            blackhole.consume(header.getName());
+        }
+    }
+
+}
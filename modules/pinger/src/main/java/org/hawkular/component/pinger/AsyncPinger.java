@@ -0,0 +1,282 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+
+import org.apache.http.Header;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.AsyncByteConsumer;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.hawkular.component.pinger.PingTimings.Recorder;
+
+/**
+ * A non-blocking alternative to {@link Pinger} based on Apache HttpAsyncClient. The pings do not occupy any thread
+ * while waiting for the remote side, all of them are served by a few I/O dispatcher threads whose number is given by
+ * {@link PingerConfiguration#getIoThreads()}. The outcomes of the pings are handed over to the given
+ * {@link PingCycle}. The results are handed over on the I/O dispatcher threads that must never wait, so that
+ * {@link PingCycle#offer(PingStatus)} is used rather than the blocking {@link PingCycle#complete(PingStatus)}: should
+ * the {@link PingCycle} buffer be full, the result is dropped and its destination reported as a timeout.
+ * <p>
+ * The name resolution, connect and TLS handshake happen inside the I/O reactor where they cannot be timed
+ * individually, so that the {@link PingTimings} reported by this engine have only the TTFB and body phases, the former
+ * including the connection setup.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class AsyncPinger implements Closeable {
+
+    /**
+     * Thrown by {@link DiscardingResponseConsumer} to stop reading a response body longer than
+     * {@link BodyPolicy#getLimit()}. Stopping the exchange this way closes the connection, as it cannot be reused
+     * with a partially read body.
+     */
+    private static class BodyLimitReachedException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final HttpResponse response;
+        private final long bytesRead;
+
+        public BodyLimitReachedException(HttpResponse response, long bytesRead) {
+            super("Body limit reached after " + bytesRead + " bytes");
+            this.response = response;
+            this.bytesRead = bytesRead;
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            /* used for flow control only */
+            return this;
+        }
+    }
+
+    /**
+     * A response consumer that reads and discards the response body as far as the given {@link BodyPolicy} allows,
+     * so that no memory is wasted for buffering it. A body that is not longer than the limit is read whole, so that
+     * the connection can be reused. With {@link BodyPolicy#HEADERS}, the default {@code GET} is replaced by
+     * {@code HEAD} (see {@link PingDestination#getRequestMethod()}) so that there is no body to discard at all.
+     */
+    private static class DiscardingResponseConsumer extends AsyncByteConsumer<HttpResponse> {
+        private final long limit;
+        private long effectiveLimit;
+        private HttpResponse response;
+        private long bytesRead;
+
+        public DiscardingResponseConsumer(BodyPolicy policy) {
+            super();
+            this.limit = policy.getLimit();
+        }
+
+        @Override
+        protected void onResponseReceived(HttpResponse response) throws HttpException, IOException {
+            this.response = response;
+            this.effectiveLimit = limit;
+            Header contentLengthHeader = response.getFirstHeader(HTTP.CONTENT_LEN);
+            if (contentLengthHeader != null) {
+                try {
+                    if (Long.parseLong(contentLengthHeader.getValue().trim()) <= limit) {
+                        effectiveLimit = Long.MAX_VALUE;
+                    }
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+
+        @Override
+        protected void onByteReceived(ByteBuffer buf, IOControl ioctrl) throws IOException {
+            /* discard */
+            bytesRead += buf.remaining();
+            if (bytesRead > effectiveLimit) {
+                throw new BodyLimitReachedException(response, bytesRead);
+            }
+        }
+
+        @Override
+        protected HttpResponse buildResult(HttpContext context) throws Exception {
+            return response;
+        }
+
+        @Override
+        protected void releaseResources() {
+            super.releaseResources();
+            this.response = null;
+        }
+    }
+
+    private final PoolingNHttpClientConnectionManager connectionManager;
+
+    private final CloseableHttpAsyncClient client;
+
+    /** See {@link PingerConfiguration#getPoolIdleTimeoutSeconds()} */
+    private final int idleTimeoutSeconds;
+
+    /**
+     * Creates and starts a new {@link AsyncPinger} configured by {@link PingerConfiguration#getInstance()}.
+     *
+     * @throws IOReactorException if the I/O reactor could not be created
+     */
+    public AsyncPinger() throws IOReactorException {
+        PingerConfiguration config = PingerConfiguration.getInstance();
+
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom().setIoThreadCount(config.getIoThreads()).build();
+        this.idleTimeoutSeconds = config.getPoolIdleTimeoutSeconds();
+        this.connectionManager = new PoolingNHttpClientConnectionManager(
+                new DefaultConnectingIOReactor(ioReactorConfig), null,
+                RegistryBuilder.<SchemeIOSessionStrategy> create()
+                        .register("http", NoopIOSessionStrategy.INSTANCE)
+                        .register("https", createSslStrategy())
+                        .build(),
+                null, CachingDnsResolver.getInstance(), config.getPoolTtlSeconds(), TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(config.getPoolMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(config.getPoolMaxPerRoute());
+
+        this.client = HttpAsyncClients.custom().setConnectionManager(connectionManager)
+                .addInterceptorLast(Pinger.RESPONSE_INTERCEPTOR).build();
+        this.client.start();
+    }
+
+    /**
+     * @return a new {@link SSLIOSessionStrategy} that accepts all certificates and counts the TLS handshakes in
+     *         {@link TlsSessions}
+     */
+    private static SSLIOSessionStrategy createSslStrategy() {
+        return new SSLIOSessionStrategy(Pinger.createSslContext(), NoopHostnameVerifier.INSTANCE) {
+            @Override
+            protected void verifySession(HttpHost host, IOSession iosession, SSLSession sslsession)
+                    throws SSLException {
+                super.verifySession(host, iosession, sslsession);
+                TlsSessions.getInstance().handshakeCompleted(sslsession);
+            }
+        };
+    }
+
+    /**
+     * Starts a test request against the given {@link PingDestination} and returns immediately. The outcome is handed
+     * over to the given {@link PingCycle} as soon as it is available. Cancelled requests are not reported to
+     * {@code cycle} at all - it is up to the owner of the {@code cycle} to report them as timeouts.
+     *
+     * @param destination the destination to ping
+     * @param cycle the {@link PingCycle} to report the outcome to
+     * @return a {@link Future} that can be used to cancel the request
+     */
+    public Future<HttpResponse> ping(final PingDestination destination, final PingCycle cycle) {
+        Log.LOG.debugf("About to ping %s", destination.getUrl());
+        HttpUriRequest request = RequestBuilder.create(destination.getRequestMethod()).setUri(destination.getUrl())
+                .setConfig(destination.getTimeouts().getRequestConfig()).build();
+        final HttpClientContext context = HttpClientContext.create();
+        final Recorder recorder = new Recorder();
+        context.setAttribute(Recorder.ATTRIBUTE, recorder);
+        final long start = System.currentTimeMillis();
+
+        final DiscardingResponseConsumer consumer = new DiscardingResponseConsumer(destination.getBodyPolicy());
+
+        return client.execute(HttpAsyncMethods.create(request), consumer, context,
+                new FutureCallback<HttpResponse>() {
+                    @Override
+                    public void completed(HttpResponse httpResponse) {
+                        success(httpResponse, consumer.bytesRead);
+                    }
+
+                    private void success(HttpResponse httpResponse, long bytesRead) {
+                        recorder.finished();
+                        long now = System.currentTimeMillis();
+                        InetAddress remoteAddress = (InetAddress) context
+                                .getAttribute(Pinger.REMOTE_ADDRESS_ATTRIBUTE);
+
+                        final int code = httpResponse.getStatusLine().getStatusCode();
+                        final int duration = (int) (now - start);
+                        Traits traits = Traits.collect(httpResponse, now, remoteAddress);
+                        Log.LOG.debugf("Got status code %d from %s", code, destination.getUrl());
+                        cycle.offer(new PingStatus(destination, code, now, duration, recorder.toTimings(false),
+                                bytesRead, traits));
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        if (e instanceof BodyLimitReachedException) {
+                            BodyLimitReachedException limitReached = (BodyLimitReachedException) e;
+                            success(limitReached.response, limitReached.bytesRead);
+                        } else {
+                            cycle.offer(Pinger.failure(destination, e, start));
+                        }
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        Log.LOG.debugf("Cancelled: %s", destination.getUrl());
+                    }
+                });
+    }
+
+    /**
+     * @return the current totals of leased, pending and available connections of the connection pool
+     */
+    public PoolStats getStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Closes the pooled connections whose time to live has passed and those that have been idle for longer than
+     * {@link PingerConfiguration#getPoolIdleTimeoutSeconds()}. HttpAsyncClient has no evictor thread of its own so this
+     * needs to be called periodically.
+     */
+    public void evictConnections() {
+        connectionManager.closeExpiredConnections();
+        if (idleTimeoutSeconds > 0) {
+            connectionManager.closeIdleConnections(idleTimeoutSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops the I/O dispatcher threads and closes all connections.
+     *
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+}
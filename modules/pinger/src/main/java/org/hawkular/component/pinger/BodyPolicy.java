@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.Locale;
+
+/**
+ * Says how much of the response body should be read when pinging a {@link PingDestination}. A connection can only be
+ * reused if the whole body has been read, so that reading less than the whole body trades connection reuse for
+ * bandwidth.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public final class BodyPolicy {
+
+    /**
+     * The ways of consuming the response body.
+     */
+    public enum Mode {
+        /**
+         * Do not read the body at all. A destination using the default {@code GET} method is pinged with
+         * {@code HEAD} instead so that the connection can be reused. With any other method, the body the server
+         * starts sending cannot be skipped, so the connection is shut down right after the headers have arrived.
+         */
+        HEADERS,
+        /** Read at most {@link BodyPolicy#getLimit()} bytes */
+        CAPPED,
+        /** Read the whole body */
+        FULL
+    }
+
+    /** Do not read the body at all */
+    public static final BodyPolicy HEADERS = new BodyPolicy(Mode.HEADERS, 0);
+
+    /** Read the whole body */
+    public static final BodyPolicy FULL = new BodyPolicy(Mode.FULL, Long.MAX_VALUE);
+
+    /** The policy configured through {@link PingerConfiguration} */
+    public static final BodyPolicy DEFAULT;
+    static {
+        PingerConfiguration config = PingerConfiguration.getInstance();
+        DEFAULT = of(config.getBodyPolicy(), config.getBodyLimit(), FULL);
+    }
+
+    /**
+     * @param limit the maximal number of bytes to read
+     * @return a new {@link Mode#CAPPED} {@link BodyPolicy}
+     */
+    public static BodyPolicy capped(long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must be >= 0, was " + limit);
+        }
+        return new BodyPolicy(Mode.CAPPED, limit);
+    }
+
+    /**
+     * Parses the given values as found in the resource properties or in the system properties.
+     *
+     * @param mode the name of a {@link Mode} in any case, can be {@code null}
+     * @param limit the limit for {@link Mode#CAPPED}, can be {@code null}
+     * @param defaultPolicy the policy to return if {@code mode} is {@code null} or invalid
+     * @return a {@link BodyPolicy}
+     */
+    static BodyPolicy of(Object mode, Object limit, BodyPolicy defaultPolicy) {
+        if (mode == null) {
+            return defaultPolicy;
+        }
+        try {
+            switch (Mode.valueOf(mode.toString().trim().toUpperCase(Locale.US))) {
+            case HEADERS:
+                return HEADERS;
+            case FULL:
+                return FULL;
+            case CAPPED:
+                int parsedLimit = PingDestination.parsePositiveInt(limit);
+                return capped(parsedLimit > 0 ? parsedLimit : PingerConfiguration.getInstance().getBodyLimit());
+            default:
+                throw new IllegalStateException("Unexpected " + Mode.class.getName() + " " + mode);
+            }
+        } catch (IllegalArgumentException e) {
+            Log.LOG.debugf("Ignoring an invalid body policy '%s'", mode);
+            return defaultPolicy;
+        }
+    }
+
+    private final Mode mode;
+    private final long limit;
+
+    private BodyPolicy(Mode mode, long limit) {
+        super();
+        this.mode = mode;
+        this.limit = limit;
+    }
+
+    /**
+     * @return the {@link Mode}
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the maximal number of bytes to read
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * mode.hashCode() + (int) (limit ^ (limit >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        BodyPolicy other = (BodyPolicy) obj;
+        return mode == other.mode && limit == other.limit;
+    }
+
+    @Override
+    public String toString() {
+        return mode == Mode.CAPPED ? mode + "(" + limit + ")" : mode.toString();
+    }
+
+}
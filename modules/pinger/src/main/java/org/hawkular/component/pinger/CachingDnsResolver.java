@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+
+/**
+ * A {@link DnsResolver} that caches the results of the host name resolution, both the successful and the failed ones.
+ * The successful results are kept for {@link PingerConfiguration#getDnsTtlSeconds()} and the failures for
+ * {@link PingerConfiguration#getDnsNegativeTtlSeconds()}, so that the thousands of URLs sharing a few domains do not
+ * pay the resolver latency on every ping and so that an unresolvable host does not hit the resolver on every ping
+ * either.
+ * <p>
+ * Concurrency assumptions: all methods can be called concurrently from any random thread. Two threads resolving the
+ * same uncached host at the same time may both hit the underlying resolver.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class CachingDnsResolver implements DnsResolver {
+
+    /** A result of a resolution together with its expiry time */
+    private static class Entry {
+        /** The resolved addresses or {@code null} if {@link #failure} is not {@code null} */
+        private final InetAddress[] addresses;
+
+        /** The exception thrown by the underlying resolver or {@code null} if the resolution succeeded */
+        private final UnknownHostException failure;
+
+        /** The value of {@code System.nanoTime()} after which this entry is not valid anymore */
+        private final long expiresNanos;
+
+        public Entry(InetAddress[] addresses, UnknownHostException failure, long expiresNanos) {
+            super();
+            this.addresses = addresses;
+            this.failure = failure;
+            this.expiresNanos = expiresNanos;
+        }
+
+        public boolean isExpired(long now) {
+            return now - expiresNanos >= 0;
+        }
+    }
+
+    /** The singleton */
+    private static final CachingDnsResolver INSTANCE;
+    static {
+        PingerConfiguration config = PingerConfiguration.getInstance();
+        INSTANCE = new CachingDnsResolver(SystemDefaultDnsResolver.INSTANCE, config.getDnsTtlSeconds(),
+                config.getDnsNegativeTtlSeconds());
+    }
+
+    /**
+     * @return the singleton instance
+     */
+    public static CachingDnsResolver getInstance() {
+        return INSTANCE;
+    }
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    private final DnsResolver delegate;
+
+    private final long ttlNanos;
+
+    private final long negativeTtlNanos;
+
+    /**
+     * @param delegate the resolver to ask on cache misses
+     * @param ttlSeconds how long to cache the successful resolutions
+     * @param negativeTtlSeconds how long to cache the failed resolutions
+     */
+    CachingDnsResolver(DnsResolver delegate, int ttlSeconds, int negativeTtlSeconds) {
+        super();
+        this.delegate = delegate;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+    }
+
+    /**
+     * @see org.apache.http.conn.DnsResolver#resolve(java.lang.String)
+     */
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        long now = System.nanoTime();
+        Entry entry = cache.get(host);
+        if (entry == null || entry.isExpired(now)) {
+            entry = lookup(host, now);
+        }
+        if (entry.failure != null) {
+            /* a new exception per call, because the cached one is shared by all callers and threads */
+            UnknownHostException e = new UnknownHostException(entry.failure.getMessage());
+            e.initCause(entry.failure);
+            throw e;
+        }
+        return entry.addresses.clone();
+    }
+
+    private Entry lookup(String host, long now) {
+        Entry entry;
+        try {
+            InetAddress[] addresses = delegate.resolve(host);
+            entry = new Entry(addresses, null, now + ttlNanos);
+        } catch (UnknownHostException e) {
+            entry = new Entry(null, e, now + negativeTtlNanos);
+        }
+        if (entry.failure == null ? ttlNanos > 0 : negativeTtlNanos > 0) {
+            cache.put(host, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Removes the expired entries from the cache so that the hosts that are not pinged anymore do not occupy memory.
+     */
+    public void purgeExpired() {
+        long now = System.nanoTime();
+        for (Iterator<Entry> it = cache.values().iterator(); it.hasNext();) {
+            if (it.next().isExpired(now)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the number of hosts in the cache including the expired ones
+     */
+    public int size() {
+        return cache.size();
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+
+import org.hawkular.component.pinger.PingStatus.FailureKind;
+
+/**
+ * Tracks the consecutive failures of each {@link PingDestination} and stops pinging the destinations that keep
+ * failing so that they do not occupy the connection pool and the pinging threads. After
+ * {@link PingerConfiguration#getBreakerThreshold()} consecutive failures the circuit of a destination opens: the
+ * destination is not pinged and a synthetic {@link FailureKind#CIRCUIT_OPEN} status is reported instead. Once the
+ * backoff elapses, the destination is probed with a plain TCP connect followed by a regular ping if the connect
+ * succeeds. A successful probe closes the circuit; a failed one doubles the backoff up to
+ * {@link PingerConfiguration#getBreakerMaxBackoffSeconds()}.
+ * <p>
+ * Only the failures caused by the destination count, i.e. neither the HTTP error responses nor
+ * {@link FailureKind#POOL_EXHAUSTED}.
+ * <p>
+ * Concurrency assumptions: all methods can be called concurrently from any random thread.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+@Singleton
+@Lock(LockType.READ)
+public class CircuitBreaker {
+
+    /** What to do with a destination that is due */
+    public enum Decision {
+        /** Ping as usual */
+        PING,
+        /** Probe with a TCP connect and ping if the connect succeeds */
+        PROBE,
+        /** Do not ping and report {@link FailureKind#CIRCUIT_OPEN} */
+        SKIP
+    }
+
+    /** The failure tracking of a single destination */
+    private static class Circuit {
+        private int failures;
+        private boolean open;
+        private boolean probing;
+        private long backoffMillis;
+        private long openUntil;
+    }
+
+    private final Map<PingDestination, Circuit> circuits = new ConcurrentHashMap<>();
+
+    /** See {@link PingerConfiguration#getBreakerThreshold()} */
+    private final int threshold;
+
+    /** See {@link PingerConfiguration#getBreakerInitialBackoffSeconds()} */
+    private final long initialBackoffMillis;
+
+    /** See {@link PingerConfiguration#getBreakerMaxBackoffSeconds()} */
+    private final long maxBackoffMillis;
+
+    public CircuitBreaker() {
+        this(PingerConfiguration.getInstance().getBreakerThreshold(),
+                TimeUnit.SECONDS.toMillis(PingerConfiguration.getInstance().getBreakerInitialBackoffSeconds()),
+                TimeUnit.SECONDS.toMillis(PingerConfiguration.getInstance().getBreakerMaxBackoffSeconds()));
+    }
+
+    /**
+     * @param threshold the number of consecutive failures that opens a circuit, {@code <= 0} to never open
+     * @param initialBackoffMillis the time to wait before the first probe
+     * @param maxBackoffMillis the upper bound for the time between two probes
+     */
+    CircuitBreaker(int threshold, long initialBackoffMillis, long maxBackoffMillis) {
+        super();
+        this.threshold = threshold;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * @param destination the destination that is due
+     * @param now the current value of {@code System.currentTimeMillis()}
+     * @return the {@link Decision} about the given {@link PingDestination}
+     */
+    public Decision decide(PingDestination destination, long now) {
+        Circuit circuit = circuits.get(destination);
+        if (circuit == null) {
+            return Decision.PING;
+        }
+        synchronized (circuit) {
+            if (!circuit.open) {
+                return Decision.PING;
+            } else if (!circuit.probing && now >= circuit.openUntil) {
+                circuit.probing = true;
+                return Decision.PROBE;
+            } else {
+                return Decision.SKIP;
+            }
+        }
+    }
+
+    /**
+     * Updates the failure tracking of the destination of the given {@link PingStatus}.
+     *
+     * @param status the outcome of a ping or probe
+     */
+    public void record(PingStatus status) {
+        if (threshold <= 0) {
+            return;
+        }
+        FailureKind kind = status.getFailureKind();
+        PingDestination destination = status.getDestination();
+        if (kind == null) {
+            Circuit circuit = circuits.remove(destination);
+            if (circuit != null && circuit.open) {
+                Log.LOG.dCircuitClosed(destination.getUrl());
+            }
+            return;
+        } else if (kind == FailureKind.POOL_EXHAUSTED || kind == FailureKind.CIRCUIT_OPEN) {
+            /* not the destination's fault or not a ping at all */
+            return;
+        }
+        Circuit circuit = circuits.computeIfAbsent(destination, k -> new Circuit());
+        synchronized (circuit) {
+            if (circuit.open) {
+                if (circuit.probing) {
+                    circuit.probing = false;
+                    circuit.backoffMillis = Math.min(circuit.backoffMillis * 2, maxBackoffMillis);
+                    circuit.openUntil = status.getTimestamp() + circuit.backoffMillis;
+                }
+            } else if (++circuit.failures >= threshold) {
+                circuit.open = true;
+                circuit.backoffMillis = initialBackoffMillis;
+                circuit.openUntil = status.getTimestamp() + initialBackoffMillis;
+                Log.LOG.dCircuitOpened(destination.getUrl(), circuit.failures, kind);
+            }
+        }
+    }
+
+    /**
+     * Forgets the failures of the given {@link PingDestination}.
+     *
+     * @param destination the destination to forget
+     */
+    public void forget(PingDestination destination) {
+        circuits.remove(destination);
+    }
+
+    /**
+     * @return the number of destinations whose circuit is open
+     */
+    public int getOpenCount() {
+        int result = 0;
+        for (Circuit circuit : circuits.values()) {
+            synchronized (circuit) {
+                if (circuit.open) {
+                    result++;
+                }
+            }
+        }
+        return result;
+    }
+
+}
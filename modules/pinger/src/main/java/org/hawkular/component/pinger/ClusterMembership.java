@@ -0,0 +1,223 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSContext;
+import javax.jms.JMSProducer;
+import javax.jms.Topic;
+
+/**
+ * Keeps track of the pinger nodes of a cluster and maintains the {@link HashRing} that decides which node pings which
+ * {@link PingDestination}. The nodes announce their presence by sending heartbeats to the
+ * {@value #HEARTBEAT_TOPIC} topic of the bus every {@link PingerConfiguration#getClusterHeartbeatSeconds()} seconds.
+ * The heartbeats are received by {@link HeartbeatReceiver}. A node is considered gone if it leaves explicitly on
+ * shutdown or if no heartbeat arrived from it within {@link PingerConfiguration#getClusterMemberTimeoutSeconds()}.
+ * <p>
+ * If {@link PingerConfiguration#isClusterEnabled()} is {@code false}, no heartbeats are sent and this node owns all
+ * destinations.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+@Startup
+@Singleton
+public class ClusterMembership {
+
+    /** The physical name of the topic where the heartbeats are sent to */
+    public static final String HEARTBEAT_TOPIC = "HawkularPingerHeartbeat";
+
+    /** The name of the message property holding the identifier of the sending node */
+    static final String NODE_ID_PROPERTY = "nodeId";
+
+    /** The name of the message property that is {@code true} if the sending node is leaving the cluster */
+    static final String LEAVING_PROPERTY = "leaving";
+
+    @Resource(mappedName = "java:/topic/" + HEARTBEAT_TOPIC)
+    Topic heartbeatTopic;
+
+    @Resource(mappedName = "java:/HawkularBusConnectionFactory")
+    private ConnectionFactory connectionFactory;
+
+    private JMSContext context;
+    JMSProducer producer;
+
+    /** The identifier of this node */
+    private final String nodeId;
+
+    /** See {@link PingerConfiguration#isClusterEnabled()} */
+    private final boolean enabled;
+
+    /** See {@link PingerConfiguration#getClusterVirtualNodes()} */
+    private final int virtualNodes;
+
+    /** See {@link PingerConfiguration#getClusterHeartbeatSeconds()} */
+    private final long heartbeatNanos;
+
+    /** See {@link PingerConfiguration#getClusterMemberTimeoutSeconds()} */
+    private final long memberTimeoutNanos;
+
+    /** The value of {@code System.nanoTime()} when the last heartbeat was received per other node */
+    private final Map<String, Long> lastSeen = new HashMap<>();
+
+    /** The value of {@code System.nanoTime()} when this node sent its last heartbeat */
+    private long lastHeartbeatNanos;
+
+    /** The current ring, replaced by a new instance on every membership change */
+    private volatile HashRing ring;
+
+    public ClusterMembership() {
+        this(PingerConfiguration.getInstance().getClusterNodeId(), PingerConfiguration.getInstance()
+                .isClusterEnabled(), PingerConfiguration.getInstance().getClusterVirtualNodes(),
+                PingerConfiguration.getInstance().getClusterHeartbeatSeconds(),
+                PingerConfiguration.getInstance().getClusterMemberTimeoutSeconds());
+    }
+
+    ClusterMembership(String nodeId, boolean enabled, int virtualNodes, int heartbeatSeconds,
+            int memberTimeoutSeconds) {
+        super();
+        this.nodeId = nodeId;
+        this.enabled = enabled;
+        this.virtualNodes = virtualNodes;
+        this.heartbeatNanos = TimeUnit.SECONDS.toNanos(heartbeatSeconds);
+        this.memberTimeoutNanos = TimeUnit.SECONDS.toNanos(memberTimeoutSeconds);
+        rebuildRing();
+    }
+
+    @PostConstruct
+    public void startUp() {
+        if (enabled) {
+            context = connectionFactory.createContext();
+            producer = context.createProducer();
+            sendHeartbeat(false, System.nanoTime());
+        }
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        if (context != null) {
+            sendHeartbeat(true, System.nanoTime());
+            context.close();
+        }
+    }
+
+    /**
+     * @return the identifier of this node
+     */
+    @Lock(LockType.READ)
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return the current {@link HashRing}; a new instance is returned after each membership change
+     */
+    @Lock(LockType.READ)
+    public HashRing getRing() {
+        return ring;
+    }
+
+    /**
+     * Records a heartbeat received from the given node.
+     *
+     * @param node the identifier of the node that sent the heartbeat
+     * @param leaving {@code true} if the node is leaving the cluster
+     * @param nowNanos the current value of {@code System.nanoTime()}
+     */
+    public void heartbeat(String node, boolean leaving, long nowNanos) {
+        if (!enabled || node == null || nodeId.equals(node)) {
+            return;
+        }
+        if (leaving) {
+            if (lastSeen.remove(node) != null) {
+                rebuildRing();
+            }
+        } else if (lastSeen.put(node, nowNanos) == null) {
+            rebuildRing();
+            /* let the newcomer know about this node without waiting for the next regular heartbeat */
+            sendHeartbeat(false, nowNanos);
+        }
+    }
+
+    /**
+     * This method is invoked every second. It sends the heartbeat of this node if it is due and removes the nodes
+     * whose heartbeats have not arrived within {@link PingerConfiguration#getClusterMemberTimeoutSeconds()}.
+     */
+    @Schedule(minute = "*", hour = "*", second = "*", persistent = false)
+    public void maintain() {
+        if (enabled) {
+            long now = System.nanoTime();
+            if (now - lastHeartbeatNanos >= heartbeatNanos) {
+                sendHeartbeat(false, now);
+            }
+            expire(now);
+        }
+    }
+
+    /**
+     * Removes the nodes whose heartbeats have not arrived within
+     * {@link PingerConfiguration#getClusterMemberTimeoutSeconds()}.
+     *
+     * @param nowNanos the current value of {@code System.nanoTime()}
+     */
+    void expire(long nowNanos) {
+        boolean changed = false;
+        for (Iterator<Map.Entry<String, Long>> it = lastSeen.entrySet().iterator(); it.hasNext();) {
+            if (nowNanos - it.next().getValue() > memberTimeoutNanos) {
+                it.remove();
+                changed = true;
+            }
+        }
+        if (changed) {
+            rebuildRing();
+        }
+    }
+
+    private void sendHeartbeat(boolean leaving, long nowNanos) {
+        if (producer != null) {
+            producer.setProperty(NODE_ID_PROPERTY, nodeId).setProperty(LEAVING_PROPERTY, leaving)
+                    .send(heartbeatTopic, "");
+            lastHeartbeatNanos = nowNanos;
+        }
+    }
+
+    private void rebuildRing() {
+        List<String> nodes = new ArrayList<>(lastSeen.size() + 1);
+        nodes.add(nodeId);
+        nodes.addAll(lastSeen.keySet());
+        HashRing newRing = new HashRing(nodes, virtualNodes);
+        if (enabled) {
+            Log.LOG.iClusterChanged(nodeId, nodes.size(), newRing.getNodes());
+        }
+        this.ring = newRing;
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.hawkular.inventory.api.ResolvableToMany;
+import org.hawkular.inventory.api.model.Resource;
+import org.hawkular.inventory.api.paging.Order;
+import org.hawkular.inventory.api.paging.Page;
+import org.hawkular.inventory.api.paging.Pager;
+
+/**
+ * Loads the URL {@link Resource}s existing in Hawkular Inventory at startup page by page so that neither the whole
+ * result has to be held in memory nor the pinging has to wait until all URLs are loaded. {@link PingManager} calls
+ * {@link #loadNextPage(Consumer)} once per tick until {@link #isDone()}.
+ * <p>
+ * Concurrency assumptions: not thread safe; all methods are expected to be called from a single thread.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class DestinationLoader {
+
+    private final ResolvableToMany<Resource> query;
+
+    /** The page to load next */
+    private Pager pager;
+
+    private boolean done;
+
+    /** The number of URLs loaded so far */
+    private int count;
+
+    /** The number of pages loaded so far */
+    private int pages;
+
+    /** The value of {@code System.nanoTime()} when this loader was created */
+    private final long startNanos = System.nanoTime();
+
+    /** The highest heap usage in bytes observed after loading a page */
+    private long peakHeapBytes;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    /**
+     * @param query the query returning all URL {@link Resource}s
+     * @param pageSize the number of {@link Resource}s to load per {@link #loadNextPage(Consumer)}
+     */
+    public DestinationLoader(ResolvableToMany<Resource> query, int pageSize) {
+        super();
+        this.query = query;
+        /* a stable order so that no URL falls between two pages */
+        this.pager = new Pager(0, pageSize, Order.by("id", Order.Direction.ASCENDING));
+    }
+
+    /**
+     * Loads the next page of URL {@link Resource}s and passes them to the given {@code consumer}. If loading fails,
+     * the same page is tried again on the next invocation.
+     *
+     * @param consumer the callback to pass the loaded {@link PingDestination}s to
+     * @return the number of {@link PingDestination}s passed to {@code consumer}
+     */
+    public int loadNextPage(Consumer<PingDestination> consumer) {
+        if (done) {
+            return 0;
+        }
+        int loaded = 0;
+        try (Page<Resource> page = query.entities(pager)) {
+            for (Resource r : page) {
+                consumer.accept(PingDestination.from(r));
+                loaded++;
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.LOG.wCouldNotLoadUrls(pager.getPageNumber(), e);
+            return loaded;
+        }
+        count += loaded;
+        pages++;
+        peakHeapBytes = Math.max(peakHeapBytes, memory.getHeapMemoryUsage().getUsed());
+        if (loaded < pager.getPageSize()) {
+            done = true;
+            Log.LOG.iUrlsLoaded(count, pages, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                    peakHeapBytes / (1024 * 1024));
+        } else {
+            pager = pager.nextPage();
+        }
+        return loaded;
+    }
+
+    /**
+     * @return {@code true} if all pages have been loaded
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return the number of URLs loaded so far
+     */
+    public int getCount() {
+        return count;
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.hawkular.inventory.api.Inventory;
+import org.hawkular.inventory.api.model.Resource;
+
+import rx.functions.Action1;
+
+/**
+ * The set of {@link PingDestination}s to ping. The URL creations and deletions reported by {@link Inventory} are
+ * applied to the registry directly from the reporting threads without any locking. Each change increments the
+ * {@link #getVersion()} of the registry and enqueues the affected {@link PingDestination} to a lock-free queue of
+ * changed destinations. The consumer (i.e. {@link PingManager}) drains that queue once per tick through
+ * {@link #drainChanges(Consumer, Consumer)} and thus sees a stable state of the registry during the whole tick. The
+ * cost of a drain is proportional to the number of changes since the last drain rather than to the size of the
+ * registry.
+ * <p>
+ * The registered destinations are kept in a {@link DestinationTable} so that each of them has a dense
+ * {@link PingDestination#getSlot() slot}. The slot of a removed destination is released only after the removal was
+ * passed to the consumer in {@link #drainChanges(Consumer, Consumer)}, so that the consumer can still use the slot to
+ * clean up its per destination state.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class DestinationRegistry {
+
+    /**
+     * A callback for the {@link Inventory} that registers newly added URLs.
+     */
+    private final Action1<Resource> urlCreatedAction = new Action1<Resource>() {
+        /**
+         * It is safe to call this method concurrently from any random thread.
+         *
+         * @see rx.functions.Action1#call(java.lang.Object)
+         */
+        @Override
+        public void call(Resource r) {
+            if (PingDestination.isUrl(r)) {
+                PingDestination dest = PingDestination.from(r);
+                Log.LOG.debugf("Observed an URL creation: %s", dest.getUrl());
+                add(dest);
+            }
+        }
+    };
+
+    /**
+     * A callback for the {@link Inventory} that unregisters removed URLs.
+     */
+    private final Action1<Resource> urlDeletedAction = new Action1<Resource>() {
+        /**
+         * It is safe to call this method concurrently from any random thread.
+         *
+         * @see rx.functions.Action1#call(java.lang.Object)
+         */
+        @Override
+        public void call(Resource r) {
+            if (PingDestination.isUrl(r)) {
+                PingDestination dest = PingDestination.from(r);
+                Log.LOG.debugf("Observed an URL deletion: %s", dest.getUrl());
+                remove(dest);
+            }
+        }
+    };
+
+    /** The registered destinations */
+    private final DestinationTable destinations = new DestinationTable();
+
+    /** The destinations added or removed since the last {@link #drainChanges(Consumer, Consumer)} */
+    private final ConcurrentLinkedQueue<PingDestination> changed = new ConcurrentLinkedQueue<>();
+
+    /** Incremented on every effective addition or removal */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Adds the given {@link PingDestination} to this registry. It is safe to call this method concurrently from any
+     * random thread.
+     *
+     * @param destination the destination to add
+     * @return {@code true} if the destination was not registered before and thus became the canonical instance,
+     *         see {@link #get(PingDestination)}
+     */
+    public boolean add(PingDestination destination) {
+        if (destinations.add(destination)) {
+            version.incrementAndGet();
+            changed.offer(destination);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the given {@link PingDestination} from this registry. It is safe to call this method concurrently from
+     * any random thread.
+     *
+     * @param destination the destination to remove
+     * @return {@code true} if the destination was registered before
+     */
+    public boolean remove(PingDestination destination) {
+        PingDestination removed = destinations.remove(destination);
+        if (removed != null) {
+            version.incrementAndGet();
+            changed.offer(removed);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param destination the destination to look up
+     * @return the registered instance equal to the given {@link PingDestination} or {@code null} if there is none
+     */
+    public PingDestination get(PingDestination destination) {
+        return destinations.get(destination);
+    }
+
+    /**
+     * @param destination the destination to check
+     * @return {@code true} if the given {@link PingDestination} is registered
+     */
+    public boolean contains(PingDestination destination) {
+        return destinations.contains(destination);
+    }
+
+    /**
+     * Passes all registered {@link PingDestination}s to the given {@link Consumer}. The iteration is weakly
+     * consistent, i.e. it may or may not reflect the changes performed concurrently.
+     *
+     * @param consumer the callback to pass the destinations to
+     */
+    public void forEach(Consumer<PingDestination> consumer) {
+        destinations.forEach(consumer);
+    }
+
+    /**
+     * @return a copy of the registered {@link PingDestination}s
+     */
+    public List<PingDestination> snapshot() {
+        return destinations.snapshot();
+    }
+
+    /**
+     * @return the number of registered {@link PingDestination}s
+     */
+    public int size() {
+        return destinations.size();
+    }
+
+    /**
+     * @return an exclusive upper bound of the slots of the registered {@link PingDestination}s
+     */
+    public int getSlotCount() {
+        return destinations.getSlotCount();
+    }
+
+    /**
+     * @return the number of effective additions and removals performed on this registry so far
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Passes the {@link PingDestination}s added since the last invocation of this method to {@code onAdd} and the
+     * removed ones to {@code onRemove}. Each changed destination is reported according to its state in the registry
+     * at the time of the drain so that the consumer converges to the state of the registry even if the concurrent
+     * changes of the same destination were enqueued out of order. Hence, both callbacks must be idempotent.
+     * <p>
+     * Concurrency assumptions: this method is expected to be called from a single thread at a time.
+     *
+     * @param onAdd the callback to pass the added {@link PingDestination}s to
+     * @param onRemove the callback to pass the removed {@link PingDestination}s to
+     * @return the number of changes drained
+     */
+    public int drainChanges(Consumer<PingDestination> onAdd, Consumer<PingDestination> onRemove) {
+        int count = 0;
+        PingDestination dest;
+        while ((dest = changed.poll()) != null) {
+            count++;
+            PingDestination current = destinations.get(dest);
+            if (current == dest) {
+                onAdd.accept(dest);
+                Log.LOG.debugf("Added to ping list: %s", dest.getUrl());
+            } else if (dest.getSlot() != PingDestination.NO_SLOT) {
+                /* removed or replaced by an equal instance whose own addition is in the queue too */
+                onRemove.accept(dest);
+                destinations.release(dest);
+                Log.LOG.debugf("Removed from ping list: %s", dest.getUrl());
+            }
+        }
+        if (count > 0) {
+            Log.LOG.debugf("Applied %d changes to ping list, registry version %d", count, version.get());
+        }
+        return count;
+    }
+
+    /**
+     * Returns a callback for the {@link Inventory} that registers newly added URLs.
+     */
+    public Action1<Resource> getUrlCreatedAction() {
+        return urlCreatedAction;
+    }
+
+    /**
+     * Returns a callback for the {@link Inventory} that unregisters removed URLs.
+     */
+    public Action1<Resource> getUrlDeletedAction() {
+        return urlDeletedAction;
+    }
+}
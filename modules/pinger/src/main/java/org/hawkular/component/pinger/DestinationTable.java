@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * A table of canonical {@link PingDestination} instances each having a dense int {@link PingDestination#getSlot()
+ * slot}. The slots are assigned from zero upwards and the slots of the released destinations are reused, so that
+ * {@link #getSlotCount()} stays close to the number of destinations in the table and the per destination state can
+ * be kept in arrays indexed by slot.
+ * <p>
+ * The removal of a destination is split into two steps: {@link #remove(PingDestination)} makes the destination
+ * invisible for the lookups while the slot stays reserved until {@link #release(PingDestination)} is called. This
+ * gives the owner a chance to clean up the state kept under the slot before the slot is reused.
+ * <p>
+ * Concurrency assumptions: {@link #add(PingDestination)}, {@link #remove(PingDestination)},
+ * {@link #get(PingDestination)} and {@link #release(PingDestination)} can be called concurrently from any random
+ * thread.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class DestinationTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** The canonical instances */
+    private final Map<PingDestination, PingDestination> destinations = new ConcurrentHashMap<>();
+
+    /** The slots released by {@link #release(PingDestination)}, used as a stack */
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount;
+
+    /** The number of slots ever assigned, i.e. the next never used slot */
+    private int slotCount;
+
+    /**
+     * Adds the given {@link PingDestination} to this table unless an equal one is there already. The added
+     * destination becomes the canonical instance and gets a slot assigned.
+     *
+     * @param destination the destination to add
+     * @return {@code true} if the destination was added, {@code false} if an equal one was in the table already
+     */
+    public boolean add(PingDestination destination) {
+        if (destinations.containsKey(destination)) {
+            return false;
+        }
+        /*
+         * The slot must be assigned before the destination becomes visible to other threads. A destination removed
+         * but not released yet keeps its slot.
+         */
+        int slot = destination.getSlot();
+        boolean allocated = slot == PingDestination.NO_SLOT;
+        if (allocated) {
+            slot = allocate();
+            destination.setSlot(slot);
+        }
+        if (destinations.putIfAbsent(destination, destination) != null) {
+            /* lost a race with a concurrent add() */
+            if (allocated) {
+                destination.setSlot(PingDestination.NO_SLOT);
+                free(slot);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param destination the destination to look up
+     * @return the canonical instance equal to the given {@link PingDestination} or {@code null} if there is none
+     */
+    public PingDestination get(PingDestination destination) {
+        return destinations.get(destination);
+    }
+
+    /**
+     * Removes the canonical instance equal to the given {@link PingDestination} from this table. The slot of the
+     * removed instance stays reserved until {@link #release(PingDestination)} is called.
+     *
+     * @param destination the destination to remove
+     * @return the removed canonical instance or {@code null} if there was no equal destination in the table
+     */
+    public PingDestination remove(PingDestination destination) {
+        return destinations.remove(destination);
+    }
+
+    /**
+     * Frees the slot of the given removed canonical {@link PingDestination} for reuse. Calling this method for a
+     * destination that is still in the table or that was released already has no effect.
+     *
+     * @param destination a canonical instance returned by {@link #remove(PingDestination)}
+     */
+    public void release(PingDestination destination) {
+        int slot = destination.getSlot();
+        if (slot == PingDestination.NO_SLOT || destinations.get(destination) == destination) {
+            return;
+        }
+        destination.setSlot(PingDestination.NO_SLOT);
+        free(slot);
+    }
+
+    /**
+     * @param destination the destination to look up
+     * @return {@code true} if an equal {@link PingDestination} is in this table
+     */
+    public boolean contains(PingDestination destination) {
+        return destinations.containsKey(destination);
+    }
+
+    /**
+     * Passes all canonical {@link PingDestination}s to the given {@link Consumer}. The iteration is weakly
+     * consistent, i.e. it may or may not reflect the changes performed concurrently.
+     *
+     * @param consumer the callback to pass the destinations to
+     */
+    public void forEach(Consumer<PingDestination> consumer) {
+        destinations.keySet().forEach(consumer);
+    }
+
+    /**
+     * @return a copy of the canonical {@link PingDestination}s
+     */
+    public List<PingDestination> snapshot() {
+        return new ArrayList<>(destinations.keySet());
+    }
+
+    /**
+     * @return the number of {@link PingDestination}s in this table
+     */
+    public int size() {
+        return destinations.size();
+    }
+
+    /**
+     * @return an exclusive upper bound of the slots assigned so far, i.e. the minimal length of an array able to
+     *         hold the state of all destinations of this table
+     */
+    public synchronized int getSlotCount() {
+        return slotCount;
+    }
+
+    private synchronized int allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        return slotCount++;
+    }
+
+    private synchronized void free(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * An immutable consistent hash ring that assigns {@link PingDestination}s to the nodes of a cluster of pingers. Each
+ * node occupies a number of pseudo-random points (virtual nodes) on the ring and a destination is owned by the node
+ * occupying the first point at or after the hash of the destination's resourceId. When a node joins or leaves, only
+ * about {@code 1/n} of the destinations change their owner.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public final class HashRing {
+
+    /**
+     * A 64 bit hash with good avalanche properties: FNV-1a over the UTF-8 bytes of the given {@link String} followed
+     * by the MurmurHash3 finalizer.
+     *
+     * @param key the {@link String} to hash
+     * @return the hash of the given {@link String}
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /** The sorted points of all virtual nodes */
+    private final long[] points;
+
+    /** The node occupying the point at the same index in {@link #points} */
+    private final String[] owners;
+
+    /** The sorted node identifiers */
+    private final SortedSet<String> nodes;
+
+    /**
+     * @param nodes the identifiers of the nodes forming the ring, must not be empty
+     * @param virtualNodes the number of points per node
+     */
+    public HashRing(Collection<String> nodes, int virtualNodes) {
+        super();
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A " + HashRing.class.getSimpleName() + " needs at least one node");
+        }
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes must be positive, was " + virtualNodes);
+        }
+        SortedSet<String> sortedNodes = new TreeSet<>(nodes);
+        this.nodes = Collections.unmodifiableSortedSet(sortedNodes);
+
+        final int size = sortedNodes.size() * virtualNodes;
+        List<Map.Entry<Long, String>> entries = new ArrayList<>(size);
+        for (String node : sortedNodes) {
+            for (int v = 0; v < virtualNodes; v++) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(hash(node + "#" + v), node));
+            }
+        }
+        /* ties are broken by the node identifier so that all nodes of the cluster build the very same ring */
+        entries.sort(Map.Entry.<Long, String> comparingByKey().thenComparing(Map.Entry.comparingByValue()));
+        this.points = new long[size];
+        this.owners = new String[size];
+        for (int i = 0; i < size; i++) {
+            Map.Entry<Long, String> entry = entries.get(i);
+            points[i] = entry.getKey();
+            owners[i] = entry.getValue();
+        }
+    }
+
+    /**
+     * @param resourceId the key to find the owner for
+     * @return the identifier of the node owning the given {@code resourceId}
+     */
+    public String ownerOf(String resourceId) {
+        long h = hash(resourceId == null ? "" : resourceId);
+        int i = Arrays.binarySearch(points, h);
+        if (i < 0) {
+            i = -i - 1;
+        } else {
+            /* the first of the equal points */
+            while (i > 0 && points[i - 1] == h) {
+                i--;
+            }
+        }
+        /* wrap around */
+        return owners[i == points.length ? 0 : i];
+    }
+
+    /**
+     * @param node the node identifier
+     * @param destination the destination to check
+     * @return {@code true} if the given {@code node} owns the given {@link PingDestination}
+     */
+    public boolean owns(String node, PingDestination destination) {
+        return nodes.size() == 1 ? nodes.contains(node) : node.equals(ownerOf(destination.getResourceId()));
+    }
+
+    /**
+     * @return the sorted identifiers of the nodes forming this ring
+     */
+    public SortedSet<String> getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public String toString() {
+        return "HashRing " + nodes;
+    }
+
+}
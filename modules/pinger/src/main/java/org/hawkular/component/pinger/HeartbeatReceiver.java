@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import static javax.ejb.TransactionAttributeType.NOT_SUPPORTED;
+
+import javax.ejb.ActivationConfigProperty;
+import javax.ejb.EJB;
+import javax.ejb.MessageDriven;
+import javax.ejb.TransactionAttribute;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+
+/**
+ * Receives the heartbeats of the pinger nodes sent to the {@value ClusterMembership#HEARTBEAT_TOPIC} topic and passes
+ * them to {@link ClusterMembership}.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+@MessageDriven(activationConfig = {
+        @ActivationConfigProperty(propertyName = "destinationType", propertyValue = "javax.jms.Topic"),
+        @ActivationConfigProperty(propertyName = "destination", propertyValue = ClusterMembership.HEARTBEAT_TOPIC)
+})
+@TransactionAttribute(value = NOT_SUPPORTED)
+public class HeartbeatReceiver implements MessageListener {
+
+    @EJB
+    ClusterMembership membership;
+
+    @Override
+    public void onMessage(Message message) {
+        try {
+            membership.heartbeat(message.getStringProperty(ClusterMembership.NODE_ID_PROPERTY),
+                    message.getBooleanProperty(ClusterMembership.LEAVING_PROPERTY), System.nanoTime());
+        } catch (JMSException e) {
+            Log.LOG.wCouldNotHandleHeartbeat(e);
+        }
+    }
+
+}
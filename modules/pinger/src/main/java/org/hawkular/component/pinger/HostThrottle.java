@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the pings of destinations sharing the same host from hitting the host all at once. A host cannot have more
+ * than {@link PingerConfiguration#getHostMaxInFlight()} pings in flight and the pings of a host are admitted at most
+ * once per {@link PingerConfiguration#getHostMinSpacingMillis()}. All pings admitted in a tick start at the same time,
+ * so a ping is only admitted once the spacing after the previous one has fully elapsed, at the beginning of the tick;
+ * a spacing shorter than a tick thus admits at most one ping per host and tick. The pings refused by
+ * {@link #tryAcquire(PingDestination, long)} are expected to be retried in the next tick, see
+ * {@link TenantDispatcher}.
+ * <p>
+ * Keeping the number of concurrent pings per host low has the nice side effect that the subsequent pings of a host
+ * mostly reuse the kept-alive connections of the pool rather than opening new ones and paying for new TLS
+ * handshakes.
+ * <p>
+ * Concurrency assumptions: {@link #release(PingDestination)}, {@link #getInFlight(String)} and
+ * {@link #drainRefusedCount()} can be called concurrently from any random thread, all other methods are expected to
+ * be called from a single thread.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class HostThrottle {
+
+    /** The state of a single host */
+    private static class Host {
+        /** The number of pings in flight */
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        /** The earliest tick start ({@code System.currentTimeMillis()}) when the next ping of this host may start */
+        private long nextStart;
+    }
+
+    /**
+     * Returns the lower-case host name of the given URL without any user info and port. This is a lightweight
+     * alternative to {@link java.net.URI#getHost()} that does not validate the URL.
+     *
+     * @param url the URL to parse
+     * @return the host name or an empty {@link String} if there is no host in {@code url}
+     */
+    static String hostOf(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            } else if (c == '@') {
+                start = end + 1;
+            }
+            end++;
+        }
+        if (end > start && url.charAt(start) == '[') {
+            /* IPv6 literal */
+            int close = url.indexOf(']', start);
+            if (close > 0 && close < end) {
+                return url.substring(start, close + 1).toLowerCase(Locale.US);
+            }
+        }
+        int colon = url.lastIndexOf(':', end - 1);
+        if (colon >= start) {
+            end = colon;
+        }
+        return url.substring(start, end).toLowerCase(Locale.US);
+    }
+
+    /** The state per host name */
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    /** See {@link PingerConfiguration#getHostMaxInFlight()}, {@code <= 0} for unlimited */
+    private final int maxInFlight;
+
+    /** See {@link PingerConfiguration#getHostMinSpacingMillis()}, {@code <= 0} for none */
+    private final long minSpacingMillis;
+
+    /** The number of pings refused since the last {@link #drainRefusedCount()} */
+    private final AtomicInteger refused = new AtomicInteger();
+
+    public HostThrottle() {
+        this(PingerConfiguration.getInstance().getHostMaxInFlight(),
+                PingerConfiguration.getInstance().getHostMinSpacingMillis());
+    }
+
+    /**
+     * @param maxInFlight the maximal number of pings in flight per host, {@code <= 0} for unlimited
+     * @param minSpacingMillis the minimal time in milliseconds between the starts of two pings of a host,
+     *        {@code <= 0} for none
+     */
+    public HostThrottle(int maxInFlight, long minSpacingMillis) {
+        super();
+        this.maxInFlight = maxInFlight <= 0 ? Integer.MAX_VALUE : maxInFlight;
+        this.minSpacingMillis = minSpacingMillis <= 0 ? 0 : minSpacingMillis;
+    }
+
+    /**
+     * @return {@code true} if this {@link HostThrottle} never refuses anything
+     */
+    public boolean isUnlimited() {
+        return maxInFlight == Integer.MAX_VALUE && minSpacingMillis == 0;
+    }
+
+    /**
+     * Takes an in-flight slot of the host of the given {@link PingDestination} if the limits of the host allow it.
+     * The caller is expected to call {@link #release(PingDestination)} once the ping is over.
+     *
+     * @param destination the destination to ping
+     * @param now the value of {@code System.currentTimeMillis()} at the beginning of the current tick
+     * @return {@code true} if the destination can be pinged now, {@code false} otherwise
+     */
+    public boolean tryAcquire(PingDestination destination, long now) {
+        if (isUnlimited()) {
+            return true;
+        }
+        Host host = hosts.computeIfAbsent(hostOf(destination.getUrl()), k -> new Host());
+        /*
+         * The pings admitted here start right away rather than at nextStart, so admitting more than one per tick
+         * would fire them in a burst
+         */
+        if (host.inFlight.get() >= maxInFlight || host.nextStart > now) {
+            refused.incrementAndGet();
+            return false;
+        }
+        host.inFlight.incrementAndGet();
+        host.nextStart = now + minSpacingMillis;
+        return true;
+    }
+
+    /**
+     * Releases the in-flight slot taken by the given {@link PingDestination} in
+     * {@link #tryAcquire(PingDestination, long)}.
+     *
+     * @param destination the destination whose ping is over
+     */
+    public void release(PingDestination destination) {
+        if (isUnlimited()) {
+            return;
+        }
+        Host host = hosts.get(hostOf(destination.getUrl()));
+        if (host != null) {
+            host.inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Forgets the hosts having no pings in flight and no pending spacing so that the hosts that are not pinged
+     * anymore do not occupy any memory.
+     *
+     * @param now the value of {@code System.currentTimeMillis()}
+     */
+    public void purge(long now) {
+        for (Iterator<Map.Entry<String, Host>> it = hosts.entrySet().iterator(); it.hasNext();) {
+            Host host = it.next().getValue();
+            /* release() never touches a host with no pings in flight so this cannot loose any release */
+            if (host.inFlight.get() == 0 && host.nextStart <= now) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * @param host the lower-case host name to look up
+     * @return the number of pings of the given host in flight
+     */
+    public int getInFlight(String host) {
+        Host result = hosts.get(host);
+        return result == null ? 0 : result.inFlight.get();
+    }
+
+    /**
+     * @return the number of hosts currently tracked
+     */
+    public int getHostCount() {
+        return hosts.size();
+    }
+
+    /**
+     * Returns the number of pings refused since the last invocation of this method and resets the counter.
+     *
+     * @return the number of refused pings
+     */
+    public int drainRefusedCount() {
+        return refused.getAndSet(0);
+    }
+
+}
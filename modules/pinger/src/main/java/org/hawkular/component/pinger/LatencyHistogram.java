@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in the spirit of HdrHistogram: the values are counted in buckets whose width grows with
+ * the magnitude of the values, so that any value up to {@link #getHighestTrackableValue()} is recorded with the
+ * precision of two significant decimal digits at a fixed memory cost of some two thousand counters for an hour in
+ * milliseconds. Recording a value is a few arithmetic operations and an atomic increment, so that it can be done on
+ * the hot path of every ping.
+ * <p>
+ * The values below 256 fall into buckets of width 1. From there on, each power of two is split into 128 buckets of
+ * equal width, so that the width of a bucket is always less than 1/128 of the values it holds, i.e. the error is
+ * below 0.8%.
+ * <p>
+ * Concurrency assumptions: {@link #record(long)} can be called concurrently from any random thread.
+ * {@link #drain()} can be called concurrently with {@link #record(long)}; the values recorded meanwhile end up either
+ * in the returned {@link Snapshot} or in the next one.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class LatencyHistogram {
+
+    /**
+     * An immutable state of a {@link LatencyHistogram}.
+     */
+    public static class Snapshot {
+        /** A {@link Snapshot} with no values */
+        public static final Snapshot EMPTY = new Snapshot(new long[0], 0, 0);
+
+        private final long[] counts;
+        private final long count;
+        private final long max;
+        private final long sum;
+
+        Snapshot(long[] counts, long max, long sum) {
+            super();
+            this.counts = counts;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+            this.max = max;
+            this.sum = sum;
+        }
+
+        /**
+         * @return the number of recorded values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the highest recorded value or {@code 0} if there are no values
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return the arithmetic mean of the recorded values or {@code 0} if there are no values
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile the percentile to compute, between {@code 0} and {@code 100}
+         * @return the value at the given percentile, i.e. the highest value equivalent to the one below which the
+         *         given percentage of the recorded values falls; {@code 0} if there are no values
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100) / 100));
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                if (cumulative >= target) {
+                    return Math.min(highestEquivalentValue(i), max);
+                }
+            }
+            return max;
+        }
+    }
+
+    /** The number of the linear buckets below the first power of two that is split */
+    private static final int SUB_BUCKET_COUNT = 256;
+
+    /** The number of buckets each power of two is split into, {@code SUB_BUCKET_COUNT / 2} */
+    private static final int SUB_BUCKET_HALF = 128;
+
+    /** {@code log2(SUB_BUCKET_HALF)} */
+    private static final int SUB_BUCKET_HALF_BITS = 7;
+
+    /**
+     * @param value a non-negative value
+     * @return the index of the bucket the given value falls into
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        /* value >> shift is in [SUB_BUCKET_HALF, SUB_BUCKET_COUNT) */
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_HALF_BITS;
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (int) (value >> shift) - SUB_BUCKET_HALF;
+    }
+
+    /**
+     * @param index the index of a bucket
+     * @return the highest value that falls into the bucket with the given index
+     */
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    private final long highestTrackableValue;
+
+    private final AtomicLongArray counts;
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * @param highestTrackableValue the values greater than this are recorded as this value
+     */
+    public LatencyHistogram(long highestTrackableValue) {
+        super();
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new AtomicLongArray(indexOf(highestTrackableValue) + 1);
+    }
+
+    /**
+     * Records the given value. Negative values are ignored, the values greater than
+     * {@link #getHighestTrackableValue()} are recorded as {@link #getHighestTrackableValue()}.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        if (value < 0) {
+            return;
+        }
+        if (value > highestTrackableValue) {
+            value = highestTrackableValue;
+        }
+        counts.incrementAndGet(indexOf(value));
+        max.accumulate(value);
+        sum.add(value);
+    }
+
+    /**
+     * Returns the values recorded since the last invocation of this method and resets this histogram.
+     *
+     * @return a new {@link Snapshot}
+     */
+    public Snapshot drain() {
+        long[] result = new long[counts.length()];
+        for (int i = 0; i < result.length; i++) {
+            if (counts.get(i) != 0) {
+                result[i] = counts.getAndSet(i, 0);
+            }
+        }
+        return new Snapshot(result, max.getThenReset(), sum.sumThenReset());
+    }
+
+    /**
+     * @return the values greater than this are recorded as this value
+     */
+    public long getHighestTrackableValue() {
+        return highestTrackableValue;
+    }
+
+}
@@ -17,6 +17,7 @@
 package org.hawkular.component.pinger;
 
 import java.io.IOException;
+import java.util.Collection;
 
 import org.jboss.logging.BasicLogger;
 import org.jboss.logging.Logger;
@@ -62,8 +63,8 @@ public interface Log extends BasicLogger {
     void iResourceNotFound(String resourceId, String tenantId);
 
     @LogMessage(level = Logger.Level.INFO)
-    @Message(id = 5006, value = "About to initialize Hawkular Pinger with %d URLs")
-    void iInitializedWithUrls(int urlsCount);
+    @Message(id = 5006, value = "About to initialize Hawkular Pinger, loading the URLs in pages of %d")
+    void iInitializedWithUrls(int pageSize);
 
     @LogMessage(level = Logger.Level.ERROR)
     @Message(id = 5007, value = "Could not send a message to Hawkular Bus")
@@ -76,4 +77,96 @@ public interface Log extends BasicLogger {
     @LogMessage(level = Logger.Level.ERROR)
     @Message(id = 5009, value = "Could not parse a message to json format")
     void eCouldNotParseMessage(@Cause Throwable e);
+
+    @LogMessage(level = Logger.Level.DEBUG)
+    @Message(id = 5010, value = "Pinged %d URLs in %d ms, %d of them timed out")
+    void dPingCycleFinished(int urlsCount, long elapsedMillis, int timedOutCount);
+
+    @LogMessage(level = Logger.Level.DEBUG)
+    @Message(id = 5011, value = "HTTP connection pool: %d leased, %d pending, %d available, %d max")
+    void dConnectionPoolStats(int leased, int pending, int available, int max);
+
+    @LogMessage(level = Logger.Level.DEBUG)
+    @Message(id = 5012, value = "Wrote traits of %d resources to Hawkular Inventory in %d ms")
+    void dTraitsFlushed(int resourceCount, long elapsedMillis);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 5013, value = "Could not write traits of %d resources to Hawkular Inventory")
+    void wCouldNotWriteTraits(int resourceCount, @Cause Throwable e);
+
+    @LogMessage(level = Logger.Level.INFO)
+    @Message(id = 5014, value = "Pinger node [%s] now shares the URLs with %d nodes: %s")
+    void iClusterChanged(String nodeId, int nodeCount, Collection<String> nodes);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 5015, value = "Could not handle a pinger heartbeat")
+    void wCouldNotHandleHeartbeat(@Cause Throwable e);
+
+    @LogMessage(level = Logger.Level.INFO)
+    @Message(id = 5016, value = "Loaded %d URLs in %d pages in %d ms, peak heap usage %d MB")
+    void iUrlsLoaded(int urlsCount, int pageCount, long elapsedMillis, long peakHeapMegabytes);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 5017, value = "Could not load page %d of the URLs from Hawkular Inventory, will retry")
+    void wCouldNotLoadUrls(int pageNumber, @Cause Throwable e);
+
+    @LogMessage(level = Logger.Level.INFO)
+    @Message(id = 5018, value = "Restored %d URLs from pinger snapshot [%s] in %d ms")
+    void iSnapshotRestored(int urlsCount, String file, long elapsedMillis);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 5019, value = "Could not read pinger snapshot [%s]")
+    void wCouldNotReadSnapshot(String file, @Cause Throwable e);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 5020, value = "Could not write pinger snapshot [%s]")
+    void wCouldNotWriteSnapshot(String file, @Cause Throwable e);
+
+    @LogMessage(level = Logger.Level.DEBUG)
+    @Message(id = 5021, value = "Wrote pinger snapshot of %d URLs to [%s] in %d ms")
+    void dSnapshotWritten(int urlsCount, String file, long elapsedMillis);
+
+    @LogMessage(level = Logger.Level.DEBUG)
+    @Message(id = 5022, value = "Backing off from [%s] after %d consecutive failures, the last one being %s")
+    void dCircuitOpened(String url, int failures, PingStatus.FailureKind lastFailure);
+
+    @LogMessage(level = Logger.Level.DEBUG)
+    @Message(id = 5023, value = "[%s] is reachable again")
+    void dCircuitClosed(String url);
+
+    @LogMessage(level = Logger.Level.DEBUG)
+    @Message(id = 5024, value = "Tenant [%s]: %d pings deferred in the last minute, %d pings in flight")
+    void dPingsDeferred(String tenantId, int deferredCount, int inFlightCount);
+
+    @LogMessage(level = Logger.Level.DEBUG)
+    @Message(id = 5025, value = "%d pings deferred in the last minute due to per host limits, %d hosts tracked")
+    void dPingsThrottledByHost(int refusedCount, int hostsCount);
+
+    @LogMessage(level = Logger.Level.DEBUG)
+    @Message(id = 5026, value = "%d full and %d resumed TLS handshakes in the last minute")
+    void dTlsHandshakes(int fullCount, int resumedCount);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 5027, value = "Could not register MBean [%s]")
+    void wCouldNotRegisterMBean(String objectName, @Cause Throwable e);
+
+    @LogMessage(level = Logger.Level.DEBUG)
+    @Message(id = 5028, value = "Last minute: %d pings OK, %d timed out, %d failed, latency p50 %d ms, p99 %d ms; "
+            + "cycle p99 %d ms; scheduleWork p99 %d us; %d pings and %d cycles in flight")
+    void dPingerStats(long okCount, long timedOutCount, long failedCount, long latencyP50, long latencyP99,
+            long cycleP99, long scheduleWorkP99, int pingsInFlight, int cyclesInFlight);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 5029, value = "%d results of a ping cycle were dropped because the result buffer was full; "
+            + "consider raising hawkular.pinger.result-buffer-size")
+    void wResultsDropped(int droppedCount);
+
+    @LogMessage(level = Logger.Level.ERROR)
+    @Message(id = 5030, value = "Could not collect the results of ping cycles")
+    void eCouldNotCollect(@Cause Throwable e);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 5031, value = "Skipped %d destinations with a missing tenant, environment, resource or URL when "
+            + "writing the pinger snapshot %s")
+    void wSnapshotEntriesSkipped(int skippedCount, String file);
 }
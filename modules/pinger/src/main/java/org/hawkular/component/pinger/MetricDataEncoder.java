@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes the JSON form of a {@link MetricDataMessage} gauge by gauge as the gauges are added, without creating any
+ * {@link MetricDataMessage.SingleMetric}s and without any databind reflection. The output is the same as the one of
+ * {@link MetricDataMessage#toJSON()}:
+ *
+ * <pre>
+ * {"metricData":{"tenantId":"...","data":[{"source":"...","timestamp":123,"value":200.0},...]}}
+ * </pre>
+ *
+ * The gauge names are composed of a resourceId and a suffix in a reusable char buffer so that they are not allocated
+ * as separate {@link String}s either. The {@link StringWriter} passed to the constructor can be reused for another
+ * {@link MetricDataEncoder} once {@link #finish()} was called, see {@link #reset(StringWriter)}.
+ * <p>
+ * Concurrency assumptions: not thread safe.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class MetricDataEncoder {
+
+    /** Thread safe and expensive to create, hence shared */
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Clears the given {@link StringWriter} so that it can be passed to a new {@link MetricDataEncoder}, keeping its
+     * already allocated capacity.
+     *
+     * @param buffer the buffer to clear
+     * @return {@code buffer}
+     */
+    public static StringWriter reset(StringWriter buffer) {
+        buffer.getBuffer().setLength(0);
+        return buffer;
+    }
+
+    private final StringWriter buffer;
+
+    private final JsonGenerator generator;
+
+    /** A scratch buffer to compose the gauge names in */
+    private char[] source = new char[128];
+
+    /** The number of gauges added */
+    private int size;
+
+    /**
+     * @param tenantId the tenant the gauges belong to
+     * @param buffer an empty {@link StringWriter} to write to
+     */
+    public MetricDataEncoder(String tenantId, StringWriter buffer) {
+        super();
+        this.buffer = buffer;
+        try {
+            this.generator = jsonFactory.createGenerator(buffer);
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("metricData");
+            generator.writeStringField("tenantId", tenantId);
+            generator.writeArrayFieldStart("data");
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write to a StringWriter", e);
+        }
+    }
+
+    /**
+     * Adds a gauge named {@code resourceId + suffix}.
+     *
+     * @param resourceId the first part of the gauge name
+     * @param suffix the second part of the gauge name
+     * @param timestamp the timestamp of the value
+     * @param value the value
+     */
+    public void add(String resourceId, String suffix, long timestamp, double value) {
+        int idLength = resourceId.length();
+        int length = idLength + suffix.length();
+        if (length > source.length) {
+            source = new char[Math.max(length, source.length * 2)];
+        }
+        resourceId.getChars(0, idLength, source, 0);
+        suffix.getChars(0, suffix.length(), source, idLength);
+        try {
+            generator.writeStartObject();
+            generator.writeFieldName("source");
+            generator.writeString(source, 0, length);
+            generator.writeNumberField("timestamp", timestamp);
+            generator.writeNumberField("value", value);
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write to a StringWriter", e);
+        }
+        size++;
+    }
+
+    /**
+     * @return the number of gauges added so far
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the {@link StringWriter} this {@link MetricDataEncoder} writes to
+     */
+    public StringWriter getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Closes the JSON document. No gauges can be added afterwards.
+     *
+     * @return the JSON form of the {@link MetricDataMessage}
+     */
+    public String finish() {
+        try {
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write to a StringWriter", e);
+        }
+        return buffer.toString();
+    }
+
+}
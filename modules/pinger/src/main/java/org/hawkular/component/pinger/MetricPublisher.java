@@ -16,28 +16,60 @@
  */
 package org.hawkular.component.pinger;
 
-import java.util.Arrays;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
-import javax.ejb.Asynchronous;
+import javax.ejb.Schedule;
 import javax.ejb.Singleton;
 import javax.jms.ConnectionFactory;
 import javax.jms.JMSContext;
 import javax.jms.JMSProducer;
 import javax.jms.Queue;
 
-import org.hawkular.component.pinger.MetricDataMessage.MetricData;
-import org.hawkular.component.pinger.MetricDataMessage.SingleMetric;
-
 /**
- * Publish metrics data
+ * Publish metrics data. The metrics are not sent one {@link PingStatus} at a time, rather they are collected per
+ * tenant and sent as one {@link MetricDataMessage} per tenant once the batch of the given tenant reaches
+ * {@link PingerConfiguration#getMetricsBatchSize()} or once the oldest unsent metric is older than
+ * {@link PingerConfiguration#getMetricsFlushIntervalMillis()}, whichever comes first.
+ * <p>
+ * The batches are encoded to JSON by {@link MetricDataEncoder}s on the fly as the metrics are added to them, so that
+ * neither the intermediate message objects nor the databind reflection are needed. The JSON buffers of the sent
+ * batches are reused.
+ * <p>
+ * Concurrency assumptions: {@link #publish(PingStatus)} is a plain synchronous call made through
+ * {@link PingCycleCollector}, mostly on its collecting thread, so that adding a metric to a batch costs no container
+ * dispatch. The only other callers are the timers: {@link #flushExpired()} once a second and the stats reporting of
+ * {@link PingManager} once a minute. The container lock of this {@link Singleton} serializes them.
  *
  * @author Heiko W. Rupp
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
  */
 @Singleton
 public class MetricPublisher {
+
+    /** The metrics of a single tenant waiting for being sent */
+    private static class Batch {
+        private final MetricDataEncoder data;
+
+        /** The value of {@code System.nanoTime()} when the first metric was added to {@link #data} */
+        private final long createdNanos = System.nanoTime();
+
+        public Batch(String tenantId, StringWriter buffer) {
+            super();
+            this.data = new MetricDataEncoder(tenantId, buffer);
+        }
+    }
+
+    /** The maximal number of {@link #freeBuffers} to keep */
+    private static final int MAX_FREE_BUFFERS = 16;
+
     @Resource(mappedName = "java:/queue/hawkular/metrics/gauges/new")
     Queue gaugesQueue;
 
@@ -45,7 +77,30 @@ public class MetricPublisher {
     private ConnectionFactory connectionFactory;
 
     private JMSContext context;
-    private JMSProducer producer;
+    JMSProducer producer;
+
+    /** The unsent metrics per tenantId */
+    private final Map<String, Batch> batches = new HashMap<>();
+
+    /** The JSON buffers of the sent batches ready for reuse */
+    private final ArrayDeque<StringWriter> freeBuffers = new ArrayDeque<>();
+
+    /** See {@link PingerConfiguration#getMetricsBatchSize()} */
+    private final int batchSize = PingerConfiguration.getInstance().getMetricsBatchSize();
+
+    /** See {@link PingerConfiguration#getMetricsFlushIntervalMillis()} */
+    private final long flushIntervalNanos = TimeUnit.MILLISECONDS
+            .toNanos(PingerConfiguration.getInstance().getMetricsFlushIntervalMillis());
+
+    /** See {@link PingerConfiguration#getMetricsReportMode()} */
+    private final PingerConfiguration.ReportMode reportMode = PingerConfiguration.getInstance().getMetricsReportMode();
+
+    /** The last reported status codes, used only with {@link PingerConfiguration.ReportMode#CHANGES} */
+    private final StatusChangeTable changes = new StatusChangeTable(
+            TimeUnit.SECONDS.toMillis(PingerConfiguration.getInstance().getMetricsHeartbeatSeconds()));
+
+    /** The number of {@link PingStatus}es not reported because of {@link PingerConfiguration.ReportMode#CHANGES} */
+    private long suppressed;
 
     @PostConstruct
     public void createContext() {
@@ -54,38 +109,134 @@ public class MetricPublisher {
     }
 
     /**
-     * Submits data from {@link PingStatus} to Metrics via Bus
+     * Adds the data from {@link PingStatus} to the batch of the respective tenant and sends the batch to Metrics via
+     * Bus if it is full. With {@link PingerConfiguration.ReportMode#CHANGES}, the statuses whose code is the same as
+     * the last reported one are dropped unless the heartbeat of their destination is due.
      *
      * @param status
      *            the {@link PingStatus} to publish
      */
-    @Asynchronous
     public void publish(PingStatus status) {
+        if (reportMode == PingerConfiguration.ReportMode.CHANGES && !changes.checkOut(status)) {
+            suppressed++;
+            return;
+        }
         String resourceId = status.getDestination().getResourceId();
+        String tenantId = status.getDestination().getTenantId();
         long timestamp = status.getTimestamp();
 
-        MetricDataMessage message = new MetricDataMessage();
-        MetricData metricData = new MetricData();
+        Batch batch = batches.get(tenantId);
+        if (batch == null) {
+            StringWriter buffer = freeBuffers.poll();
+            batch = new Batch(tenantId, buffer == null ? new StringWriter() : buffer);
+            batches.put(tenantId, batch);
+        }
+        MetricDataEncoder data = batch.data;
+
+        data.add(resourceId, ".status.duration", timestamp, status.getDuration());
+        data.add(resourceId, ".status.code", timestamp, status.getCode());
+        PingTimings timings = status.getTimings();
+        addPhase(data, resourceId, ".status.duration.dns", timestamp, timings.getDns());
+        addPhase(data, resourceId, ".status.duration.connect", timestamp, timings.getConnect());
+        addPhase(data, resourceId, ".status.duration.tls", timestamp, timings.getTls());
+        addPhase(data, resourceId, ".status.duration.ttfb", timestamp, timings.getTtfb());
+        addPhase(data, resourceId, ".status.duration.body", timestamp, timings.getBody());
+        if (status.getBytesRead() >= 0) {
+            data.add(resourceId, ".status.size", timestamp, status.getBytesRead());
+        }
+
+        if (data.size() >= batchSize) {
+            batches.remove(tenantId);
+            send(data);
+        }
+    }
+
+    /**
+     * Sends the numbers the given {@link PingerStats.Interval} consists of right away as one message, each of them as
+     * a gauge named {@code resourceId} + the suffix given by {@link PingerStats.Interval#forEachGauge(
+     * java.util.function.ObjDoubleConsumer)}.
+     *
+     * @param tenantId the tenant to publish the gauges under
+     * @param resourceId the first part of the gauge names
+     * @param interval the statistics to publish
+     */
+    public void publish(String tenantId, String resourceId, PingerStats.Interval interval) {
+        StringWriter buffer = freeBuffers.poll();
+        MetricDataEncoder data = new MetricDataEncoder(tenantId, buffer == null ? new StringWriter() : buffer);
+        long timestamp = interval.getEnd();
+        interval.forEachGauge((suffix, value) -> data.add(resourceId, suffix, timestamp, value));
+        send(data);
+    }
+
+    /**
+     * Forgets the last reported status of the given {@link PingDestination}.
+     *
+     * @param destination the destination that is not pinged anymore
+     */
+    public void forget(PingDestination destination) {
+        changes.remove(destination);
+    }
 
-        SingleMetric durationMetric = new SingleMetric(resourceId + ".status.duration", timestamp,
-                status.getDuration());
-        SingleMetric statusCodeMetric = new SingleMetric(resourceId + ".status.code", timestamp, status.getCode());
+    /**
+     * @return the number of {@link PingStatus}es not reported because of
+     *         {@link PingerConfiguration.ReportMode#CHANGES}
+     */
+    public long getSuppressedCount() {
+        return suppressed;
+    }
 
-        metricData.setTenantId(status.getDestination().getTenantId());
-        metricData.setData(Arrays.asList(durationMetric, statusCodeMetric));
-        message.setMetricData(metricData);
+    /**
+     * Invoked every second to send the batches whose oldest metric is older than
+     * {@link PingerConfiguration#getMetricsFlushIntervalMillis()}.
+     */
+    @Schedule(minute = "*", hour = "*", second = "*", persistent = false)
+    public void flushExpired() {
+        long now = System.nanoTime();
+        for (Iterator<Map.Entry<String, Batch>> it = batches.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Batch> entry = it.next();
+            if (now - entry.getValue().createdNanos >= flushIntervalNanos) {
+                it.remove();
+                send(entry.getValue().data);
+            }
+        }
+    }
+
+    /**
+     * Sends all pending batches.
+     */
+    public void flush() {
+        for (Batch batch : batches.values()) {
+            send(batch.data);
+        }
+        batches.clear();
+    }
 
+    private void send(MetricDataEncoder data) {
         try {
-            producer.send(gaugesQueue, message.toJSON());
+            producer.send(gaugesQueue, data.finish());
         } catch (Exception e) {
             Log.LOG.eCouldNotSendMessage(e);
         }
+        if (freeBuffers.size() < MAX_FREE_BUFFERS) {
+            freeBuffers.push(MetricDataEncoder.reset(data.getBuffer()));
+        }
+    }
 
+    /**
+     * Adds a {@code <resourceId><suffix>} gauge, such as {@code <resourceId>.status.duration.dns}, to {@code data}
+     * unless the given phase was not measured.
+     */
+    private static void addPhase(MetricDataEncoder data, String resourceId, String suffix, long timestamp,
+            int duration) {
+        if (duration != PingStatus.INVALID_DURATION) {
+            data.add(resourceId, suffix, timestamp, duration);
+        }
     }
 
     @PreDestroy
     public void closeContext() {
         if (context != null) {
+            flush();
             try {
                 context.close();
             } catch (Exception ignored) {
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.apache.http.concurrent.Cancellable;
+
+/**
+ * A single round of pings sharing one deadline. The pings report their outcomes through {@link #complete(PingStatus)}
+ * from whatever thread they happen to finish on and the owner of the cycle consumes those outcomes one by one through
+ * {@link #next()} in the order in which they have arrived.
+ * <p>
+ * The buffer of the results that have arrived but have not been consumed yet is bounded. When it is full,
+ * {@link #complete(PingStatus)} blocks until the consumer catches up or until the deadline passes, so that a slow
+ * consumer slows down the pinging threads rather than letting the unconsumed results pile up in memory.
+ * <p>
+ * Concurrency assumptions: {@link #complete(PingStatus)} can be called concurrently from any random thread, all other
+ * methods are expected to be called from the thread that owns the cycle.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class PingCycle {
+
+    /** The value of {@code System.nanoTime()} when this cycle was created */
+    private final long startNanos;
+
+    /** The value of {@code System.nanoTime()} after which no more results are accepted */
+    private final long deadlineNanos;
+
+    /** The destinations whose results have not been consumed yet */
+    private final Set<PingDestination> pending = ConcurrentHashMap.newKeySet();
+
+    /** The means to abort the requests that are still in flight */
+    private final Map<PingDestination, Cancellable> inFlight = new ConcurrentHashMap<>();
+
+    /** The results that have arrived but have not been consumed yet */
+    private final BlockingQueue<PingStatus> completed;
+
+    /** Called once per destination when its result is consumed or when it expires */
+    private final Consumer<PingDestination> onDone;
+
+    /** Called whenever a result is added to {@link #completed} */
+    private final Runnable onArrival;
+
+    /** The number of results refused by {@link #offer(PingStatus)} because {@link #completed} was full */
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    /**
+     * Creates a new {@link PingCycle} whose deadline is {@code timeoutMillis} from now.
+     *
+     * @param timeoutMillis the time in milliseconds given to all pings of this cycle
+     * @param bufferSize how many results can wait for being consumed before {@link #complete(PingStatus)} starts to
+     *        block
+     */
+    public PingCycle(long timeoutMillis, int bufferSize) {
+        this(timeoutMillis, bufferSize, destination -> {
+        });
+    }
+
+    /**
+     * Creates a new {@link PingCycle} whose deadline is {@code timeoutMillis} from now.
+     *
+     * @param timeoutMillis the time in milliseconds given to all pings of this cycle
+     * @param bufferSize how many results can wait for being consumed before {@link #complete(PingStatus)} starts to
+     *        block
+     * @param onDone the callback to notify once per destination when its result is consumed by {@link #next()} or
+     *        when it is returned by {@link #expire()}; it is called from the thread that owns the cycle
+     */
+    public PingCycle(long timeoutMillis, int bufferSize, Consumer<PingDestination> onDone) {
+        this(timeoutMillis, bufferSize, onDone, () -> {
+        });
+    }
+
+    /**
+     * Creates a new {@link PingCycle} whose deadline is {@code timeoutMillis} from now.
+     *
+     * @param timeoutMillis the time in milliseconds given to all pings of this cycle
+     * @param bufferSize how many results can wait for being consumed before {@link #complete(PingStatus)} starts to
+     *        block
+     * @param onDone the callback to notify once per destination when its result is consumed by {@link #next()} or
+     *        {@link #poll()} or when it is returned by {@link #expire()}; it is called from the thread that owns the
+     *        cycle
+     * @param onArrival the callback to notify whenever a result becomes available for {@link #poll()}; it is called
+     *        from the thread that has handed over the result and thus must not block
+     */
+    public PingCycle(long timeoutMillis, int bufferSize, Consumer<PingDestination> onDone, Runnable onArrival) {
+        super();
+        this.startNanos = System.nanoTime();
+        this.deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.completed = new ArrayBlockingQueue<>(bufferSize);
+        this.onDone = onDone;
+        this.onArrival = onArrival;
+    }
+
+    /**
+     * Registers the given {@link PingDestination} as a member of this cycle. Must be called before the ping to the
+     * given {@link PingDestination} is started.
+     *
+     * @param destination the destination to add
+     */
+    public void add(PingDestination destination) {
+        pending.add(destination);
+    }
+
+    /**
+     * Registers a {@link Cancellable} through which {@link #expire()} can abort the request to the given
+     * {@link PingDestination} should it still be in flight when the deadline passes. Aborting the request closes its
+     * connection which unblocks any thread waiting on it, so that a hung host cannot hold a pooled connection and a
+     * pinging thread past the end of this cycle. It is safe to call this method concurrently from any random thread.
+     *
+     * @param destination the destination being pinged
+     * @param cancellable the {@link Cancellable} to abort the request with
+     */
+    public void started(PingDestination destination, Cancellable cancellable) {
+        inFlight.put(destination, cancellable);
+        if (!pending.contains(destination)) {
+            /* the cycle has expired already */
+            abort(destination);
+        }
+    }
+
+    /**
+     * Hands over the outcome of a ping to this cycle. It is safe to call this method concurrently from any random
+     * thread. If the buffer of unconsumed results is full, this method blocks until there is some space in it or until
+     * the deadline passes. Results arriving after the deadline are ignored.
+     *
+     * @param status the outcome of a ping
+     */
+    public void complete(PingStatus status) {
+        inFlight.remove(status.getDestination());
+        try {
+            if (completed.offer(status, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                onArrival.run();
+            } else {
+                Log.LOG.debugf("Dropping a result that arrived past the deadline: %s", status);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands over the outcome of a ping to this cycle without ever blocking. This is the variant of
+     * {@link #complete(PingStatus)} for the threads that must not wait, such as the I/O dispatcher threads of
+     * {@link AsyncPinger}. If the buffer of unconsumed results is full, the result is dropped and counted in
+     * {@link #getDroppedCount()}; its destination then stays pending and is reported as a timeout once the cycle
+     * expires. Results arriving after the deadline are ignored. It is safe to call this method concurrently from any
+     * random thread.
+     *
+     * @param status the outcome of a ping
+     * @return {@code true} if the result was accepted, {@code false} otherwise
+     */
+    public boolean offer(PingStatus status) {
+        inFlight.remove(status.getDestination());
+        if (System.nanoTime() - deadlineNanos >= 0) {
+            Log.LOG.debugf("Dropping a result that arrived past the deadline: %s", status);
+            return false;
+        } else if (!completed.offer(status)) {
+            dropped.incrementAndGet();
+            Log.LOG.debugf("Dropping a result because the result buffer is full: %s", status);
+            return false;
+        }
+        onArrival.run();
+        return true;
+    }
+
+    /**
+     * @return the number of results dropped by {@link #offer(PingStatus)} because the buffer of unconsumed results
+     *         was full
+     */
+    public int getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Waits for the next result of this cycle.
+     *
+     * @return the next {@link PingStatus} or {@code null} if all results have been consumed already or if the deadline
+     *         has passed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public PingStatus next() throws InterruptedException {
+        while (!pending.isEmpty()) {
+            long remaining = deadlineNanos - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            PingStatus status = completed.poll(remaining, TimeUnit.NANOSECONDS);
+            if (status == null) {
+                return null;
+            } else if (pending.remove(status.getDestination())) {
+                onDone.accept(status.getDestination());
+                return status;
+            }
+            /* a late or duplicate result - ignore it */
+        }
+        return null;
+    }
+
+    /**
+     * Returns the next result of this cycle that is available already without waiting for any further results. Unlike
+     * {@link #next()}, this also returns the results that have arrived in time but have not been consumed before the
+     * deadline.
+     *
+     * @return the next {@link PingStatus} or {@code null} if there is none available at the moment
+     */
+    public PingStatus poll() {
+        PingStatus status;
+        while ((status = completed.poll()) != null) {
+            if (pending.remove(status.getDestination())) {
+                onDone.accept(status.getDestination());
+                return status;
+            }
+            /* a late or duplicate result - ignore it */
+        }
+        return null;
+    }
+
+    /**
+     * @return {@code true} if the results of all destinations have been consumed or expired, {@code false} otherwise
+     */
+    public boolean isDone() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * @return the number of nanoseconds remaining until the deadline of this cycle, zero or negative if the deadline
+     *         has passed already
+     */
+    public long getRemainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    /**
+     * Closes this cycle, aborts the requests that are still in flight and returns the destinations whose results have
+     * not arrived.
+     *
+     * @return the list of {@link PingDestination}s whose pings have not finished in time
+     */
+    public List<PingDestination> expire() {
+        List<PingDestination> result = new ArrayList<>(pending);
+        pending.removeAll(result);
+        for (PingDestination destination : result) {
+            abort(destination);
+            onDone.accept(destination);
+        }
+        return result;
+    }
+
+    private void abort(PingDestination destination) {
+        Cancellable cancellable = inFlight.remove(destination);
+        if (cancellable != null) {
+            Log.LOG.debugf("Aborting the request to %s", destination.getUrl());
+            cancellable.cancel();
+        }
+    }
+
+    /**
+     * @return the number of milliseconds elapsed since this cycle was created
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+}
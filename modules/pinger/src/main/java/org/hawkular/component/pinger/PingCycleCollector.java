@@ -0,0 +1,238 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+import javax.ejb.Asynchronous;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+
+/**
+ * Bean that collects the results of all running {@link PingCycle}s and passes them to the publishers. A single
+ * long-lived {@link #run()} loop serves all cycles submitted via {@link #submit(PingCycle, Map, int)} so that the
+ * collecting occupies one asynchronous EJB thread regardless of how many cycles overlap, rather than parking one
+ * thread per tick for up to the whole cycle timeout.
+ * <p>
+ * The publishers are invoked synchronously on the collecting thread. If they are slow, the results pile up in the
+ * bounded buffers of the {@link PingCycle}s rather than in the unbounded queue of the EJB async executor, so that
+ * the pings get throttled instead.
+ * <p>
+ * Concurrency: {@link #submit(PingCycle, Map, int)} and {@link #publishAll(List)} may be called from any thread. The
+ * {@link #active} cycles are touched only by the thread running {@link #run()}.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class PingCycleCollector {
+
+    /** A submitted {@link PingCycle} together with the data needed to finish it */
+    private static final class Entry {
+        private final PingCycle cycle;
+        private final Map<PingDestination, Future<?>> futures;
+        private final int timeoutMillis;
+
+        private Entry(PingCycle cycle, Map<PingDestination, Future<?>> futures, int timeoutMillis) {
+            super();
+            this.cycle = cycle;
+            this.futures = futures;
+            this.timeoutMillis = timeoutMillis;
+        }
+    }
+
+    /** The longest time the {@link #run()} loop sleeps when there is no cycle with a nearer deadline */
+    private static final long MAX_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @EJB
+    MetricPublisher metricPublisher;
+
+    @EJB
+    TraitsPublisher traitsPublisher;
+
+    @EJB
+    StatusCache statusCache;
+
+    @EJB
+    CircuitBreaker circuitBreaker;
+
+    /** Cycles submitted but not yet picked up by the loop */
+    private final Queue<Entry> submitted = new ConcurrentLinkedQueue<>();
+
+    /** Cycles being collected; owned by the loop thread */
+    private final List<Entry> active = new ArrayList<>();
+
+    /** Released whenever there is something new for the loop: a submitted cycle or an arrived result */
+    private final Semaphore signal = new Semaphore(0);
+
+    /** The callback to pass to the {@link PingCycle}s so that their results wake the loop up */
+    private final Runnable arrivalSignal = signal::release;
+
+    private volatile boolean stopped;
+
+    /**
+     * @return the callback to pass as {@code onArrival} to the {@link PingCycle}s that are going to be
+     *         {@link #submit(PingCycle, Map, int) submitted} to this collector
+     */
+    public Runnable getArrivalSignal() {
+        return arrivalSignal;
+    }
+
+    /**
+     * Hands the given {@link PingCycle} over to the {@link #run()} loop that passes each of its results to the
+     * publishers as soon as it arrives. The pings that have not finished before the deadline of the {@code cycle} are
+     * cancelled and reported as timeouts. This method returns immediately.
+     *
+     * @param cycle the cycle to collect the results of
+     * @param futures the {@link Future}s of the pings in the {@code cycle} that can be used to cancel them
+     * @param timeoutMillis the timeout of the {@code cycle} to report for the timed out pings
+     */
+    public void submit(PingCycle cycle, Map<PingDestination, Future<?>> futures, int timeoutMillis) {
+        submitted.add(new Entry(cycle, futures, timeoutMillis));
+        signal.release();
+    }
+
+    /**
+     * The collecting loop. Supposed to be started once, from {@link PingManager#startUp()}; it runs until this bean
+     * is destroyed.
+     */
+    @Asynchronous
+    public void run() {
+        Log.LOG.debugf("Ping cycle collector started");
+        while (!stopped) {
+            try {
+                long waitNanos = collectAvailable();
+                signal.tryAcquire(waitNanos < 0 ? MAX_WAIT_NANOS : waitNanos, TimeUnit.NANOSECONDS);
+                signal.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                Log.LOG.eCouldNotCollect(e);
+            }
+        }
+        Log.LOG.debugf("Ping cycle collector stopped");
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        stopped = true;
+        signal.release();
+    }
+
+    /**
+     * Collects the submitted cycles till all of them are finished. Meant for the tests that run without the
+     * {@link #run()} loop.
+     *
+     * @throws InterruptedException when interrupted while waiting for the results
+     */
+    void collectAll() throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = collectAvailable()) >= 0) {
+            signal.tryAcquire(waitNanos, TimeUnit.NANOSECONDS);
+            signal.drainPermits();
+        }
+    }
+
+    /**
+     * Publishes the results available at the moment in all active cycles and finishes the cycles that are done or
+     * past their deadline.
+     *
+     * @return the number of nanoseconds to wait for further results or {@code -1} if there are no active cycles
+     */
+    private long collectAvailable() {
+        Entry entry;
+        while ((entry = submitted.poll()) != null) {
+            active.add(entry);
+        }
+        if (active.isEmpty()) {
+            return -1;
+        }
+        long waitNanos = MAX_WAIT_NANOS;
+        for (Iterator<Entry> it = active.iterator(); it.hasNext();) {
+            entry = it.next();
+            PingCycle cycle = entry.cycle;
+            PingStatus status;
+            while ((status = cycle.poll()) != null) {
+                publish(status);
+            }
+            long remainingNanos = cycle.getRemainingNanos();
+            if (cycle.isDone() || remainingNanos <= 0) {
+                it.remove();
+                finish(entry);
+            } else {
+                waitNanos = Math.min(waitNanos, remainingNanos);
+            }
+        }
+        return waitNanos;
+    }
+
+    private void finish(Entry entry) {
+        PingCycle cycle = entry.cycle;
+        PingerStats stats = PingerStats.getInstance();
+        try {
+            // Cancel hanging pings and report them as timeouts
+            List<PingDestination> timedOut = cycle.expire();
+            for (PingDestination destination : timedOut) {
+                entry.futures.get(destination).cancel(true);
+                final long now = System.currentTimeMillis();
+                publish(PingStatus.timeout(destination, now, entry.timeoutMillis));
+                Log.LOG.debugf("Timed out: %s", destination.getUrl());
+            }
+
+            if (cycle.getDroppedCount() > 0) {
+                Log.LOG.wResultsDropped(cycle.getDroppedCount());
+            }
+
+            long elapsedMillis = cycle.getElapsedMillis();
+            stats.recordCycle(elapsedMillis);
+            Log.LOG.dPingCycleFinished(entry.futures.size(), elapsedMillis, timedOut.size());
+        } finally {
+            stats.cycleDone();
+        }
+    }
+
+    /**
+     * Passes the given {@link PingStatus}es that were produced without pinging to the publishers in the calling thread.
+     *
+     * @param statuses the statuses to publish
+     */
+    public void publishAll(List<PingStatus> statuses) {
+        for (PingStatus status : statuses) {
+            publish(status);
+        }
+    }
+
+    private void publish(PingStatus status) {
+        PingerStats.getInstance().record(status);
+        circuitBreaker.record(status);
+        statusCache.put(status);
+        metricPublisher.publish(status);
+        traitsPublisher.publish(status);
+    }
+}
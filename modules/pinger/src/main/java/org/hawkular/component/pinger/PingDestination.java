@@ -17,11 +17,18 @@
 package org.hawkular.component.pinger;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.hawkular.inventory.api.model.Resource;
 
 /**
  * A destination for pinging.
+ * <p>
+ * There can be hundreds of thousands of {@link PingDestination}s, therefore they are kept compact: the tenantId,
+ * environmentId and method are interned (up to a bound), because there are only a few distinct values of them, and the
+ * hash code is computed only once in the constructor. On top of that, a {@link PingDestination} registered in a
+ * {@link DestinationTable} has a dense int {@link #getSlot() slot} under which the per destination state can be kept
+ * in arrays rather than in hash maps.
  *
  * @author Heiko W. Rupp
  * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
@@ -30,7 +37,7 @@ public class PingDestination {
     public static final String URL_TYPE = "URL";
 
     public enum ResourceField {
-        url, method
+        url, method, interval, connectTimeout, connectionRequestTimeout, socketTimeout, bodyPolicy, bodyLimit
     };
 
     public static boolean isUrl(Resource r) {
@@ -40,17 +47,102 @@ public class PingDestination {
     public static PingDestination from(Resource r) {
         Map<String, Object> props = r.getProperties();
         return new PingDestination(r.getPath().ids().getTenantId(), r.getPath().ids().getEnvironmentId(), r.getId(),
-                (String) props.get(ResourceField.url.name()), (String) props.get(ResourceField.method.name()));
+                (String) props.get(ResourceField.url.name()), (String) props.get(ResourceField.method.name()),
+                parseInterval(props.get(ResourceField.interval.name())),
+                PingTimeouts.of(parsePositiveInt(props.get(ResourceField.connectTimeout.name())),
+                        parsePositiveInt(props.get(ResourceField.connectionRequestTimeout.name())),
+                        parsePositiveInt(props.get(ResourceField.socketTimeout.name()))),
+                BodyPolicy.of(props.get(ResourceField.bodyPolicy.name()), props.get(ResourceField.bodyLimit.name()),
+                        BodyPolicy.DEFAULT));
+    }
+
+    /**
+     * @param value the value of the {@link ResourceField#interval} property, can be {@code null}
+     * @return the interval in seconds or {@value #DEFAULT_INTERVAL} if {@code value} is {@code null} or is not a
+     *         positive integer
+     */
+    static int parseInterval(Object value) {
+        int result = parsePositiveInt(value);
+        return result > 0 ? result : DEFAULT_INTERVAL;
+    }
+
+    /**
+     * @param value a {@link Number} or a {@link String} resource property value, can be {@code null}
+     * @return the value of {@code value} as {@code int} or {@code -1} if {@code value} is {@code null} or is not a
+     *         positive integer
+     */
+    static int parsePositiveInt(Object value) {
+        if (value instanceof Number) {
+            int result = ((Number) value).intValue();
+            return result > 0 ? result : -1;
+        } else if (value instanceof String) {
+            try {
+                int result = Integer.parseInt(((String) value).trim());
+                return result > 0 ? result : -1;
+            } catch (NumberFormatException e) {
+                Log.LOG.debugf("Ignoring an invalid integer resource property value '%s'", value);
+            }
+        }
+        return -1;
+    }
+
+    /** The value of {@link #getSlot()} of a {@link PingDestination} not registered in any {@link DestinationTable} */
+    public static final int NO_SLOT = -1;
+
+    /**
+     * The maximal number of entries in {@link #pool}; the values coming after that are not interned so that the pool
+     * cannot grow without bounds when the tenants come and go
+     */
+    private static final int POOL_SIZE = 4096;
+
+    /** The canonical instances of tenantIds, environmentIds and methods */
+    private static final Map<String, String> pool = new ConcurrentHashMap<>();
+
+    /**
+     * @param value the {@link String} to intern, can be {@code null}
+     * @return the canonical instance equal to {@code value} or {@code value} itself if there is none and the pool is
+     *         full already
+     */
+    static String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String result = pool.get(value);
+        if (result == null) {
+            if (pool.size() >= POOL_SIZE) {
+                return value;
+            }
+            result = pool.putIfAbsent(value, value);
+            if (result == null) {
+                result = value;
+            }
+        }
+        return result;
     }
 
     /** The default method {@value} */
     public static final String DEFAULT_METHOD = "GET";
 
+    /** The method {@value} sent instead of {@link #DEFAULT_METHOD} with {@link BodyPolicy#HEADERS} */
+    static final String HEAD_METHOD = "HEAD";
+
+    /** The default ping interval in seconds, the value is {@value} */
+    public static final int DEFAULT_INTERVAL = 20;
+
     private final String tenantId;
     private final String environmentId;
     private final String resourceId;
     private final String url;
     private final String method;
+    private final int interval;
+    private final PingTimeouts timeouts;
+    private final BodyPolicy bodyPolicy;
+
+    /** Computed once in the constructor as all the fields that enter it are final */
+    private final int hash;
+
+    /** Assigned and reset by {@link DestinationTable} */
+    private volatile int slot = NO_SLOT;
 
     /**
      * Creates a new {@link PingDestination} using the default method {@value #DEFAULT_METHOD}.
@@ -75,26 +167,71 @@ public class PingDestination {
      *        {@value #DEFAULT_METHOD}
      */
     public PingDestination(String tenantId, String environmentId, String resourceId, String url, String method) {
-        this.tenantId = tenantId;
-        this.environmentId = environmentId;
+        this(tenantId, environmentId, resourceId, url, method, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Creates a new {@link PingDestination}
+     *
+     * @param tenantId the owner of the present {@link PingDestination}
+     * @param environmentId the environment (test/live) the present {@link PingDestination} belongs to
+     * @param resourceId the resourceId of this destination as taken from Hawkular Inventory
+     * @param url the URL to ping
+     * @param method the HTTP method to use in the ping request or null to use the default method
+     *        {@value #DEFAULT_METHOD}
+     * @param interval how often to ping the present {@link PingDestination} in seconds
+     */
+    public PingDestination(String tenantId, String environmentId, String resourceId, String url, String method,
+            int interval) {
+        this(tenantId, environmentId, resourceId, url, method, interval, PingTimeouts.DEFAULT, BodyPolicy.DEFAULT);
+    }
+
+    /**
+     * Creates a new {@link PingDestination}
+     *
+     * @param tenantId the owner of the present {@link PingDestination}
+     * @param environmentId the environment (test/live) the present {@link PingDestination} belongs to
+     * @param resourceId the resourceId of this destination as taken from Hawkular Inventory
+     * @param url the URL to ping
+     * @param method the HTTP method to use in the ping request or null to use the default method
+     *        {@value #DEFAULT_METHOD}
+     * @param interval how often to ping the present {@link PingDestination} in seconds
+     * @param timeouts the socket level timeouts to use when pinging or {@code null} to use
+     *        {@link PingTimeouts#DEFAULT}
+     * @param bodyPolicy how much of the response body to read or {@code null} to use {@link BodyPolicy#DEFAULT}
+     */
+    public PingDestination(String tenantId, String environmentId, String resourceId, String url, String method,
+            int interval, PingTimeouts timeouts, BodyPolicy bodyPolicy) {
+        this.tenantId = intern(tenantId);
+        this.environmentId = intern(environmentId);
         this.resourceId = resourceId;
         this.url = url;
-        this.method = method == null ? DEFAULT_METHOD : method;
+        this.method = method == null ? DEFAULT_METHOD : intern(method);
+        this.interval = interval;
+        this.timeouts = timeouts == null ? PingTimeouts.DEFAULT : timeouts;
+        this.bodyPolicy = bodyPolicy == null ? BodyPolicy.DEFAULT : bodyPolicy;
+        this.hash = computeHashCode();
     }
 
-
-    @Override
-    public int hashCode() {
+    private int computeHashCode() {
         final int prime = 31;
         int result = 1;
+        result = prime * result + bodyPolicy.hashCode();
         result = prime * result + ((environmentId == null) ? 0 : environmentId.hashCode());
+        result = prime * result + interval;
         result = prime * result + ((method == null) ? 0 : method.hashCode());
         result = prime * result + ((resourceId == null) ? 0 : resourceId.hashCode());
         result = prime * result + ((tenantId == null) ? 0 : tenantId.hashCode());
+        result = prime * result + timeouts.hashCode();
         result = prime * result + ((url == null) ? 0 : url.hashCode());
         return result;
     }
 
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj)
@@ -104,11 +241,17 @@ public class PingDestination {
         if (getClass() != obj.getClass())
             return false;
         PingDestination other = (PingDestination) obj;
+        if (hash != other.hash)
+            return false;
+        if (!bodyPolicy.equals(other.bodyPolicy))
+            return false;
         if (environmentId == null) {
             if (other.environmentId != null)
                 return false;
         } else if (!environmentId.equals(other.environmentId))
             return false;
+        if (interval != other.interval)
+            return false;
         if (method == null) {
             if (other.method != null)
                 return false;
@@ -124,6 +267,8 @@ public class PingDestination {
                 return false;
         } else if (!tenantId.equals(other.tenantId))
             return false;
+        if (!timeouts.equals(other.timeouts))
+            return false;
         if (url == null) {
             if (other.url != null)
                 return false;
@@ -139,8 +284,9 @@ public class PingDestination {
                 + "tenantId='" + tenantId + '\''
                 + "environmentId='" + environmentId + '\''
                 + "resourceId='" + resourceId + '\''
-                + ", url='" + url + '\'' + ", method='" + method
-                + '\'' + '}';
+                + ", url='" + url + '\'' + ", method='" + method + '\''
+                + ", interval=" + interval + ", timeouts=" + timeouts
+                + ", bodyPolicy=" + bodyPolicy + '}';
     }
 
     public String getTenantId() {
@@ -162,4 +308,48 @@ public class PingDestination {
     public String getMethod() {
         return method;
     }
+
+    /**
+     * @return the HTTP method to actually send: {@code HEAD} if the {@link #getBodyPolicy() body policy} is
+     *         {@link BodyPolicy.Mode#HEADERS} and the {@link #getMethod() method} is the default
+     *         {@value #DEFAULT_METHOD}, so that no body is transferred and the connection stays reusable; otherwise
+     *         {@link #getMethod()}
+     */
+    public String getRequestMethod() {
+        return bodyPolicy.getMode() == BodyPolicy.Mode.HEADERS && DEFAULT_METHOD.equals(method) ? HEAD_METHOD
+                : method;
+    }
+
+    /**
+     * @return how often to ping the present {@link PingDestination} in seconds
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return the socket level timeouts to use when pinging the present {@link PingDestination}
+     */
+    public PingTimeouts getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * @return how much of the response body to read when pinging the present {@link PingDestination}
+     */
+    public BodyPolicy getBodyPolicy() {
+        return bodyPolicy;
+    }
+
+    /**
+     * @return the dense index of the present {@link PingDestination} in its {@link DestinationTable} or
+     *         {@link #NO_SLOT} if it is not registered in any
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    void setSlot(int slot) {
+        this.slot = slot;
+    }
 }
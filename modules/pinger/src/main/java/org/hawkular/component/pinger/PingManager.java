@@ -16,17 +16,19 @@
  */
 package org.hawkular.component.pinger;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.ejb.EJB;
 import javax.ejb.Lock;
 import javax.ejb.LockType;
@@ -34,6 +36,8 @@ import javax.ejb.Schedule;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
 
+import org.apache.http.pool.PoolStats;
+import org.hawkular.component.pinger.PingStatus.FailureKind;
 import org.hawkular.inventory.api.Action;
 import org.hawkular.inventory.api.Interest;
 import org.hawkular.inventory.api.Inventory;
@@ -50,151 +54,430 @@ import org.hawkular.inventory.api.model.Resource;
 @Singleton
 public class PingManager {
 
-    /** How many rounds a WAIT_MILLIS do we wait for results to come in? */
-    private static final int ROUNDS = 15;
-    /** How long do we wait between each round in milliseconds */
-    private static final int WAIT_MILLIS = 500;
     /**
-     * Rough timeout in milliseconds for the pings after which the pings are cancelled and reported as timeouted. Note
-     * that in practice, the real time given to pings can be longer.
+     * Timeout in milliseconds for a whole {@link PingCycle} after which the unfinished pings are cancelled and
+     * reported as timeouted.
      */
-    private static final int TIMEOUT_MILLIS = ROUNDS * WAIT_MILLIS;
+    private static final int TIMEOUT_MILLIS = 7500;
 
     @EJB
     Pinger pinger;
 
-    private final Set<PingDestination> destinations = new HashSet<>();
+    /** The non-blocking ping engine or {@code null} if {@link PingerConfiguration.Engine#BLOCKING} is used */
+    AsyncPinger asyncPinger;
+
+    /** Decides which destinations are due in the given second */
+    final PingScheduler scheduler = new PingScheduler();
+
+    /** Shares the ping capacity among tenants and keeps the pings of a single host apart */
+    final TenantDispatcher dispatcher = new TenantDispatcher();
+
+    /** The self-instrumentation */
+    final PingerStats stats = PingerStats.getInstance();
+
+    @EJB
+    PingCycleCollector cycleCollector;
+
+    @EJB
+    TraitsCache traitsCache;
+
+    @EJB
+    ClusterMembership membership;
+
+    @EJB
+    StatusCache statusCache;
 
     @EJB
     MetricPublisher metricPublisher;
 
     @EJB
-    TraitsPublisher traitsPublisher;
+    CircuitBreaker circuitBreaker;
+
+    /** Where to save the pinger state or {@code null} if {@link PingerConfiguration#isSnapshotEnabled()} is false */
+    private Path snapshotFile;
+
+    /**
+     * The destinations restored from {@link #snapshotFile} that were not loaded from the inventory yet, by their
+     * {@link #resourceKey(PingDestination)}, or {@code null} if there is nothing to reconcile
+     */
+    private Map<String, PingDestination> unconfirmed;
+
+    /** Loads the URLs existing at startup, {@code null} once all of them are loaded */
+    DestinationLoader loader;
+
+    /** The {@link HashRing} deciding which of the {@link #registry} destinations are pinged by this node */
+    private HashRing ring;
 
     @javax.annotation.Resource(lookup = "java:global/Hawkular/Inventory")
     Inventory inventory;
 
-    final UrlChangesCollector urlChangesCollector = new UrlChangesCollector();
+    /** The destinations to ping, updated directly by the {@link #inventory} observers */
+    final DestinationRegistry registry = new DestinationRegistry();
 
     @PostConstruct
     public void startUp() {
 
+        if (PingerConfiguration.getInstance().getEngine() == PingerConfiguration.Engine.NIO) {
+            try {
+                asyncPinger = new AsyncPinger();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not start the non-blocking ping engine", e);
+            }
+        }
+
         /*
          * Add the observers before reading the existing URLs from the inventory so that we do not loose the URLs that
          * could have been added or removed between those two calls.
          */
         inventory.observable(Interest.in(Resource.class).being(Action.created())).subscribe(
-                urlChangesCollector.getUrlCreatedAction());
+                registry.getUrlCreatedAction());
         inventory.observable(Interest.in(Resource.class).being(Action.deleted())).subscribe(
-                urlChangesCollector.getUrlDeletedAction());
+                registry.getUrlDeletedAction());
 
         // we use just an observable inventory here, because it allows us to see all the tenants. This essentially
         // circumvents any authz present on the inventory.
         // We need that though because pinger doesn't have storage of its own and is considered "trusted", so it's ok.
-        Set<Resource> urls = inventory.tenants().getAll().resourceTypes().getAll(With.id(PingDestination.URL_TYPE))
-                .resources().getAll().entities();
-        Log.LOG.iInitializedWithUrls(urls.size());
+        int pageSize = PingerConfiguration.getInstance().getBootstrapPageSize();
+        loader = new DestinationLoader(inventory.tenants().getAll().resourceTypes()
+                .getAll(With.id(PingDestination.URL_TYPE)).resources().getAll(), pageSize);
+        Log.LOG.iInitializedWithUrls(pageSize);
+
+        ring = membership.getRing();
+        if (PingerConfiguration.getInstance().isSnapshotEnabled()) {
+            snapshotFile = Paths.get(PingerConfiguration.getInstance().getSnapshotFile());
+            restoreSnapshot();
+        }
+
+        /* the first page right away, the rest of them in the subsequent ticks */
+        loadNextPage();
+
+        stats.registerMBean();
+
+        /* a single long-lived loop collecting the results of all ping cycles */
+        cycleCollector.run();
+    }
+
+    /**
+     * Restores the destinations and their last known state from {@link #snapshotFile} so that they can be pinged
+     * before they are loaded from the inventory. A restored destination is replaced by the one loaded for the same
+     * resource as soon as the latter arrives, even if its properties have changed in the meantime. The restored
+     * destinations not confirmed by the inventory are removed once all pages are loaded.
+     */
+    private void restoreSnapshot() {
+        if (!Files.exists(snapshotFile)) {
+            Log.LOG.debugf("No pinger snapshot found in %s", snapshotFile);
+            return;
+        }
+        long start = System.nanoTime();
+        Map<String, PingDestination> restored = new HashMap<>();
+        try {
+            PingerSnapshot.read(snapshotFile, entry -> {
+                PingDestination dest = entry.getDestination();
+                addInitial(dest);
+                restored.put(resourceKey(dest), dest);
+                if (entry.getTraits() != null) {
+                    traitsCache.restore(dest, entry.getTraits());
+                }
+                if (entry.getStatus() != null) {
+                    statusCache.put(entry.getStatus());
+                }
+            });
+            unconfirmed = restored;
+            Log.LOG.iSnapshotRestored(restored.size(), snapshotFile.toString(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            Log.LOG.wCouldNotReadSnapshot(snapshotFile.toString(), e);
+            /* the inventory is going to tell which of the restored ones are still valid */
+            unconfirmed = restored;
+        }
+    }
 
-        for (Resource r : urls) {
-            PingDestination dest = PingDestination.from(r);
-            destinations.add(dest);
-            Log.LOG.debugf("Added initial URL to ping: %s", dest.getUrl());
+    /**
+     * This method is invoked every minute. It saves the destinations and their last known state to
+     * {@link #snapshotFile} if {@link PingerConfiguration#isSnapshotEnabled()}.
+     */
+    @Lock(LockType.READ)
+    @Schedule(minute = "*", hour = "*", persistent = false)
+    public void writeSnapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            int count = PingerSnapshot.write(snapshotFile, writer -> {
+                for (PingDestination dest : registry.snapshot()) {
+                    writer.write(new PingerSnapshot.Entry(dest, statusCache.get(dest), traitsCache.get(dest)));
+                }
+            });
+            Log.LOG.dSnapshotWritten(count, snapshotFile.toString(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            Log.LOG.wCouldNotWriteSnapshot(snapshotFile.toString(), e);
+        }
+    }
+
+    private void loadNextPage() {
+        loader.loadNextPage(this::addLoaded);
+        if (loader.isDone()) {
+            loader = null;
+            if (unconfirmed != null) {
+                /* restored from the snapshot but gone from the inventory */
+                for (PingDestination dest : unconfirmed.values()) {
+                    registry.remove(dest);
+                }
+                Log.LOG.debugf("Removed %d URLs restored from snapshot but not found in inventory",
+                        unconfirmed.size());
+                unconfirmed = null;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        stats.unregisterMBean();
+        writeSnapshot();
+        try {
+            if (asyncPinger != null) {
+                asyncPinger.close();
+            } else {
+                PingerConnectionPool.getInstance().close();
+            }
+        } catch (IOException e) {
+            Log.LOG.debugf(e, "Could not close the HTTP connection pool");
         }
     }
 
     /**
-     * This method triggers the actual work by starting pingers, collecting their return values and then publishing
-     * them.
+     * This method is invoked every minute. It logs the statistics of the HTTP connection pool in use, the pings
+     * deferred per tenant and per host and the TLS handshakes, closes the expired and idle connections of the
+     * non-blocking engine and purges the expired entries of the DNS cache.
+     */
+    @Lock(LockType.READ)
+    @Schedule(minute = "*", hour = "*", persistent = false)
+    public void maintainConnectionPool() {
+        if (asyncPinger != null) {
+            asyncPinger.evictConnections();
+        }
+        PoolStats poolStats = getPoolStats();
+        Log.LOG.dConnectionPoolStats(poolStats.getLeased(), poolStats.getPending(), poolStats.getAvailable(),
+                poolStats.getMax());
+        CachingDnsResolver.getInstance().purgeExpired();
+        for (Map.Entry<String, Integer> entry : dispatcher.drainDeferredCounts().entrySet()) {
+            Log.LOG.dPingsDeferred(entry.getKey(), entry.getValue(), dispatcher.getInFlight(entry.getKey()));
+        }
+        HostThrottle hostThrottle = dispatcher.getHostThrottle();
+        int refused = hostThrottle.drainRefusedCount();
+        if (refused > 0) {
+            Log.LOG.dPingsThrottledByHost(refused, hostThrottle.getHostCount());
+        }
+        TlsSessions tlsSessions = TlsSessions.getInstance();
+        int fullHandshakes = tlsSessions.drainFullHandshakeCount();
+        int resumedHandshakes = tlsSessions.drainResumedHandshakeCount();
+        if (fullHandshakes > 0 || resumedHandshakes > 0) {
+            Log.LOG.dTlsHandshakes(fullHandshakes, resumedHandshakes);
+        }
+    }
+
+    /**
+     * @return the current state of the HTTP connection pool of the ping engine in use
+     */
+    private PoolStats getPoolStats() {
+        return asyncPinger != null ? asyncPinger.getStats() : PingerConnectionPool.getInstance().getStats();
+    }
+
+    /**
+     * This method is invoked every minute. It closes the current minute of {@link #stats}, logs the summary and
+     * publishes the statistics under {@link PingerConfiguration#getStatsTenant()} unless it is empty.
+     */
+    @Lock(LockType.READ)
+    @Schedule(minute = "*", hour = "*", persistent = false)
+    public void reportStats() {
+        PingerStats.Interval interval = stats.roll(System.currentTimeMillis(), getPoolStats(),
+                circuitBreaker.getOpenCount());
+        Log.LOG.dPingerStats(interval.getCount(null), interval.getTimedOutCount(), interval.getFailedCount(),
+                interval.getPingLatency().getValueAtPercentile(50), interval.getPingLatency().getValueAtPercentile(99),
+                interval.getCycleDuration().getValueAtPercentile(99),
+                interval.getScheduleWork().getValueAtPercentile(99), stats.getPingsInFlight(),
+                stats.getCyclesInFlight());
+        PingerConfiguration config = PingerConfiguration.getInstance();
+        if (!config.getStatsTenant().isEmpty()) {
+            metricPublisher.publish(config.getStatsTenant(), "pinger." + config.getClusterNodeId(), interval);
+        }
+    }
+
+    /**
+     * This method is invoked every second. It triggers the actual work by starting the pings of the destinations that
+     * are due in the current second as decided by {@link #scheduler} and admitted by {@link #dispatcher} and by
+     * submitting the resulting {@link PingCycle} to {@link #cycleCollector} that publishes the results asynchronously.
      * <p>
      * Concurrency assumptions:
      * <ul>
      * <li>{@link #scheduleWork()} will not overlap with {@link #startUp()} - we assume this to be granted by the EE
      * container.
      * <li>Individual {@link #scheduleWork()} invocations will not overlap each other - we also assume this to be
-     * granted by the EE container.
+     * granted by the EE container. Note that the {@link PingCycle}s started by individual {@link #scheduleWork()}
+     * invocations can overlap.
      */
     @Lock(LockType.READ)
-    @Schedule(minute = "*", hour = "*", second = "0,20,40", persistent = false)
+    @Schedule(minute = "*", hour = "*", second = "*", persistent = false)
     public void scheduleWork() {
+        long start = System.nanoTime();
+        try {
+            doScheduleWork();
+        } finally {
+            stats.recordScheduleWork(System.nanoTime() - start);
+        }
+    }
 
-        Log.LOG.debugf("Pinger awake to ping");
+    private void doScheduleWork() {
 
-        /* Apply URL additions and removals collected in between. */
-        urlChangesCollector.apply(this.destinations);
+        Log.LOG.tracef("Pinger awake to ping");
 
-        if (destinations.size() == 0) {
-            Log.LOG.debugf("Nothing to ping");
+        if (loader != null) {
+            loadNextPage();
+        }
+
+        /* Apply URL additions and removals registered in between. New URLs are pinged already in this tick. */
+        registry.drainChanges(this::addNew, this::remove);
+
+        /* Take over or hand over destinations if some node has joined or left the cluster */
+        HashRing currentRing = membership.getRing();
+        if (currentRing != ring) {
+            rebalance(currentRing);
+        }
+
+        List<PingDestination> due = dispatcher.select(scheduler.tick());
+        stats.setPingsWaiting(dispatcher.getWaitingCount());
+        if (due.isEmpty()) {
+            Log.LOG.tracef("Nothing to ping");
             return;
         }
 
-        doThePing(destinations);
+        doThePing(due);
     }
 
     /**
-     * Runs the pinging work on the provided list of destinations. The actual pings are scheduled to run in parallel in
-     * a thread pool. After ROUNDS*WAIT_MILLIS, remaining pings are cancelled and an error
-     *
-     * @param destinations Set of destinations to ping
+     * @param destination the destination to check
+     * @return {@code true} if this node is responsible for pinging the given {@link PingDestination}
      */
-    private void doThePing(Set<PingDestination> destinations) {
-        Log.LOG.debugf("About to ping %d URLs", destinations.size());
-
-        List<PingStatus> results = new ArrayList<>(destinations.size());
-        // In case of timeouts we will not be able to get the PingStatus from the Future, so use a Map
-        // to keep track of what destination's ping actually hung.
-        Map<Future<PingStatus>, PingDestination> futures = new HashMap<>(destinations.size());
+    private boolean owns(PingDestination destination) {
+        return ring.owns(membership.getNodeId(), destination);
+    }
 
-        for (PingDestination destination : destinations) {
-            Future<PingStatus> result = pinger.ping(destination);
-            futures.put(result, destination);
-        }
-
-        int round = 1;
-        while (!futures.isEmpty() && round < ROUNDS) {
-            Iterator<Future<PingStatus>> iterator = futures.keySet().iterator();
-            while (iterator.hasNext()) {
-                Future<PingStatus> f = iterator.next();
-                if (f.isDone()) {
-                    try {
-                        results.add(f.get());
-                    } catch (InterruptedException | ExecutionException e) {
-                        e.printStackTrace(); // TODO: Customise this generated block
-                    }
-                    iterator.remove();
-                }
-            }
-            try {
-                Thread.sleep(WAIT_MILLIS); // wait until the next iteration
-            } catch (InterruptedException e) {
-                // We don't care
+    private void addLoaded(PingDestination destination) {
+        if (unconfirmed != null) {
+            PingDestination restored = unconfirmed.remove(resourceKey(destination));
+            if (restored != null && !restored.equals(destination)) {
+                /* changed in the inventory since the snapshot was taken - do not ping both of them */
+                registry.remove(restored);
+                Log.LOG.debugf("Replaced %s restored from snapshot by its current version", restored.getUrl());
             }
-            round++;
         }
+        addInitial(destination);
+    }
 
-        // Cancel hanging pings and report them as timeouts
-        for (Map.Entry<Future<PingStatus>, PingDestination> entry : futures.entrySet()) {
-            entry.getKey().cancel(true);
-            PingDestination destination = entry.getValue();
-            final long now = System.currentTimeMillis();
-            PingStatus ps = PingStatus.timeout(destination, now, TIMEOUT_MILLIS);
-            results.add(ps);
-            Log.LOG.debugf("Timed out: %s", destination.getUrl());
+    /**
+     * @param destination the destination to identify
+     * @return a key identifying the inventory resource of the given destination regardless of the URL properties
+     *         that {@link PingDestination#equals(Object)} compares too
+     */
+    private static String resourceKey(PingDestination destination) {
+        return destination.getTenantId() + '/' + destination.getEnvironmentId() + '/' + destination.getResourceId();
+    }
+
+    private void addInitial(PingDestination destination) {
+        /* an equal destination registered already is scheduled already */
+        if (registry.add(destination) && owns(destination)) {
+            /* the initial URLs are spread over their intervals rather than all being pinged in the first tick */
+            scheduler.add(destination);
         }
+    }
 
-        reportResults(results);
+    private void addNew(PingDestination destination) {
+        /* the current ring rather than the applied one; rebalance() follows anyway if they differ */
+        if (membership.getRing().owns(membership.getNodeId(), destination)) {
+            scheduler.addNow(destination);
+        }
     }
 
-    private void reportResults(List<PingStatus> results) {
+    /**
+     * Adds the {@link #registry} destinations owned by this node according to the given {@link HashRing} to
+     * {@link #scheduler} and removes the ones not owned anymore. The destinations taken over are pinged in their
+     * regular phase.
+     *
+     * @param newRing the ring to apply
+     */
+    private void rebalance(HashRing newRing) {
+        this.ring = newRing;
+        int before = scheduler.size();
+        registry.forEach(dest -> {
+            if (owns(dest)) {
+                scheduler.add(dest);
+            } else {
+                remove(dest);
+            }
+        });
+        Log.LOG.debugf("Rebalanced by %s: pinging %d of %d URLs, was %d", newRing, scheduler.size(),
+                registry.size(), before);
+    }
 
-        if (results.size() == 0) {
-            return;
-        }
+    private void remove(PingDestination destination) {
+        scheduler.remove(destination);
+        dispatcher.remove(destination);
+        traitsCache.invalidate(destination);
+        statusCache.remove(destination);
+        circuitBreaker.forget(destination);
+        metricPublisher.forget(destination);
+    }
+
+    /**
+     * Starts the pinging work on the provided list of destinations. The actual pings are scheduled to run in parallel
+     * in a thread pool. The results are collected by {@link #cycleCollector}. The pings that have not finished within
+     * {@link #TIMEOUT_MILLIS} are cancelled and reported as timeouts.
+     *
+     * @param destinations the destinations to ping
+     */
+    private void doThePing(List<PingDestination> destinations) {
+        Log.LOG.debugf("About to ping %d URLs", destinations.size());
+
+        PingCycle cycle = new PingCycle(TIMEOUT_MILLIS, PingerConfiguration.getInstance().getResultBufferSize(),
+                destination -> {
+                    dispatcher.done(destination);
+                    stats.pingDone();
+                }, cycleCollector.getArrivalSignal());
+        // In case of timeouts we will not be able to get the PingStatus from the Future, so use a Map
+        // to keep track of what destination's ping actually hung.
+        Map<PingDestination, Future<?>> futures = new HashMap<>(destinations.size());
 
-        for (PingStatus status : results) {
-            metricPublisher.publish(status);
-            traitsPublisher.publish(status);
+        List<PingStatus> skipped = new ArrayList<>();
+        final long now = System.currentTimeMillis();
+
+        for (PingDestination destination : destinations) {
+            CircuitBreaker.Decision decision = circuitBreaker.decide(destination, now);
+            if (decision == CircuitBreaker.Decision.SKIP) {
+                skipped.add(PingStatus.failure(destination, FailureKind.CIRCUIT_OPEN, now,
+                        PingStatus.INVALID_DURATION));
+                dispatcher.done(destination);
+                continue;
+            }
+            cycle.add(destination);
+            stats.pingStarted();
+            Future<?> future;
+            if (decision == CircuitBreaker.Decision.PROBE) {
+                /* the blocking engine also for the NIO case, so that the probe does not block an I/O thread */
+                future = pinger.probe(destination, cycle);
+            } else {
+                future = asyncPinger != null ? asyncPinger.ping(destination, cycle) : pinger.ping(destination, cycle);
+            }
+            futures.put(destination, future);
         }
 
+        stats.cycleStarted();
+        cycleCollector.submit(cycle, futures, TIMEOUT_MILLIS);
+        if (!skipped.isEmpty()) {
+            Log.LOG.debugf("Skipped %d URLs with an open circuit", skipped.size());
+            cycleCollector.publishAll(skipped);
+        }
     }
 
 }
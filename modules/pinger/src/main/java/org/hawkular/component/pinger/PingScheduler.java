@@ -0,0 +1,244 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A hashed timing wheel that decides which {@link PingDestination}s are due in a given tick. Each destination is
+ * pinged every {@link PingDestination#getInterval()} ticks. The phase of a destination within its interval is derived
+ * from the hash of its resourceId, so that the destinations sharing the same interval are spread evenly over the
+ * whole period rather than all being due in the same tick. The phase of a given destination stays stable over time.
+ * <p>
+ * The scheduled destinations are looked up by their {@link PingDestination#getSlot() slot}, therefore only the
+ * destinations registered in a {@link DestinationTable} can be scheduled.
+ * <p>
+ * Concurrency assumptions: not thread safe; all methods are expected to be called from a single thread.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class PingScheduler {
+
+    /** A {@link PingDestination} scheduled in the wheel */
+    private static class Entry {
+        private final PingDestination destination;
+
+        /** The tick in which {@link #destination} is to be pinged next time */
+        private long dueTick;
+
+        /** {@code true} if {@link #destination} was removed from the scheduler */
+        private boolean cancelled;
+
+        /** {@code true} if {@link #destination} is due out of its phase and should return to it after the ping */
+        private boolean realign;
+
+        public Entry(PingDestination destination) {
+            super();
+            this.destination = destination;
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** The default number of buckets in the wheel, the value is {@value} */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * @param destination the destination to compute the phase for
+     * @return the tick offset in the range {@code [0, destination.getInterval())} at which the given
+     *         {@link PingDestination} should be pinged
+     */
+    static int phase(PingDestination destination) {
+        String resourceId = destination.getResourceId();
+        int hash = resourceId == null ? 0 : resourceId.hashCode();
+        /* spread the bits of the hash so that similar resourceIds land in different phases */
+        hash ^= (hash >>> 16);
+        hash *= 0x45d9f3b;
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, destination.getInterval());
+    }
+
+    private final List<Entry>[] wheel;
+
+    /** The scheduled entries indexed by {@link PingDestination#getSlot()} */
+    private Entry[] entries = new Entry[INITIAL_CAPACITY];
+
+    /** The number of non-null {@link #entries} */
+    private int size;
+
+    /** The last tick that was processed by {@link #tick()} */
+    private long currentTick;
+
+    public PingScheduler() {
+        this(DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param wheelSize the number of buckets in the wheel
+     */
+    @SuppressWarnings("unchecked")
+    public PingScheduler(int wheelSize) {
+        super();
+        this.wheel = new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Adds the given {@link PingDestination} to this scheduler. The destination will be due in the next tick matching
+     * its phase. Adding a destination that is scheduled already has no effect.
+     *
+     * @param destination the destination to add
+     */
+    public void add(PingDestination destination) {
+        if (find(destination) != null) {
+            return;
+        }
+        Entry entry = new Entry(destination);
+        put(entry);
+        schedule(entry, nextInPhase(destination, currentTick + 1));
+    }
+
+    /**
+     * Adds the given {@link PingDestination} to this scheduler so that it is due already in the next tick regardless
+     * of its phase. After that first ping, the destination returns to its phase, skipping the phase aligned ticks
+     * closer than half of its interval to the first ping. Adding a destination that is scheduled already has no
+     * effect.
+     *
+     * @param destination the destination to add
+     */
+    public void addNow(PingDestination destination) {
+        if (find(destination) != null) {
+            return;
+        }
+        Entry entry = new Entry(destination);
+        entry.realign = true;
+        put(entry);
+        schedule(entry, currentTick + 1);
+    }
+
+    /**
+     * Removes the given {@link PingDestination} from this scheduler.
+     *
+     * @param destination the destination to remove
+     */
+    public void remove(PingDestination destination) {
+        Entry entry = find(destination);
+        if (entry != null) {
+            entries[destination.getSlot()] = null;
+            size--;
+            /* removed lazily when its bucket is visited */
+            entry.cancelled = true;
+        }
+    }
+
+    /**
+     * Advances the wheel by one tick.
+     *
+     * @return the list of {@link PingDestination}s due in the new tick, never {@code null}
+     */
+    public List<PingDestination> tick() {
+        currentTick++;
+        List<Entry> bucket = wheel[bucketIndex(currentTick)];
+        List<PingDestination> result = new ArrayList<>();
+        List<Entry> rescheduled = new ArrayList<>();
+
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            Entry entry = bucket.get(i);
+            if (entry.cancelled) {
+                continue;
+            } else if (entry.dueTick == currentTick) {
+                result.add(entry.destination);
+                rescheduled.add(entry);
+            } else {
+                /* due in one of the next rounds of the wheel */
+                bucket.set(kept++, entry);
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+
+        for (Entry entry : rescheduled) {
+            PingDestination destination = entry.destination;
+            if (entry.realign) {
+                entry.realign = false;
+                schedule(entry, nextInPhase(destination, currentTick + Math.max(1, destination.getInterval() / 2)));
+            } else {
+                schedule(entry, currentTick + destination.getInterval());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of {@link PingDestination}s in this scheduler
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param destination the destination to look up
+     * @return the {@link Entry} of the given {@link PingDestination} or {@code null} if it is not scheduled
+     */
+    private Entry find(PingDestination destination) {
+        int slot = destination.getSlot();
+        if (slot == PingDestination.NO_SLOT) {
+            throw new IllegalArgumentException("Cannot schedule " + destination
+                    + " as it is not registered in any " + DestinationTable.class.getSimpleName());
+        }
+        Entry result = slot < entries.length ? entries[slot] : null;
+        /* a slot of a released destination could have been reused by another one */
+        return result != null && result.destination.equals(destination) ? result : null;
+    }
+
+    private void put(Entry entry) {
+        int slot = entry.destination.getSlot();
+        if (slot >= entries.length) {
+            entries = Arrays.copyOf(entries, Math.max(slot + 1, entries.length * 2));
+        }
+        if (entries[slot] != null) {
+            /* the slot is reused, the previous owner was not removed explicitly */
+            entries[slot].cancelled = true;
+            size--;
+        }
+        entries[slot] = entry;
+        size++;
+    }
+
+    /**
+     * @param destination the destination to find the tick for
+     * @param from the earliest acceptable tick
+     * @return the first tick not before {@code from} that matches the phase of the given {@link PingDestination}
+     */
+    private static long nextInPhase(PingDestination destination, long from) {
+        return from + Math.floorMod(phase(destination) - from, (long) destination.getInterval());
+    }
+
+    private void schedule(Entry entry, long dueTick) {
+        entry.dueTick = dueTick;
+        wheel[bucketIndex(dueTick)].add(entry);
+    }
+
+    private int bucketIndex(long tick) {
+        return (int) (tick % wheel.length);
+    }
+
+}
@@ -16,7 +16,13 @@
  */
 package org.hawkular.component.pinger;
 
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeoutException;
 
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.impl.execchain.RequestAbortedException;
 
 /**
  * An outcome of a ping.
@@ -26,9 +32,76 @@ package org.hawkular.component.pinger;
  */
 public class PingStatus {
 
+    /**
+     * The reasons why a ping could not produce a regular HTTP response.
+     */
+    public enum FailureKind {
+        /** The TCP connection could not be established within {@link PingTimeouts#getConnectTimeout()} */
+        CONNECT_TIMEOUT(503, true),
+        /** No data arrived within {@link PingTimeouts#getSocketTimeout()} */
+        READ_TIMEOUT(503, true),
+        /** No pooled connection became available within {@link PingTimeouts#getConnectionRequestTimeout()} */
+        POOL_EXHAUSTED(503, true),
+        /** The host name could not be resolved */
+        UNKNOWN_HOST(404, false),
+        /** Any other I/O problem */
+        IO_ERROR(500, false),
+        /** The ping has not finished before the deadline of its {@link PingCycle} */
+        CYCLE_TIMEOUT(503, true),
+        /** The ping was not performed because the destination keeps failing, see {@link CircuitBreaker} */
+        CIRCUIT_OPEN(503, false);
+
+        /**
+         * @param e the exception thrown by the HTTP client
+         * @return the {@link FailureKind} corresponding to the given exception
+         */
+        public static FailureKind of(Throwable e) {
+            /* ConnectionPoolTimeoutException is a subclass of ConnectTimeoutException so it must be checked first */
+            if (e instanceof ConnectionPoolTimeoutException || e instanceof TimeoutException) {
+                /* HttpAsyncClient reports the connection lease timeout as a plain TimeoutException */
+                return POOL_EXHAUSTED;
+            } else if (e instanceof ConnectTimeoutException) {
+                return CONNECT_TIMEOUT;
+            } else if (e instanceof SocketTimeoutException) {
+                return READ_TIMEOUT;
+            } else if (e instanceof UnknownHostException) {
+                return UNKNOWN_HOST;
+            } else if (e instanceof RequestAbortedException) {
+                return CYCLE_TIMEOUT;
+            } else {
+                return IO_ERROR;
+            }
+        }
+
+        /** The HTTP status code to report for this {@link FailureKind} */
+        private final int code;
+
+        /** The value to report as {@link PingStatus#isTimedOut()} for this {@link FailureKind} */
+        private final boolean timedOut;
+
+        FailureKind(int code, boolean timedOut) {
+            this.code = code;
+            this.timedOut = timedOut;
+        }
+
+        /**
+         * @return the HTTP status code to report for this {@link FailureKind}
+         */
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * @return the value to report as {@link PingStatus#isTimedOut()} for this {@link FailureKind}
+         */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+    }
+
     /**
      * Returns a new {@link PingStatus} with the given {@link PingDestination}, {@code timestamp},
-     * {@code duration} and {@link PingStatus#timedOut} set to {@code true}.
+     * {@code duration} and {@link FailureKind#CYCLE_TIMEOUT}.
      *
      * @param destination the destination where the ping was sent
      * @param timestamp the value of {@code System.currentTimeMillis()} when the response was received or when the
@@ -37,18 +110,36 @@ public class PingStatus {
      * @return a new {@link PingStatus}
      */
     public static final PingStatus timeout(PingDestination destination, long timestamp, int duration) {
-        return new PingStatus(destination, 503, timestamp, duration, true, Traits.empty(timestamp));
+        return failure(destination, FailureKind.CYCLE_TIMEOUT, timestamp, duration);
     }
 
     /**
-     * Returns a new timeout {@link PingStatus} with the given {@link PingDestination}, HTTP response code.
+     * Returns a new {@link PingStatus} with the given {@link PingDestination} and {@link FailureKind}. The HTTP status
+     * code and {@link #isTimedOut()} are derived from {@code failureKind}.
+     *
+     * @param destination the destination where the ping was sent
+     * @param failureKind the reason of the failure
+     * @param timestamp the value of {@code System.currentTimeMillis()} when the failure was detected
+     * @param duration the time in milliseconds spent before the failure was detected or {@value #INVALID_DURATION}
+     * @return a new {@link PingStatus}
+     */
+    public static final PingStatus failure(PingDestination destination, FailureKind failureKind, long timestamp,
+            int duration) {
+        return new PingStatus(destination, failureKind.getCode(), timestamp, duration, PingTimings.UNKNOWN,
+                -1, failureKind, Traits.empty(timestamp));
+    }
+
+    /**
+     * Returns a new {@link PingStatus} with the given {@link PingDestination}, HTTP response code and
+     * {@link FailureKind#IO_ERROR}.
      *
      * @param destination the destination where the ping was sent
      * @param code the HTTP status code of the ping response
      * @return a new {@link PingStatus}
      */
     public static final PingStatus error(PingDestination destination, int code, long timestamp) {
-        return new PingStatus(destination, code, timestamp, INVALID_DURATION, Traits.empty(timestamp));
+        return new PingStatus(destination, code, timestamp, INVALID_DURATION, PingTimings.UNKNOWN,
+                -1, FailureKind.IO_ERROR, Traits.empty(timestamp));
     }
 
     /** A value for {@link #duration} in case the ping ends up in some broken state where there is no meaningful
@@ -61,11 +152,17 @@ public class PingStatus {
     /** Ping round trip duration in milliseconds or {@value #INVALID_DURATION} if the ping timed out */
     private final int duration;
 
+    /** The breakdown of {@link #duration} into phases */
+    private final PingTimings timings;
+
+    /** The number of response body bytes read or {@code -1} if unknown */
+    private final long bytesRead;
+
     /** The HTTP status code of the ping response */
     private final int code;
 
-    /** {@code true} if the ping timed out, {@code false} otherwise */
-    private final boolean timedOut;
+    /** The reason of the failure or {@code null} if the ping got a regular HTTP response */
+    private final FailureKind failureKind;
 
     /** The value of {@code System.currentTimeMillis()} when the response was received or when the timeout or other
      * error was detected */
@@ -75,7 +172,7 @@ public class PingStatus {
     private final Traits traits;
 
     /**
-     * Creates a new {@link PingStatus} with {@link #timedOut} set to {@code false}.
+     * Creates a new {@link PingStatus} of a ping that got a regular HTTP response.
      *
      * @param destination where the ping was sent
      * @param code the HTTP response code
@@ -87,7 +184,23 @@ public class PingStatus {
      * @see #error(PingDestination, int, long)
      */
     public PingStatus(PingDestination destination, int code, long timestamp, int duration, Traits traits) {
-        this(destination, code, timestamp, duration, false, traits);
+        this(destination, code, timestamp, duration, PingTimings.UNKNOWN, -1, null, traits);
+    }
+
+    /**
+     * Creates a new {@link PingStatus} of a ping that got a regular HTTP response.
+     *
+     * @param destination where the ping was sent
+     * @param code the HTTP response code
+     * @param timestamp the value of {@code System.currentTimeMillis()} when the response was received
+     * @param duration Ping round trip duration in milliseconds
+     * @param timings the breakdown of {@code duration} into phases
+     * @param bytesRead the number of response body bytes read or {@code -1} if unknown
+     * @param traits the {@link Traits} collected from the ping response
+     */
+    public PingStatus(PingDestination destination, int code, long timestamp, int duration, PingTimings timings,
+            long bytesRead, Traits traits) {
+        this(destination, code, timestamp, duration, timings, bytesRead, null, traits);
     }
 
     /**
@@ -96,19 +209,23 @@ public class PingStatus {
      * @param timestamp the value of {@code System.currentTimeMillis()} when the response was received or when
      *                  the timeout or other error was detected
      * @param duration Ping round trip duration in milliseconds or {@value #INVALID_DURATION} if the ping timed out
-     * @param timedOut {@code true} if the ping timed out, {@code false} otherwise
-     * @param remoteAddress
+     * @param timings the breakdown of {@code duration} into phases
+     * @param bytesRead the number of response body bytes read or {@code -1} if unknown
+     * @param failureKind the reason of the failure or {@code null} if the ping got a regular HTTP response
+     * @param traits the {@link Traits} collected from the ping response
      *
      * @see #timeout(PingDestination, long, int)
      * @see #error(PingDestination, int, long)
      */
-    private PingStatus(PingDestination destination, int code, long timestamp, int duration, boolean timedOut,
-            Traits traits) {
+    PingStatus(PingDestination destination, int code, long timestamp, int duration, PingTimings timings,
+            long bytesRead, FailureKind failureKind, Traits traits) {
         this.destination = destination;
         this.code = code;
         this.timestamp = timestamp;
         this.duration = duration;
-        this.timedOut = timedOut;
+        this.timings = timings;
+        this.bytesRead = bytesRead;
+        this.failureKind = failureKind;
         this.traits = traits;
     }
 
@@ -126,11 +243,32 @@ public class PingStatus {
         return duration;
     }
 
+    /**
+     * @return the number of response body bytes read or {@code -1} if unknown
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return the breakdown of {@link #getDuration()} into phases
+     */
+    public PingTimings getTimings() {
+        return timings;
+    }
+
     /**
      * @return {@code true} if the ping timed out, {@code false} otherwise
      */
     public boolean isTimedOut() {
-        return timedOut;
+        return failureKind != null && failureKind.isTimedOut();
+    }
+
+    /**
+     * @return the reason of the failure or {@code null} if the ping got a regular HTTP response
+     */
+    public FailureKind getFailureKind() {
+        return failureKind;
     }
 
 
@@ -160,11 +298,13 @@ public class PingStatus {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
+        result = prime * result + (int) (bytesRead ^ (bytesRead >>> 32));
         result = prime * result + code;
         result = prime * result + ((destination == null) ? 0 : destination.hashCode());
         result = prime * result + duration;
-        result = prime * result + (timedOut ? 1231 : 1237);
+        result = prime * result + ((failureKind == null) ? 0 : failureKind.hashCode());
         result = prime * result + (int) (timestamp ^ (timestamp >>> 32));
+        result = prime * result + ((timings == null) ? 0 : timings.hashCode());
         result = prime * result + ((traits == null) ? 0 : traits.hashCode());
         return result;
     }
@@ -178,6 +318,8 @@ public class PingStatus {
         if (getClass() != obj.getClass())
             return false;
         PingStatus other = (PingStatus) obj;
+        if (bytesRead != other.bytesRead)
+            return false;
         if (code != other.code)
             return false;
         if (destination == null) {
@@ -187,10 +329,15 @@ public class PingStatus {
             return false;
         if (duration != other.duration)
             return false;
-        if (timedOut != other.timedOut)
+        if (failureKind != other.failureKind)
             return false;
         if (timestamp != other.timestamp)
             return false;
+        if (timings == null) {
+            if (other.timings != null)
+                return false;
+        } else if (!timings.equals(other.timings))
+            return false;
         if (traits == null) {
             if (other.traits != null)
                 return false;
@@ -201,8 +348,9 @@ public class PingStatus {
 
     @Override
     public String toString() {
-        return "PingStatus [destination=" + destination + ", duration=" + duration + ", code=" + code + ", timedOut="
-                + timedOut + ", timestamp=" + timestamp + ", traits=" + traits + "]";
+        return "PingStatus [destination=" + destination + ", duration=" + duration + ", timings=" + timings
+                + ", bytesRead=" + bytesRead + ", code=" + code + ", failureKind=" + failureKind + ", timestamp="
+                + timestamp + ", traits=" + traits + "]";
     }
 
 }
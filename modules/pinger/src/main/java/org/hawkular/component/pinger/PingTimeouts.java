@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import org.apache.http.client.config.RequestConfig;
+
+/**
+ * The socket level timeouts of a {@link PingDestination}. All values are in milliseconds.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class PingTimeouts {
+
+    /** The timeouts configured through {@link PingerConfiguration} */
+    public static final PingTimeouts DEFAULT;
+    static {
+        PingerConfiguration config = PingerConfiguration.getInstance();
+        DEFAULT = new PingTimeouts(config.getConnectTimeout(), config.getConnectionRequestTimeout(),
+                config.getSocketTimeout());
+    }
+
+    /**
+     * Returns {@link #DEFAULT} if none of the given values differs from the respective default value, otherwise a new
+     * {@link PingTimeouts} instance. Non-positive values are replaced with the respective default values.
+     *
+     * @param connectTimeout the time to establish a TCP connection in milliseconds
+     * @param connectionRequestTimeout the time to wait for a connection from the pool in milliseconds
+     * @param socketTimeout the maximal period of inactivity between two data packets in milliseconds
+     * @return a {@link PingTimeouts}
+     */
+    public static PingTimeouts of(int connectTimeout, int connectionRequestTimeout, int socketTimeout) {
+        connectTimeout = connectTimeout > 0 ? connectTimeout : DEFAULT.connectTimeout;
+        connectionRequestTimeout = connectionRequestTimeout > 0 ? connectionRequestTimeout
+                : DEFAULT.connectionRequestTimeout;
+        socketTimeout = socketTimeout > 0 ? socketTimeout : DEFAULT.socketTimeout;
+        if (connectTimeout == DEFAULT.connectTimeout && connectionRequestTimeout == DEFAULT.connectionRequestTimeout
+                && socketTimeout == DEFAULT.socketTimeout) {
+            return DEFAULT;
+        }
+        return new PingTimeouts(connectTimeout, connectionRequestTimeout, socketTimeout);
+    }
+
+    private final int connectTimeout;
+    private final int connectionRequestTimeout;
+    private final int socketTimeout;
+
+    /** Built eagerly as it is needed for every single ping */
+    private final RequestConfig requestConfig;
+
+    private PingTimeouts(int connectTimeout, int connectionRequestTimeout, int socketTimeout) {
+        super();
+        this.connectTimeout = connectTimeout;
+        this.connectionRequestTimeout = connectionRequestTimeout;
+        this.socketTimeout = socketTimeout;
+        this.requestConfig = RequestConfig.custom().setConnectTimeout(connectTimeout)
+                .setConnectionRequestTimeout(connectionRequestTimeout).setSocketTimeout(socketTimeout).build();
+    }
+
+    /**
+     * @return the time to establish a TCP connection in milliseconds
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * @return the time to wait for a connection from the pool in milliseconds
+     */
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    /**
+     * @return the maximal period of inactivity between two data packets in milliseconds
+     */
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    /**
+     * @return a {@link RequestConfig} with the timeouts set to the values of this {@link PingTimeouts}
+     */
+    public RequestConfig getRequestConfig() {
+        return requestConfig;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + connectTimeout;
+        result = prime * result + connectionRequestTimeout;
+        result = prime * result + socketTimeout;
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        PingTimeouts other = (PingTimeouts) obj;
+        if (connectTimeout != other.connectTimeout)
+            return false;
+        if (connectionRequestTimeout != other.connectionRequestTimeout)
+            return false;
+        if (socketTimeout != other.socketTimeout)
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "PingTimeouts [connectTimeout=" + connectTimeout + ", connectionRequestTimeout="
+                + connectionRequestTimeout + ", socketTimeout=" + socketTimeout + "]";
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * The breakdown of a ping duration into phases. All values are in milliseconds, {@link PingStatus#INVALID_DURATION}
+ * stands for a phase that was not measured. A phase that was not necessary, such as connecting when a pooled
+ * connection was reused or the TLS handshake of a plain HTTP request, has zero duration.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class PingTimings {
+
+    /**
+     * Collects the {@code System.nanoTime()} based measurements of the phases while a ping is in progress. A
+     * {@link Recorder} is passed to the HTTP client components through the {@link HttpContext} under
+     * {@link #ATTRIBUTE}.
+     * <p>
+     * Concurrency assumptions: the phases of a single request happen one after another, but the blocking and the
+     * non-blocking clients may run them on different threads, hence the fields are volatile.
+     */
+    static class Recorder {
+        /** A key to use when storing and retrieving a {@link Recorder} from and to {@link HttpContext} */
+        static final String ATTRIBUTE = Recorder.class.getName();
+
+        /**
+         * @param context the context to look up the {@link Recorder} in
+         * @return the {@link Recorder} stored in {@code context} or {@code null} if there is none
+         */
+        static Recorder from(HttpContext context) {
+            return context == null ? null : (Recorder) context.getAttribute(ATTRIBUTE);
+        }
+
+        private final long startNanos = System.nanoTime();
+        private volatile long dnsNanos = -1;
+        private volatile long connectNanos;
+        private volatile long tlsNanos;
+        private volatile long headersReceivedAt;
+        private volatile boolean headersReceived;
+        private volatile long finishedAt;
+        private volatile boolean finished;
+
+        void dns(long nanos) {
+            this.dnsNanos = nanos;
+        }
+
+        /**
+         * @param nanos the duration of establishing the connection including the TLS handshake
+         */
+        void connect(long nanos) {
+            this.connectNanos += nanos;
+        }
+
+        void tls(long nanos) {
+            this.tlsNanos += nanos;
+        }
+
+        void headersReceived() {
+            this.headersReceivedAt = System.nanoTime();
+            this.headersReceived = true;
+        }
+
+        void finished() {
+            this.finishedAt = System.nanoTime();
+            this.finished = true;
+        }
+
+        /**
+         * @param connectMeasured {@code false} if the connection phases are not visible to the HTTP client in use
+         * @return the immutable {@link PingTimings}
+         */
+        PingTimings toTimings(boolean connectMeasured) {
+            int dns = toMillis(dnsNanos);
+            int connect = connectMeasured ? toMillis(connectNanos - tlsNanos) : PingStatus.INVALID_DURATION;
+            int tls = connectMeasured ? toMillis(tlsNanos) : PingStatus.INVALID_DURATION;
+            int ttfb = PingStatus.INVALID_DURATION;
+            int body = PingStatus.INVALID_DURATION;
+            if (headersReceived) {
+                long beforeRequest = Math.max(dnsNanos, 0) + (connectMeasured ? connectNanos : 0);
+                ttfb = toMillis(headersReceivedAt - startNanos - beforeRequest);
+                if (finished) {
+                    body = toMillis(finishedAt - headersReceivedAt);
+                }
+            }
+            return new PingTimings(dns, connect, tls, ttfb, body);
+        }
+
+        private static int toMillis(long nanos) {
+            return nanos < 0 ? PingStatus.INVALID_DURATION : (int) TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+    }
+
+    /** All phases unknown */
+    public static final PingTimings UNKNOWN = new PingTimings(PingStatus.INVALID_DURATION,
+            PingStatus.INVALID_DURATION, PingStatus.INVALID_DURATION, PingStatus.INVALID_DURATION,
+            PingStatus.INVALID_DURATION);
+
+    /** Resolving the host name */
+    private final int dns;
+
+    /** Establishing the TCP connection */
+    private final int connect;
+
+    /** The TLS handshake */
+    private final int tls;
+
+    /**
+     * Time to first byte: from the moment a connection was ready till the response headers were received. Includes
+     * the wait for a pooled connection, sending the request and the server think time.
+     */
+    private final int ttfb;
+
+    /** Reading the response body */
+    private final int body;
+
+    public PingTimings(int dns, int connect, int tls, int ttfb, int body) {
+        super();
+        this.dns = dns;
+        this.connect = connect;
+        this.tls = tls;
+        this.ttfb = ttfb;
+        this.body = body;
+    }
+
+    /**
+     * @return the time spent resolving the host name
+     */
+    public int getDns() {
+        return dns;
+    }
+
+    /**
+     * @return the time spent establishing the TCP connection
+     */
+    public int getConnect() {
+        return connect;
+    }
+
+    /**
+     * @return the time spent in the TLS handshake
+     */
+    public int getTls() {
+        return tls;
+    }
+
+    /**
+     * @return the time from the moment a connection was ready till the response headers were received
+     */
+    public int getTtfb() {
+        return ttfb;
+    }
+
+    /**
+     * @return the time spent reading the response body
+     */
+    public int getBody() {
+        return body;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + body;
+        result = prime * result + connect;
+        result = prime * result + dns;
+        result = prime * result + tls;
+        result = prime * result + ttfb;
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        PingTimings other = (PingTimings) obj;
+        if (body != other.body)
+            return false;
+        if (connect != other.connect)
+            return false;
+        if (dns != other.dns)
+            return false;
+        if (tls != other.tls)
+            return false;
+        if (ttfb != other.ttfb)
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "PingTimings [dns=" + dns + ", connect=" + connect + ", tls=" + tls + ", ttfb=" + ttfb + ", body="
+                + body + "]";
+    }
+
+}
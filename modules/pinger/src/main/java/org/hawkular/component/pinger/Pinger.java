@@ -17,8 +17,12 @@
 package org.hawkular.component.pinger;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
 import java.net.UnknownHostException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
@@ -29,27 +33,32 @@ import javax.ejb.Asynchronous;
 import javax.ejb.Stateless;
 import javax.net.ssl.SSLContext;
 
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpInetConnection;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.client.protocol.HttpClientContext;
-import org.apache.http.config.RegistryBuilder;
-import org.apache.http.conn.HttpClientConnectionManager;
-import org.apache.http.conn.socket.ConnectionSocketFactory;
-import org.apache.http.conn.socket.PlainConnectionSocketFactory;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.EofSensorInputStream;
 import org.apache.http.conn.ssl.SSLContextBuilder;
 import org.apache.http.conn.ssl.SSLContexts;
 import org.apache.http.conn.ssl.TrustStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.ConnectionShutdownException;
 import org.apache.http.protocol.HttpContext;
-import org.apache.http.util.EntityUtils;
+import org.apache.http.protocol.HttpCoreContext;
+import org.hawkular.component.pinger.PingStatus.FailureKind;
+import org.hawkular.component.pinger.PingTimings.Recorder;
 
 /**
- * Bean that does the pinging. {@link #ping(PingDestination)} runs asynchronously.
+ * Bean that does the pinging. {@link #ping(PingDestination)} and {@link #ping(PingDestination, PingCycle)} run
+ * asynchronously.
  *
  * @author Heiko W. Rupp
  * @author Martin Večeřa
@@ -63,40 +72,50 @@ public class Pinger {
     static final String REMOTE_ADDRESS_ATTRIBUTE = Pinger.class.getPackage().getName() + ".remoteAddress";
 
     /**
-     * A custom connection manager used by this pinger
+     * Stores remote IP address into {@link HttpContext} under {@link #REMOTE_ADDRESS_ATTRIBUTE} if the connection
+     * is still bound to the request and marks the end of the TTFB phase in the {@link Recorder}, if any. Response
+     * interceptors are invoked once the response headers have arrived and before the body is read.
      */
-    private final HttpClientConnectionManager connectionManager;
+    static final HttpResponseInterceptor RESPONSE_INTERCEPTOR = new HttpResponseInterceptor() {
+        @Override
+        public void process(HttpResponse response, HttpContext context) throws HttpException, IOException {
+            Recorder recorder = Recorder.from(context);
+            if (recorder != null) {
+                recorder.headersReceived();
+            }
+            HttpConnection connection = HttpCoreContext.adapt(context).getConnection();
+            if (connection instanceof HttpInetConnection) {
+                try {
+                    InetAddress remoteInetAddress = ((HttpInetConnection) connection).getRemoteAddress();
+                    Log.LOG.tracef("Putting remote IP address to HttpContext %s", remoteInetAddress);
+                    context.setAttribute(REMOTE_ADDRESS_ATTRIBUTE, remoteInetAddress);
+                } catch (ConnectionShutdownException e) {
+                    /*
+                     * The blocking client releases the connection before the interceptors are called if there is no
+                     * response body. The address set by the socket factory on connect is used in such a case.
+                     */
+                    Log.LOG.tracef("Connection released already, cannot get the remote IP address");
+                }
+            }
+        }
+    };
+
+    /** The size of the buffer used to read the response bodies */
+    private static final int BUFFER_SIZE = 8192;
 
     private final CloseableHttpClient client;
 
-    public Pinger() throws Exception {
-        this.connectionManager = createConnectionManager();
-        this.client = HttpClientBuilder.create().setConnectionManager(connectionManager).build();
+    public Pinger() {
+        this.client = PingerConnectionPool.getInstance().getClient();
     }
 
     /**
-     * Creates a custom {@link HttpClientConnectionManager} that will be used by this pinger. The returned connection
-     * manager accepts all SSL certificates, and stores remote IP address into {@link HttpContext} under
-     * {@link #REMOTE_ADDRESS_ATTRIBUTE}.
+     * Creates an {@link SSLContext} that accepts all certificates and whose session cache is configured by
+     * {@link TlsSessions}.
      *
-     * @return a new {@link HttpClientConnectionManager}
+     * @return a new {@link SSLContext} or {@code null} if it could not be created
      */
-    private HttpClientConnectionManager createConnectionManager() {
-
-        PlainConnectionSocketFactory plainSf = new PlainConnectionSocketFactory() {
-            @Override
-            public Socket connectSocket(int connectTimeout, Socket socket, org.apache.http.HttpHost host,
-                    java.net.InetSocketAddress remoteAddress, java.net.InetSocketAddress localAddress,
-                    HttpContext context) throws IOException {
-                InetAddress remoteInetAddress = remoteAddress.getAddress();
-                Log.LOG.tracef("Putting remote IP address to HttpContext %s", remoteInetAddress);
-                context.setAttribute(REMOTE_ADDRESS_ATTRIBUTE, remoteInetAddress);
-                return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
-            }
-        };
-
-        SSLContext tmpSslContext;
-
+    static SSLContext createSslContext() {
         try {
             SSLContextBuilder builder = SSLContexts.custom();
             builder.loadTrustMaterial(null, new TrustStrategy() {
@@ -105,17 +124,10 @@ public class Pinger {
                     return true;
                 }
             });
-            tmpSslContext = builder.build();
-
+            return TlsSessions.getInstance().configure(builder.build());
         } catch (Exception e) {
-            tmpSslContext = null;
+            return null;
         }
-
-        SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(tmpSslContext, null, null,
-                SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-
-        return new PoolingHttpClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory> create()
-                .register("http", plainSf).register("https", sslSocketFactory).build());
     }
 
     /**
@@ -126,34 +138,193 @@ public class Pinger {
      */
     @Asynchronous
     public Future<PingStatus> ping(final PingDestination destination) {
+        return new AsyncResult<>(doPing(destination, null));
+    }
+
+    /**
+     * Performs a test request against the given {@link PingDestination} and hands the outcome over to the given
+     * {@link PingCycle} as soon as it is available.
+     *
+     * @param destination the destination to ping
+     * @param cycle the {@link PingCycle} to report the outcome to
+     * @return a {@link Future}
+     */
+    @Asynchronous
+    public Future<PingStatus> ping(final PingDestination destination, final PingCycle cycle) {
+        PingStatus result = doPing(destination, cycle);
+        cycle.complete(result);
+        return new AsyncResult<>(result);
+    }
+
+    /**
+     * Probes the given {@link PingDestination} with a plain TCP connect that neither touches the connection pool nor
+     * sends any request. Only if the connect succeeds, the destination is pinged as usual. Used by
+     * {@link PingManager} for the destinations whose circuit is open, see {@link CircuitBreaker}.
+     *
+     * @param destination the destination to probe
+     * @param cycle the {@link PingCycle} to report the outcome to
+     * @return a {@link Future}
+     */
+    @Asynchronous
+    public Future<PingStatus> probe(final PingDestination destination, final PingCycle cycle) {
+        long start = System.currentTimeMillis();
+        PingStatus result;
+        try {
+            connect(destination);
+            Log.LOG.debugf("Probe of %s succeeded", destination.getUrl());
+            result = doPing(destination, cycle);
+        } catch (IOException | RuntimeException e) {
+            /* anything, so that the cycle gets the outcome rather than timing out */
+            result = failure(destination, e, start);
+        }
+        cycle.complete(result);
+        return new AsyncResult<>(result);
+    }
+
+    /**
+     * Opens and closes a TCP connection to the host and port of the given {@link PingDestination}.
+     *
+     * @param destination the destination to connect to
+     * @throws IOException if the connection could not be established, {@link UnknownHostException} also if the URL
+     *         has no host
+     */
+    static void connect(PingDestination destination) throws IOException {
+        URI uri = URI.create(destination.getUrl());
+        if (uri.getHost() == null) {
+            throw new UnknownHostException("No host in " + destination.getUrl());
+        }
+        int port = uri.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        InetAddress address = CachingDnsResolver.getInstance().resolve(uri.getHost())[0];
+        int timeout = destination.getTimeouts().getConnectTimeout();
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(address, port), timeout);
+        } catch (SocketTimeoutException e) {
+            throw new ConnectTimeoutException("Probe of " + destination.getUrl() + " timed out");
+        }
+    }
+
+    /**
+     * @param destination the destination to ping
+     * @param cycle the {@link PingCycle} to register the request with so that it can be aborted when the cycle
+     *        expires, can be {@code null}
+     * @return the outcome of the ping
+     */
+    private PingStatus doPing(final PingDestination destination, PingCycle cycle) {
         Log.LOG.debugf("About to ping %s", destination.getUrl());
-        HttpUriRequest request = RequestBuilder.create(destination.getMethod()).setUri(destination.getUrl()).build();
+        HttpUriRequest request = RequestBuilder.create(destination.getRequestMethod()).setUri(destination.getUrl())
+                .setConfig(destination.getTimeouts().getRequestConfig()).build();
+        if (cycle != null) {
+            cycle.started(destination, () -> {
+                request.abort();
+                return true;
+            });
+        }
 
+        long start = System.currentTimeMillis();
+        Recorder recorder = new Recorder();
         try {
-            long start = System.currentTimeMillis();
+            /*
+             * Resolve the host name upfront so that the DNS phase can be measured separately. The connection manager
+             * asks the same caching resolver later on and gets the cached result.
+             */
+            long dnsStart = System.nanoTime();
+            String host = request.getURI().getHost();
+            if (host != null) {
+                CachingDnsResolver.getInstance().resolve(host);
+            }
+            recorder.dns(System.nanoTime() - dnsStart);
+
             HttpClientContext context = HttpClientContext.create();
+            context.setAttribute(Recorder.ATTRIBUTE, recorder);
             try (CloseableHttpResponse httpResponse = client.execute(request, context)) {
                 InetAddress remoteAddress = (InetAddress) context.getAttribute(REMOTE_ADDRESS_ATTRIBUTE);
                 StatusLine statusLine = httpResponse.getStatusLine();
-                EntityUtils.consumeQuietly(httpResponse.getEntity());
+                long bytesRead = consume(httpResponse.getEntity(), destination.getBodyPolicy());
+                recorder.finished();
                 long now = System.currentTimeMillis();
 
                 final int code = statusLine.getStatusCode();
                 final int duration = (int) (now - start);
                 Traits traits = Traits.collect(httpResponse, now, remoteAddress);
-                PingStatus result = new PingStatus(destination, code, now, duration, traits);
+                PingStatus result = new PingStatus(destination, code, now, duration, recorder.toTimings(true),
+                        bytesRead, traits);
                 Log.LOG.debugf("Got status code %d from %s", code, destination.getUrl());
-                return new AsyncResult<>(result);
+                return result;
             }
-        } catch (UnknownHostException e) {
-            PingStatus result = PingStatus.error(destination, 404, System.currentTimeMillis());
-            Log.LOG.debugf("Got UnknownHostException for %s", destination.getUrl());
-            return new AsyncResult<>(result);
-        } catch (IOException e) {
-            Log.LOG.dCouldNotPingUrl(destination.getUrl(), e);
-            PingStatus result = PingStatus.error(destination, 500, System.currentTimeMillis());
-            return new AsyncResult<>(result);
+        } catch (IOException | RuntimeException e) {
+            /* a RuntimeException, e.g. from an invalid URL, must not leave the cycle waiting either */
+            return failure(destination, e, start);
         }
 
     }
+
+    /**
+     * Reads the given response body according to the given {@link BodyPolicy}. If the body has been read up to its
+     * end, the connection is released back to the pool for reuse. Otherwise the connection is shut down right away,
+     * because closing the stream would read the rest of the body and the server could still be blocked sending it.
+     *
+     * @param entity the response body to consume, can be {@code null}
+     * @param policy says how much of {@code entity} to read
+     * @return the number of bytes read
+     * @throws IOException on read errors
+     */
+    static long consume(HttpEntity entity, BodyPolicy policy) throws IOException {
+        if (entity == null) {
+            return 0;
+        }
+        long contentLength = entity.getContentLength();
+        long limit = policy.getLimit();
+        if (contentLength >= 0 && contentLength <= limit) {
+            /* small enough to read it whole and keep the connection */
+            limit = Long.MAX_VALUE;
+        }
+
+        InputStream in = entity.getContent();
+        if (in == null) {
+            return 0;
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        while (total < limit) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, limit - total));
+            if (read < 0) {
+                return total;
+            }
+            total += read;
+        }
+        if (contentLength < 0 && limit > 0) {
+            if (in.read() < 0) {
+                /* a chunked body exactly as long as the limit */
+                return total;
+            }
+            total++;
+        }
+        /* a body longer than the limit - leave the rest unread */
+        if (in instanceof EofSensorInputStream) {
+            ((EofSensorInputStream) in).abortConnection();
+        } else {
+            in.close();
+        }
+        return total;
+    }
+
+    /**
+     * @param destination the destination that was pinged
+     * @param e the exception thrown by the HTTP client
+     * @param start the value of {@code System.currentTimeMillis()} when the ping was started
+     * @return a new {@link PingStatus} with the {@link FailureKind} corresponding to {@code e}
+     */
+    static PingStatus failure(PingDestination destination, Exception e, long start) {
+        FailureKind kind = FailureKind.of(e);
+        if (kind == FailureKind.IO_ERROR) {
+            Log.LOG.dCouldNotPingUrl(destination.getUrl(), e);
+        } else {
+            Log.LOG.debugf("Got %s for %s", kind, destination.getUrl());
+        }
+        long now = System.currentTimeMillis();
+        return PingStatus.failure(destination, kind, now, (int) (now - start));
+    }
 }
@@ -16,8 +16,12 @@
  */
 package org.hawkular.component.pinger;
 
+import java.util.Locale;
+import java.util.UUID;
+
 /**
- * A class to have the REST end point URLs in one place.
+ * A class to have the REST end point URLs and the tunables of the pinger in one place. The tunables can be set through
+ * system properties prefixed with {@value #PROPERTY_PREFIX}.
  *
  * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
  */
@@ -38,14 +42,496 @@ public class PingerConfiguration {
         return INSTANCE;
     }
 
+    /** The prefix of the system properties that can be used to tune the pinger */
+    public static final String PROPERTY_PREFIX = "hawkular.pinger.";
+
+    /**
+     * The implementations of the HTTP client that can be used to perform the pings.
+     */
+    public enum Engine {
+        /** {@link Pinger} - one EJB asynchronous thread per ping in flight */
+        BLOCKING,
+        /** {@link AsyncPinger} - non-blocking I/O on a few I/O dispatcher threads */
+        NIO
+    }
+
+    /**
+     * Which {@link PingStatus}es are reported to Hawkular Metrics.
+     */
+    public enum ReportMode {
+        /** Every {@link PingStatus} */
+        ALL,
+        /**
+         * Only the {@link PingStatus}es whose HTTP status code differs from the last reported one of the same
+         * destination plus one {@link PingStatus} per {@link PingerConfiguration#getMetricsHeartbeatSeconds()}
+         */
+        CHANGES
+    }
+
+    private static int intProperty(String key, int defaultValue) {
+        return Integer.getInteger(PROPERTY_PREFIX + key, defaultValue);
+    }
+
+    private static String stringProperty(String key, String defaultValue) {
+        return System.getProperty(PROPERTY_PREFIX + key, defaultValue);
+    }
+
     private final String metricsBaseUri;
 
+    /** How many ping results can wait for being published before the pinging threads start to block */
+    private final int resultBufferSize;
+
+    /** The {@link Engine} to perform the pings with */
+    private final Engine engine;
+
+    /** The number of I/O dispatcher threads of the {@link Engine#NIO} engine */
+    private final int ioThreads;
+
+    /** The maximum number of connections in the HTTP connection pool */
+    private final int poolMaxTotal;
+
+    /** The maximum number of connections per route (i.e. per host and port) in the HTTP connection pool */
+    private final int poolMaxPerRoute;
+
+    /** The maximum lifetime of a pooled connection in seconds, {@code <= 0} for unlimited */
+    private final int poolTtlSeconds;
+
+    /** The time in seconds after which an idle pooled connection is closed, {@code <= 0} for never */
+    private final int poolIdleTimeoutSeconds;
+
+    /** The default time to establish a TCP connection in milliseconds */
+    private final int connectTimeout;
+
+    /** The default time to wait for a connection from the pool in milliseconds */
+    private final int connectionRequestTimeout;
+
+    /** The default maximal period of inactivity between two data packets in milliseconds */
+    private final int socketTimeout;
+
+    /** How long to cache the successful host name resolutions in seconds */
+    private final int dnsTtlSeconds;
+
+    /** How long to cache the failed host name resolutions in seconds */
+    private final int dnsNegativeTtlSeconds;
+
+    /** The name of the default {@link BodyPolicy.Mode} */
+    private final String bodyPolicy;
+
+    /** The default maximal number of bytes to read with {@link BodyPolicy.Mode#CAPPED} */
+    private final int bodyLimit;
+
+    /** The number of metrics per tenant that triggers sending them to Hawkular Metrics */
+    private final int metricsBatchSize;
+
+    /** The maximal time in milliseconds a metric can wait for being sent to Hawkular Metrics */
+    private final int metricsFlushIntervalMillis;
+
+    /** The time in seconds after which unchanged traits are written to Hawkular Inventory again */
+    private final int traitsRefreshSeconds;
+
+    /** The number of pending trait updates that triggers writing them to Hawkular Inventory */
+    private final int traitsBatchSize;
+
+    /** The maximal time in milliseconds a trait update can wait for being written to Hawkular Inventory */
+    private final int traitsFlushIntervalMillis;
+
+    /** {@code true} if the destinations should be sharded across the nodes that have this option enabled */
+    private final boolean clusterEnabled;
+
+    /** The unique identifier of this node in the cluster of pingers */
+    private final String clusterNodeId;
+
+    /** The number of points each node occupies on the consistent hash ring */
+    private final int clusterVirtualNodes;
+
+    /** How often in seconds this node announces its presence to the other nodes */
+    private final int clusterHeartbeatSeconds;
+
+    /** The time in seconds after which a node that has not sent any heartbeat is considered gone */
+    private final int clusterMemberTimeoutSeconds;
+
+    /** The number of URLs to load from Hawkular Inventory per second at startup */
+    private final int bootstrapPageSize;
+
+    /** {@code true} if the pinger state should be saved to {@link #getSnapshotFile()} and restored on startup */
+    private final boolean snapshotEnabled;
+
+    /** The path of the file to save the pinger state to */
+    private final String snapshotFile;
+
+    /** The {@link ReportMode} deciding which ping results are reported to Hawkular Metrics */
+    private final ReportMode metricsReportMode;
+
+    /** The time in seconds after which an unchanged ping result is reported again in {@link ReportMode#CHANGES} */
+    private final int metricsHeartbeatSeconds;
+
+    /** The number of consecutive failures after which a destination is only probed, {@code <= 0} to disable */
+    private final int breakerThreshold;
+
+    /** The time in seconds to wait before probing a destination that has reached {@link #getBreakerThreshold()} */
+    private final int breakerInitialBackoffSeconds;
+
+    /** The upper bound in seconds for the exponentially growing time between two probes of a failing destination */
+    private final int breakerMaxBackoffSeconds;
+
+    /** The maximal number of pings of a single tenant in flight, {@code <= 0} for unlimited */
+    private final int tenantMaxInFlight;
+
+    /** The maximal number of pings of a single tenant started in one second, {@code <= 0} for unlimited */
+    private final int tenantMaxPerCycle;
+
+    /** The maximal number of pings of a single host in flight, {@code <= 0} for unlimited */
+    private final int hostMaxInFlight;
+
+    /** The minimal average time in milliseconds between two pings of a single host, {@code <= 0} for none */
+    private final int hostMinSpacingMillis;
+
+    /** Whether the TLS sessions are kept for being resumed by the subsequent connections to the same host and port */
+    private final boolean tlsSessionResumption;
+
+    /** The maximal number of TLS sessions kept for resumption, {@code <= 0} for unlimited */
+    private final int tlsSessionCacheSize;
+
+    /** The time in seconds for which a TLS session can be resumed, {@code <= 0} for unlimited */
+    private final int tlsSessionTimeoutSeconds;
+
+    /** The tenant to publish the metrics of the pinger itself under, empty not to publish them */
+    private final String statsTenant;
+
     private PingerConfiguration(String metricsBaseUri) {
         super();
         this.metricsBaseUri = metricsBaseUri;
+        this.resultBufferSize = intProperty("result-buffer-size", 1024);
+        this.engine = Engine.valueOf(stringProperty("engine", Engine.BLOCKING.name()).toUpperCase(Locale.US));
+        this.ioThreads = intProperty("io-threads", Runtime.getRuntime().availableProcessors());
+        this.poolMaxTotal = intProperty("pool.max-total", 1024);
+        this.poolMaxPerRoute = intProperty("pool.max-per-route", 32);
+        this.poolTtlSeconds = intProperty("pool.ttl", 300);
+        this.poolIdleTimeoutSeconds = intProperty("pool.idle-timeout", 60);
+        this.connectTimeout = intProperty("timeout.connect", 2000);
+        this.connectionRequestTimeout = intProperty("timeout.connection-request", 500);
+        this.socketTimeout = intProperty("timeout.socket", 4000);
+        this.dnsTtlSeconds = intProperty("dns.ttl", 60);
+        this.dnsNegativeTtlSeconds = intProperty("dns.negative-ttl", 10);
+        this.bodyPolicy = stringProperty("body.policy", BodyPolicy.Mode.FULL.name());
+        this.bodyLimit = intProperty("body.limit", 64 * 1024);
+        this.metricsBatchSize = intProperty("metrics.batch-size", 1000);
+        this.metricsFlushIntervalMillis = intProperty("metrics.flush-interval", 2000);
+        this.traitsRefreshSeconds = intProperty("traits.refresh-interval", 600);
+        this.traitsBatchSize = intProperty("traits.batch-size", 500);
+        this.traitsFlushIntervalMillis = intProperty("traits.flush-interval", 5000);
+        this.clusterEnabled = Boolean.parseBoolean(stringProperty("cluster.enabled", "false"));
+        this.clusterNodeId = stringProperty("cluster.node-id",
+                System.getProperty("jboss.node.name", UUID.randomUUID().toString()));
+        this.clusterVirtualNodes = intProperty("cluster.virtual-nodes", 128);
+        this.clusterHeartbeatSeconds = intProperty("cluster.heartbeat-interval", 5);
+        this.clusterMemberTimeoutSeconds = intProperty("cluster.member-timeout", 15);
+        this.bootstrapPageSize = intProperty("bootstrap.page-size", 1000);
+        this.snapshotEnabled = Boolean.parseBoolean(stringProperty("snapshot.enabled", "false"));
+        this.snapshotFile = stringProperty("snapshot.file",
+                System.getProperty("jboss.server.data.dir", System.getProperty("java.io.tmpdir"))
+                        + "/hawkular-pinger/snapshot.bin");
+        this.metricsReportMode = ReportMode
+                .valueOf(stringProperty("metrics.report", ReportMode.ALL.name()).toUpperCase(Locale.US));
+        this.metricsHeartbeatSeconds = intProperty("metrics.heartbeat-interval", 300);
+        this.breakerThreshold = intProperty("breaker.threshold", 3);
+        this.breakerInitialBackoffSeconds = intProperty("breaker.initial-backoff", 60);
+        this.breakerMaxBackoffSeconds = intProperty("breaker.max-backoff", 3600);
+        this.tenantMaxInFlight = intProperty("tenant.max-in-flight", 512);
+        this.tenantMaxPerCycle = intProperty("tenant.max-per-cycle", 0);
+        this.hostMaxInFlight = intProperty("host.max-in-flight", 4);
+        this.hostMinSpacingMillis = intProperty("host.min-spacing", 100);
+        this.tlsSessionResumption = Boolean.parseBoolean(stringProperty("tls.session-resumption", "true"));
+        this.tlsSessionCacheSize = intProperty("tls.session-cache-size", 10000);
+        this.tlsSessionTimeoutSeconds = intProperty("tls.session-timeout", 3600);
+        this.statsTenant = stringProperty("stats.tenant", "");
     }
 
     public String getMetricsBaseUri() {
         return metricsBaseUri;
     }
+
+    /**
+     * @return how many ping results can wait for being published before the pinging threads start to block
+     */
+    public int getResultBufferSize() {
+        return resultBufferSize;
+    }
+
+    /**
+     * @return the {@link Engine} to perform the pings with
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return the number of I/O dispatcher threads of the {@link Engine#NIO} engine
+     */
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    /**
+     * @return the maximum number of connections in the HTTP connection pool
+     */
+    public int getPoolMaxTotal() {
+        return poolMaxTotal;
+    }
+
+    /**
+     * @return the maximum number of connections per route (i.e. per host and port) in the HTTP connection pool
+     */
+    public int getPoolMaxPerRoute() {
+        return poolMaxPerRoute;
+    }
+
+    /**
+     * @return the maximum lifetime of a pooled connection in seconds, {@code <= 0} for unlimited
+     */
+    public int getPoolTtlSeconds() {
+        return poolTtlSeconds;
+    }
+
+    /**
+     * @return the time in seconds after which an idle pooled connection is closed, {@code <= 0} for never
+     */
+    public int getPoolIdleTimeoutSeconds() {
+        return poolIdleTimeoutSeconds;
+    }
+
+    /**
+     * @return the default time to establish a TCP connection in milliseconds
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * @return the default time to wait for a connection from the pool in milliseconds
+     */
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    /**
+     * @return the default maximal period of inactivity between two data packets in milliseconds
+     */
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    /**
+     * @return how long to cache the successful host name resolutions in seconds
+     */
+    public int getDnsTtlSeconds() {
+        return dnsTtlSeconds;
+    }
+
+    /**
+     * @return how long to cache the failed host name resolutions in seconds
+     */
+    public int getDnsNegativeTtlSeconds() {
+        return dnsNegativeTtlSeconds;
+    }
+
+    /**
+     * @return the name of the default {@link BodyPolicy.Mode}
+     */
+    public String getBodyPolicy() {
+        return bodyPolicy;
+    }
+
+    /**
+     * @return the default maximal number of bytes to read with {@link BodyPolicy.Mode#CAPPED}
+     */
+    public int getBodyLimit() {
+        return bodyLimit;
+    }
+
+    /**
+     * @return the number of metrics per tenant that triggers sending them to Hawkular Metrics
+     */
+    public int getMetricsBatchSize() {
+        return metricsBatchSize;
+    }
+
+    /**
+     * @return the maximal time in milliseconds a metric can wait for being sent to Hawkular Metrics
+     */
+    public int getMetricsFlushIntervalMillis() {
+        return metricsFlushIntervalMillis;
+    }
+
+    /**
+     * @return the time in seconds after which unchanged traits are written to Hawkular Inventory again
+     */
+    public int getTraitsRefreshSeconds() {
+        return traitsRefreshSeconds;
+    }
+
+    /**
+     * @return the number of pending trait updates that triggers writing them to Hawkular Inventory
+     */
+    public int getTraitsBatchSize() {
+        return traitsBatchSize;
+    }
+
+    /**
+     * @return the maximal time in milliseconds a trait update can wait for being written to Hawkular Inventory
+     */
+    public int getTraitsFlushIntervalMillis() {
+        return traitsFlushIntervalMillis;
+    }
+
+    /**
+     * @return {@code true} if the destinations should be sharded across the nodes that have this option enabled
+     */
+    public boolean isClusterEnabled() {
+        return clusterEnabled;
+    }
+
+    /**
+     * @return the unique identifier of this node in the cluster of pingers
+     */
+    public String getClusterNodeId() {
+        return clusterNodeId;
+    }
+
+    /**
+     * @return the number of points each node occupies on the consistent hash ring
+     */
+    public int getClusterVirtualNodes() {
+        return clusterVirtualNodes;
+    }
+
+    /**
+     * @return how often in seconds this node announces its presence to the other nodes
+     */
+    public int getClusterHeartbeatSeconds() {
+        return clusterHeartbeatSeconds;
+    }
+
+    /**
+     * @return the time in seconds after which a node that has not sent any heartbeat is considered gone
+     */
+    public int getClusterMemberTimeoutSeconds() {
+        return clusterMemberTimeoutSeconds;
+    }
+
+    /**
+     * @return the number of URLs to load from Hawkular Inventory per second at startup
+     */
+    public int getBootstrapPageSize() {
+        return bootstrapPageSize;
+    }
+
+    /**
+     * @return {@code true} if the pinger state should be saved to {@link #getSnapshotFile()} and restored on startup
+     */
+    public boolean isSnapshotEnabled() {
+        return snapshotEnabled;
+    }
+
+    /**
+     * @return the path of the file to save the pinger state to
+     */
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * @return the {@link ReportMode} deciding which ping results are reported to Hawkular Metrics
+     */
+    public ReportMode getMetricsReportMode() {
+        return metricsReportMode;
+    }
+
+    /**
+     * @return the time in seconds after which an unchanged ping result is reported again in
+     *         {@link ReportMode#CHANGES}
+     */
+    public int getMetricsHeartbeatSeconds() {
+        return metricsHeartbeatSeconds;
+    }
+
+    /**
+     * @return the number of consecutive failures after which a destination is only probed, {@code <= 0} to disable
+     */
+    public int getBreakerThreshold() {
+        return breakerThreshold;
+    }
+
+    /**
+     * @return the time in seconds to wait before probing a destination that has reached {@link #getBreakerThreshold()}
+     */
+    public int getBreakerInitialBackoffSeconds() {
+        return breakerInitialBackoffSeconds;
+    }
+
+    /**
+     * @return the upper bound in seconds for the exponentially growing time between two probes of a failing destination
+     */
+    public int getBreakerMaxBackoffSeconds() {
+        return breakerMaxBackoffSeconds;
+    }
+
+    /**
+     * @return the maximal number of pings of a single tenant in flight, {@code <= 0} for unlimited
+     */
+    public int getTenantMaxInFlight() {
+        return tenantMaxInFlight;
+    }
+
+    /**
+     * @return the maximal number of pings of a single tenant started in one second, {@code <= 0} for unlimited
+     */
+    public int getTenantMaxPerCycle() {
+        return tenantMaxPerCycle;
+    }
+
+    /**
+     * @return the maximal number of pings of a single host in flight, {@code <= 0} for unlimited
+     */
+    public int getHostMaxInFlight() {
+        return hostMaxInFlight;
+    }
+
+    /**
+     * @return the minimal time in milliseconds between the starts of two pings of a single host, {@code <= 0} for
+     *         none; as all pings admitted in a tick start together, any spacing shorter than the one second tick means
+     *         at most one ping per host and tick
+     */
+    public int getHostMinSpacingMillis() {
+        return hostMinSpacingMillis;
+    }
+
+    /**
+     * @return whether the TLS sessions are kept for being resumed by the subsequent connections to the same host and
+     *         port
+     */
+    public boolean isTlsSessionResumption() {
+        return tlsSessionResumption;
+    }
+
+    /**
+     * @return the maximal number of TLS sessions kept for resumption, {@code <= 0} for unlimited
+     */
+    public int getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    /**
+     * @return the time in seconds for which a TLS session can be resumed, {@code <= 0} for unlimited
+     */
+    public int getTlsSessionTimeoutSeconds() {
+        return tlsSessionTimeoutSeconds;
+    }
+
+    /**
+     * @return the tenant to publish the metrics of the pinger itself under, empty not to publish them
+     */
+    public String getStatsTenant() {
+        return statsTenant;
+    }
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLSocket;
+
+import org.apache.http.HttpHost;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.hawkular.component.pinger.PingTimings.Recorder;
+
+/**
+ * The HTTP connection pool and the client shared by all {@link Pinger} instances. {@link Pinger} is a stateless bean
+ * of which the container creates as many instances as there are concurrent pings, so that a pool per {@link Pinger}
+ * instance would neither be able to reuse the kept-alive connections across the instances nor to enforce any global
+ * limits.
+ * <p>
+ * The pool is sized and tuned through {@link PingerConfiguration}: {@link PingerConfiguration#getPoolMaxTotal()},
+ * {@link PingerConfiguration#getPoolMaxPerRoute()}, {@link PingerConfiguration#getPoolTtlSeconds()} and
+ * {@link PingerConfiguration#getPoolIdleTimeoutSeconds()}. Expired and idle connections are closed by a background
+ * evictor thread.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class PingerConnectionPool implements Closeable {
+
+    /** The singleton */
+    private static final PingerConnectionPool INSTANCE = new PingerConnectionPool(PingerConfiguration.getInstance());
+
+    /**
+     * @return the singleton instance
+     */
+    public static PingerConnectionPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Creates a custom {@link PoolingHttpClientConnectionManager}. The returned connection manager accepts all SSL
+     * certificates, resolves the host names through {@link CachingDnsResolver}, stores remote IP address into
+     * {@link HttpContext} under {@link Pinger#REMOTE_ADDRESS_ATTRIBUTE}, measures the connect and TLS handshake
+     * phases into the {@link Recorder} found in the {@link HttpContext} and counts the TLS handshakes in
+     * {@link TlsSessions}.
+     *
+     * @param config the configuration to take the pool limits from
+     * @return a new {@link PoolingHttpClientConnectionManager}
+     */
+    private static PoolingHttpClientConnectionManager createConnectionManager(PingerConfiguration config) {
+
+        PlainConnectionSocketFactory plainSf = new PlainConnectionSocketFactory() {
+            @Override
+            public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host,
+                    InetSocketAddress remoteAddress, InetSocketAddress localAddress, HttpContext context)
+                    throws IOException {
+                setRemoteAddress(remoteAddress, context);
+                long start = System.nanoTime();
+                try {
+                    return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+                } finally {
+                    Recorder recorder = Recorder.from(context);
+                    if (recorder != null) {
+                        recorder.connect(System.nanoTime() - start);
+                    }
+                }
+            }
+        };
+
+        SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(Pinger.createSslContext(),
+                NoopHostnameVerifier.INSTANCE) {
+            @Override
+            public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host,
+                    InetSocketAddress remoteAddress, InetSocketAddress localAddress, HttpContext context)
+                    throws IOException {
+                /* includes the TLS handshake done in createLayeredSocket() */
+                setRemoteAddress(remoteAddress, context);
+                long start = System.nanoTime();
+                try {
+                    return super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+                } finally {
+                    Recorder recorder = Recorder.from(context);
+                    if (recorder != null) {
+                        recorder.connect(System.nanoTime() - start);
+                    }
+                }
+            }
+
+            @Override
+            public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context)
+                    throws IOException {
+                long start = System.nanoTime();
+                try {
+                    Socket result = super.createLayeredSocket(socket, target, port, context);
+                    if (result instanceof SSLSocket) {
+                        TlsSessions.getInstance().handshakeCompleted(((SSLSocket) result).getSession());
+                    }
+                    return result;
+                } finally {
+                    Recorder recorder = Recorder.from(context);
+                    if (recorder != null) {
+                        recorder.tls(System.nanoTime() - start);
+                    }
+                }
+            }
+        };
+
+        PoolingHttpClientConnectionManager result = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory> create().register("http", plainSf)
+                        .register("https", sslSocketFactory).build(),
+                null, null, CachingDnsResolver.getInstance(), config.getPoolTtlSeconds(), TimeUnit.SECONDS);
+        result.setMaxTotal(config.getPoolMaxTotal());
+        result.setDefaultMaxPerRoute(config.getPoolMaxPerRoute());
+        return result;
+    }
+
+    /**
+     * Stores remote IP address into {@link HttpContext} under {@link Pinger#REMOTE_ADDRESS_ATTRIBUTE}.
+     */
+    private static void setRemoteAddress(InetSocketAddress remoteAddress, HttpContext context) {
+        InetAddress remoteInetAddress = remoteAddress.getAddress();
+        Log.LOG.tracef("Putting remote IP address to HttpContext %s", remoteInetAddress);
+        context.setAttribute(Pinger.REMOTE_ADDRESS_ATTRIBUTE, remoteInetAddress);
+    }
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    private final CloseableHttpClient client;
+
+    PingerConnectionPool(PingerConfiguration config) {
+        super();
+        this.connectionManager = createConnectionManager(config);
+        HttpClientBuilder builder = HttpClientBuilder.create().setConnectionManager(connectionManager)
+                .addInterceptorLast(Pinger.RESPONSE_INTERCEPTOR).evictExpiredConnections();
+        if (config.getPoolIdleTimeoutSeconds() > 0) {
+            builder.evictIdleConnections(config.getPoolIdleTimeoutSeconds(), TimeUnit.SECONDS);
+        }
+        this.client = builder.build();
+    }
+
+    /**
+     * @return the {@link CloseableHttpClient} backed by this pool
+     */
+    public CloseableHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * @return the current totals of leased, pending and available connections of this pool
+     */
+    public PoolStats getStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Closes all connections of this pool that are not leased at the moment.
+     */
+    public void closeIdleConnections() {
+        connectionManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the evictor thread and closes all connections of this pool.
+     *
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.hawkular.component.pinger.PingStatus.FailureKind;
+
+/**
+ * A compact binary file holding the {@link PingDestination}s together with their last {@link PingStatus} and
+ * {@link Traits} so that the pinger can resume pinging immediately after a restart rather than waiting for all URLs
+ * to be loaded from Hawkular Inventory.
+ * <p>
+ * The file starts with {@link #MAGIC} and {@link #VERSION} followed by the entries, each of them preceded by a
+ * {@code 1} byte. The end is marked by a {@code 0} byte. The tenant, environment and method strings are written only
+ * once per file and referenced by their index afterwards. Files of an unknown version are ignored.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public final class PingerSnapshot {
+
+    /** A {@link PingDestination} with its last known state */
+    public static final class Entry {
+        private final PingDestination destination;
+        private final PingStatus status;
+        private final Traits traits;
+
+        /**
+         * @param destination the destination
+         * @param status the last {@link PingStatus} of {@code destination}, can be {@code null}
+         * @param traits the {@link Traits} of {@code destination} last written to Hawkular Inventory, can be
+         *        {@code null}
+         */
+        public Entry(PingDestination destination, PingStatus status, Traits traits) {
+            super();
+            this.destination = destination;
+            this.status = status;
+            this.traits = traits;
+        }
+
+        /**
+         * @return the destination
+         */
+        public PingDestination getDestination() {
+            return destination;
+        }
+
+        /**
+         * @return the last {@link PingStatus} of {@link #getDestination()} or {@code null}
+         */
+        public PingStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the {@link Traits} of {@link #getDestination()} last written to Hawkular Inventory or {@code null}
+         */
+        public Traits getTraits() {
+            return traits;
+        }
+    }
+
+    /** Writes the entries of a snapshot, see {@link PingerSnapshot#write(Path, Consumer)} */
+    public static final class Writer {
+        private final DataOutputStream out;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private int count;
+        private int skipped;
+
+        private Writer(DataOutputStream out) {
+            super();
+            this.out = out;
+        }
+
+        /**
+         * Writes the given entry unless its destination lacks the tenantId, environmentId, resourceId or URL. Such an
+         * entry could not be read back and it is skipped rather than failing the whole snapshot.
+         *
+         * @param entry the entry to write
+         * @throws IOException on write failure
+         */
+        public void write(Entry entry) throws IOException {
+            PingDestination dest = entry.destination;
+            if (dest.getTenantId() == null || dest.getEnvironmentId() == null || dest.getResourceId() == null
+                    || dest.getUrl() == null) {
+                Log.LOG.debugf("Not writing an incomplete destination to the snapshot: %s", dest);
+                skipped++;
+                return;
+            }
+            out.writeByte(1);
+            writeShared(dest.getTenantId());
+            writeShared(dest.getEnvironmentId());
+            out.writeUTF(dest.getResourceId());
+            out.writeUTF(dest.getUrl());
+            writeShared(dest.getMethod());
+            out.writeInt(dest.getInterval());
+            PingTimeouts timeouts = dest.getTimeouts();
+            out.writeInt(timeouts.getConnectTimeout());
+            out.writeInt(timeouts.getConnectionRequestTimeout());
+            out.writeInt(timeouts.getSocketTimeout());
+            out.writeByte(dest.getBodyPolicy().getMode().ordinal());
+            out.writeLong(dest.getBodyPolicy().getLimit());
+
+            PingStatus status = entry.status;
+            out.writeBoolean(status != null);
+            if (status != null) {
+                out.writeShort(status.getCode());
+                out.writeLong(status.getTimestamp());
+                out.writeInt(status.getDuration());
+                out.writeLong(status.getBytesRead());
+                FailureKind kind = status.getFailureKind();
+                out.writeByte(kind == null ? -1 : kind.ordinal());
+            }
+
+            Traits traits = entry.traits;
+            out.writeBoolean(traits != null);
+            if (traits != null) {
+                out.writeLong(traits.getTimestamp());
+                InetAddress address = traits.getRemoteAddress();
+                byte[] addressBytes = address == null ? new byte[0] : address.getAddress();
+                out.writeByte(addressBytes.length);
+                out.write(addressBytes);
+                out.writeBoolean(traits.getPoweredBy() != null);
+                if (traits.getPoweredBy() != null) {
+                    out.writeUTF(traits.getPoweredBy());
+                }
+            }
+            count++;
+        }
+
+        private void writeShared(String value) throws IOException {
+            Integer index = dictionary.get(value);
+            if (index != null) {
+                out.writeInt(index);
+            } else {
+                /* -1 introduces a new string, whose index is the current size of the dictionary */
+                out.writeInt(-1);
+                out.writeUTF(value);
+                dictionary.put(value, dictionary.size());
+            }
+        }
+    }
+
+    /**
+     * A callback that writes entries through the given {@link Writer}.
+     */
+    @FunctionalInterface
+    public interface EntrySource {
+        /**
+         * @param writer the {@link Writer} to write the entries to
+         * @throws IOException on write failure
+         */
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    /** The first four bytes of every snapshot file, the value is {@value} */
+    static final int MAGIC = 0x50494e47;
+
+    /** The version of the snapshot format, the value is {@value} */
+    static final int VERSION = 1;
+
+    /**
+     * Writes a new snapshot to the given {@code file}. The snapshot is first written to a temporary file that
+     * replaces {@code file} only after it was written completely.
+     *
+     * @param file the file to write to
+     * @param source the source of the entries to write
+     * @return the number of entries written, not counting the ones skipped by {@link Writer#write(Entry)}
+     * @throws IOException on write failure
+     */
+    public static int write(Path file, EntrySource source) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Writer writer;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writer = new Writer(out);
+            source.writeTo(writer);
+            out.writeByte(0);
+        }
+        if (writer.skipped > 0) {
+            Log.LOG.wSnapshotEntriesSkipped(writer.skipped, file.toString());
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return writer.count;
+    }
+
+    /**
+     * Reads the snapshot stored in the given {@code file} passing the entries to the given {@code consumer}.
+     *
+     * @param file the file to read
+     * @param consumer the callback to pass the entries to
+     * @return the number of entries read
+     * @throws IOException on read failure or if the file is not a snapshot of a known version
+     */
+    public static int read(Path file, Consumer<Entry> consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a pinger snapshot: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported pinger snapshot version " + version + " in " + file);
+            }
+            List<String> dictionary = new ArrayList<>();
+            int count = 0;
+            while (in.readByte() != 0) {
+                String tenantId = readShared(in, dictionary);
+                String environmentId = readShared(in, dictionary);
+                String resourceId = in.readUTF();
+                String url = in.readUTF();
+                String method = readShared(in, dictionary);
+                int interval = in.readInt();
+                PingTimeouts timeouts = PingTimeouts.of(in.readInt(), in.readInt(), in.readInt());
+                BodyPolicy.Mode mode = BodyPolicy.Mode.values()[in.readByte()];
+                long limit = in.readLong();
+                BodyPolicy bodyPolicy = mode == BodyPolicy.Mode.HEADERS ? BodyPolicy.HEADERS
+                        : mode == BodyPolicy.Mode.FULL ? BodyPolicy.FULL : BodyPolicy.capped(limit);
+                PingDestination dest = new PingDestination(tenantId, environmentId, resourceId, url, method,
+                        interval, timeouts, bodyPolicy);
+
+                Traits traits = null;
+                PingStatus status = null;
+                if (in.readBoolean()) {
+                    int code = in.readShort();
+                    long timestamp = in.readLong();
+                    int duration = in.readInt();
+                    long bytesRead = in.readLong();
+                    byte kind = in.readByte();
+                    status = new PingStatus(dest, code, timestamp, duration, PingTimings.UNKNOWN, bytesRead,
+                            kind < 0 ? null : FailureKind.values()[kind], Traits.empty(timestamp));
+                }
+                if (in.readBoolean()) {
+                    long timestamp = in.readLong();
+                    byte[] addressBytes = new byte[in.readByte()];
+                    in.readFully(addressBytes);
+                    InetAddress address = addressBytes.length == 0 ? null : InetAddress.getByAddress(addressBytes);
+                    String poweredBy = in.readBoolean() ? in.readUTF() : null;
+                    traits = new Traits(timestamp, address, poweredBy);
+                }
+                consumer.accept(new Entry(dest, status, traits));
+                count++;
+            }
+            return count;
+        }
+    }
+
+    private static String readShared(DataInputStream in, List<String> dictionary) throws IOException {
+        int index = in.readInt();
+        if (index < 0) {
+            String value = in.readUTF();
+            dictionary.add(value);
+            return value;
+        }
+        return dictionary.get(index);
+    }
+
+    private PingerSnapshot() {
+    }
+}
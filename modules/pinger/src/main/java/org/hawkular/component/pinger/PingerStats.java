@@ -0,0 +1,483 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ObjDoubleConsumer;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.http.pool.PoolStats;
+import org.hawkular.component.pinger.LatencyHistogram.Snapshot;
+import org.hawkular.component.pinger.PingStatus.FailureKind;
+
+/**
+ * The self-instrumentation of the pinger: the outcomes of the pings, the latencies of the pings, of the
+ * {@link PingCycle}s and of {@link PingManager#scheduleWork()}, and the gauges telling how saturated the pinger is.
+ * <p>
+ * The latencies are kept in {@link LatencyHistogram}s that are drained once a minute by {@link #roll(long, PoolStats,
+ * int)} into an immutable {@link Interval}, together with the ping counts of that minute and the gauges sampled at its
+ * end. The last {@link Interval} is exposed through JMX as {@link #OBJECT_NAME} and can be published as Hawkular
+ * metrics under {@link PingerConfiguration#getStatsTenant()}, see {@link MetricPublisher#publish(String, String,
+ * Interval)}.
+ * <p>
+ * The EJB container does not expose the queue of its asynchronous invocations, so {@link #getPingsInFlight()} is the
+ * measure of its saturation: the number of pings handed over to the ping engine whose outcome has not been collected
+ * yet. It growing far above the size of the container's thread pool means that the pings wait for a thread rather
+ * than for the remote side.
+ * <p>
+ * Concurrency assumptions: all methods can be called concurrently from any random thread except for
+ * {@link #roll(long, PoolStats, int)} that is expected to be called from a single thread at a time.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class PingerStats implements PingerStatsMBean {
+
+    /**
+     * The ping counts of a single minute, the latency histograms of that minute and the gauges sampled at its end.
+     */
+    public static class Interval {
+        private final long end;
+        private final long[] outcomes;
+        private final Snapshot pingLatency;
+        private final Snapshot cycleDuration;
+        private final Snapshot scheduleWork;
+        private final int pingsInFlight;
+        private final int cyclesInFlight;
+        private final int pingsWaiting;
+        private final int openCircuits;
+        private final int poolLeased;
+        private final int poolPending;
+        private final int poolAvailable;
+        private final int poolMax;
+
+        Interval(long end, long[] outcomes, Snapshot pingLatency, Snapshot cycleDuration, Snapshot scheduleWork,
+                int pingsInFlight, int cyclesInFlight, int pingsWaiting, int openCircuits, PoolStats pool) {
+            super();
+            this.end = end;
+            this.outcomes = outcomes;
+            this.pingLatency = pingLatency;
+            this.cycleDuration = cycleDuration;
+            this.scheduleWork = scheduleWork;
+            this.pingsInFlight = pingsInFlight;
+            this.cyclesInFlight = cyclesInFlight;
+            this.pingsWaiting = pingsWaiting;
+            this.openCircuits = openCircuits;
+            this.poolLeased = pool == null ? 0 : pool.getLeased();
+            this.poolPending = pool == null ? 0 : pool.getPending();
+            this.poolAvailable = pool == null ? 0 : pool.getAvailable();
+            this.poolMax = pool == null ? 0 : pool.getMax();
+        }
+
+        /**
+         * @return the value of {@code System.currentTimeMillis()} at the end of this {@link Interval}
+         */
+        public long getEnd() {
+            return end;
+        }
+
+        /**
+         * @param failureKind the outcome to look up or {@code null} for the pings that got an HTTP response
+         * @return the number of pings with the given outcome within this {@link Interval}
+         */
+        public long getCount(FailureKind failureKind) {
+            return outcomes[failureKind == null ? OK : failureKind.ordinal()];
+        }
+
+        /**
+         * @return the number of pings within this {@link Interval} that timed out
+         */
+        public long getTimedOutCount() {
+            return sum(outcomes, true);
+        }
+
+        /**
+         * @return the number of pings within this {@link Interval} that failed for another reason than a timeout,
+         *         not counting the skipped ones
+         */
+        public long getFailedCount() {
+            return sum(outcomes, false);
+        }
+
+        /**
+         * @return the round trip durations in milliseconds of the pings that got an HTTP response
+         */
+        public Snapshot getPingLatency() {
+            return pingLatency;
+        }
+
+        /**
+         * @return the durations of the {@link PingCycle}s in milliseconds
+         */
+        public Snapshot getCycleDuration() {
+            return cycleDuration;
+        }
+
+        /**
+         * @return the durations of {@link PingManager#scheduleWork()} in microseconds
+         */
+        public Snapshot getScheduleWork() {
+            return scheduleWork;
+        }
+
+        /**
+         * Passes the metric name suffix and the value of every number this {@link Interval} consists of to the given
+         * {@code consumer}.
+         *
+         * @param consumer the consumer to notify
+         */
+        public void forEachGauge(ObjDoubleConsumer<String> consumer) {
+            consumer.accept(".pings.ok", outcomes[OK]);
+            for (FailureKind kind : FAILURE_KINDS) {
+                consumer.accept(OUTCOME_SUFFIXES[kind.ordinal()], outcomes[kind.ordinal()]);
+            }
+            percentiles(consumer, ".ping.latency", pingLatency);
+            percentiles(consumer, ".cycle.duration", cycleDuration);
+            percentiles(consumer, ".schedule-work.duration", scheduleWork);
+            consumer.accept(".pings.in-flight", pingsInFlight);
+            consumer.accept(".cycles.in-flight", cyclesInFlight);
+            consumer.accept(".pings.waiting", pingsWaiting);
+            consumer.accept(".circuits.open", openCircuits);
+            consumer.accept(".pool.leased", poolLeased);
+            consumer.accept(".pool.pending", poolPending);
+            consumer.accept(".pool.available", poolAvailable);
+            consumer.accept(".pool.max", poolMax);
+        }
+
+        private static void percentiles(ObjDoubleConsumer<String> consumer, String prefix, Snapshot snapshot) {
+            consumer.accept(prefix + ".p50", snapshot.getValueAtPercentile(50));
+            consumer.accept(prefix + ".p90", snapshot.getValueAtPercentile(90));
+            consumer.accept(prefix + ".p99", snapshot.getValueAtPercentile(99));
+            consumer.accept(prefix + ".max", snapshot.getMax());
+        }
+    }
+
+    /** The name under which {@link #registerMBean()} registers the singleton */
+    public static final String OBJECT_NAME = "org.hawkular.pinger:type=PingerStats";
+
+    private static final FailureKind[] FAILURE_KINDS = FailureKind.values();
+
+    /** The index in the outcome arrays for the pings that got an HTTP response */
+    private static final int OK = FAILURE_KINDS.length;
+
+    /** The metric name suffixes of the outcome counts indexed by {@link FailureKind#ordinal()} */
+    private static final String[] OUTCOME_SUFFIXES = new String[FAILURE_KINDS.length];
+    static {
+        for (FailureKind kind : FAILURE_KINDS) {
+            OUTCOME_SUFFIXES[kind.ordinal()] = ".pings." + kind.name().toLowerCase(Locale.US).replace('_', '-');
+        }
+    }
+
+    /** The singleton */
+    private static final PingerStats INSTANCE = new PingerStats();
+
+    /**
+     * @return the singleton instance
+     */
+    public static PingerStats getInstance() {
+        return INSTANCE;
+    }
+
+    /** The ping counts since the start indexed by {@link FailureKind#ordinal()} and {@link #OK} */
+    private final AtomicLongArray outcomes = new AtomicLongArray(OK + 1);
+
+    /** The values of {@link #outcomes} at the end of {@link #last} */
+    private final long[] rolledOutcomes = new long[OK + 1];
+
+    private final LatencyHistogram pingLatency = new LatencyHistogram(TimeUnit.HOURS.toMillis(1));
+
+    private final LatencyHistogram cycleDuration = new LatencyHistogram(TimeUnit.HOURS.toMillis(1));
+
+    private final LatencyHistogram scheduleWork = new LatencyHistogram(TimeUnit.HOURS.toMicros(1));
+
+    private final AtomicInteger pingsInFlight = new AtomicInteger();
+
+    private final AtomicInteger cyclesInFlight = new AtomicInteger();
+
+    /** See {@link #getPingsWaiting()} */
+    private volatile int pingsWaiting;
+
+    /** The last full minute */
+    private volatile Interval last = new Interval(0, new long[OK + 1], Snapshot.EMPTY, Snapshot.EMPTY,
+            Snapshot.EMPTY, 0, 0, 0, 0, null);
+
+    /**
+     * Counts the outcome of the given {@link PingStatus} and records its duration if it got an HTTP response.
+     *
+     * @param status the outcome of a ping
+     */
+    public void record(PingStatus status) {
+        FailureKind kind = status.getFailureKind();
+        if (kind == null) {
+            outcomes.incrementAndGet(OK);
+            pingLatency.record(status.getDuration());
+        } else {
+            outcomes.incrementAndGet(kind.ordinal());
+        }
+    }
+
+    /**
+     * @param elapsedMillis the duration of a {@link PingCycle} in milliseconds
+     */
+    public void recordCycle(long elapsedMillis) {
+        cycleDuration.record(elapsedMillis);
+    }
+
+    /**
+     * @param elapsedNanos the duration of a {@link PingManager#scheduleWork()} invocation in nanoseconds
+     */
+    public void recordScheduleWork(long elapsedNanos) {
+        scheduleWork.record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+    }
+
+    /**
+     * To be called when a ping is handed over to the ping engine.
+     */
+    public void pingStarted() {
+        pingsInFlight.incrementAndGet();
+    }
+
+    /**
+     * To be called when the outcome of a ping started by {@link #pingStarted()} was collected or given up.
+     */
+    public void pingDone() {
+        pingsInFlight.decrementAndGet();
+    }
+
+    /**
+     * To be called when the collecting of the results of a {@link PingCycle} starts.
+     */
+    public void cycleStarted() {
+        cyclesInFlight.incrementAndGet();
+    }
+
+    /**
+     * To be called when the collecting of the results of a {@link PingCycle} started by {@link #cycleStarted()} ends.
+     */
+    public void cycleDone() {
+        cyclesInFlight.decrementAndGet();
+    }
+
+    /**
+     * @param pingsWaiting the number of destinations deferred to the next tick
+     */
+    public void setPingsWaiting(int pingsWaiting) {
+        this.pingsWaiting = pingsWaiting;
+    }
+
+    /**
+     * Closes the current minute: drains the latency histograms and the ping counts into a new {@link Interval} that
+     * becomes the one exposed through JMX.
+     *
+     * @param now the value of {@code System.currentTimeMillis()}
+     * @param pool the current state of the HTTP connection pool, can be {@code null}
+     * @param openCircuits the current number of destinations whose circuit is open
+     * @return the new {@link Interval}
+     */
+    public Interval roll(long now, PoolStats pool, int openCircuits) {
+        long[] counts = new long[OK + 1];
+        for (int i = 0; i < counts.length; i++) {
+            long total = outcomes.get(i);
+            counts[i] = total - rolledOutcomes[i];
+            rolledOutcomes[i] = total;
+        }
+        Interval result = new Interval(now, counts, pingLatency.drain(), cycleDuration.drain(), scheduleWork.drain(),
+                pingsInFlight.get(), cyclesInFlight.get(), pingsWaiting, openCircuits, pool);
+        last = result;
+        return result;
+    }
+
+    /**
+     * @return the last {@link Interval} produced by {@link #roll(long, PoolStats, int)}
+     */
+    public Interval getLastInterval() {
+        return last;
+    }
+
+    /**
+     * Registers this {@link PingerStats} with the platform {@link MBeanServer} as {@link #OBJECT_NAME}, replacing any
+     * previously registered instance.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            Log.LOG.wCouldNotRegisterMBean(OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Unregisters {@link #OBJECT_NAME} from the platform {@link MBeanServer} if registered.
+     */
+    public void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            Log.LOG.debugf(e, "Could not unregister MBean %s", OBJECT_NAME);
+        }
+    }
+
+    /**
+     * @param counts the ping counts indexed by {@link FailureKind#ordinal()}
+     * @param timedOut {@code true} to sum the timeouts, {@code false} to sum the other failures
+     * @return the sum of the given counts of the failures selected by {@code timedOut} not counting the pings skipped
+     *         due to {@link FailureKind#CIRCUIT_OPEN}
+     */
+    private static long sum(long[] counts, boolean timedOut) {
+        long result = 0;
+        for (FailureKind kind : FAILURE_KINDS) {
+            if (kind.isTimedOut() == timedOut && kind != FailureKind.CIRCUIT_OPEN) {
+                result += counts[kind.ordinal()];
+            }
+        }
+        return result;
+    }
+
+    private long[] totals() {
+        long[] result = new long[OK + 1];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = outcomes.get(i);
+        }
+        return result;
+    }
+
+    @Override
+    public long getIntervalEnd() {
+        return last.end;
+    }
+
+    @Override
+    public long getPingsOk() {
+        return outcomes.get(OK);
+    }
+
+    @Override
+    public long getPingsTimedOut() {
+        return sum(totals(), true);
+    }
+
+    @Override
+    public long getPingsFailed() {
+        return sum(totals(), false);
+    }
+
+    @Override
+    public long getPingsSkipped() {
+        return outcomes.get(FailureKind.CIRCUIT_OPEN.ordinal());
+    }
+
+    @Override
+    public long getPingLatencyP50() {
+        return last.pingLatency.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getPingLatencyP90() {
+        return last.pingLatency.getValueAtPercentile(90);
+    }
+
+    @Override
+    public long getPingLatencyP99() {
+        return last.pingLatency.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getPingLatencyMax() {
+        return last.pingLatency.getMax();
+    }
+
+    @Override
+    public long getCycleDurationP50() {
+        return last.cycleDuration.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getCycleDurationP99() {
+        return last.cycleDuration.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getCycleDurationMax() {
+        return last.cycleDuration.getMax();
+    }
+
+    @Override
+    public long getScheduleWorkP99() {
+        return last.scheduleWork.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getScheduleWorkMax() {
+        return last.scheduleWork.getMax();
+    }
+
+    @Override
+    public int getPingsInFlight() {
+        return pingsInFlight.get();
+    }
+
+    @Override
+    public int getCyclesInFlight() {
+        return cyclesInFlight.get();
+    }
+
+    @Override
+    public int getPingsWaiting() {
+        return pingsWaiting;
+    }
+
+    @Override
+    public int getOpenCircuits() {
+        return last.openCircuits;
+    }
+
+    @Override
+    public int getPoolLeased() {
+        return last.poolLeased;
+    }
+
+    @Override
+    public int getPoolPending() {
+        return last.poolPending;
+    }
+
+    @Override
+    public int getPoolAvailable() {
+        return last.poolAvailable;
+    }
+
+    @Override
+    public int getPoolMax() {
+        return last.poolMax;
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+/**
+ * The JMX view of {@link PingerStats}. The latencies and the pool gauges are those of the last full minute, the ping
+ * counters are totals since the start and the in-flight gauges are current.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public interface PingerStatsMBean {
+
+    /**
+     * @return the value of {@code System.currentTimeMillis()} at the end of the last full minute
+     */
+    long getIntervalEnd();
+
+    /**
+     * @return the number of pings that got an HTTP response
+     */
+    long getPingsOk();
+
+    /**
+     * @return the number of pings that timed out, see {@link PingStatus.FailureKind#isTimedOut()}
+     */
+    long getPingsTimedOut();
+
+    /**
+     * @return the number of pings that failed for another reason than a timeout
+     */
+    long getPingsFailed();
+
+    /**
+     * @return the number of pings not performed because the circuit of their destination was open
+     */
+    long getPingsSkipped();
+
+    /**
+     * @return the median of the ping round trip durations in milliseconds
+     */
+    long getPingLatencyP50();
+
+    /**
+     * @return the 90th percentile of the ping round trip durations in milliseconds
+     */
+    long getPingLatencyP90();
+
+    /**
+     * @return the 99th percentile of the ping round trip durations in milliseconds
+     */
+    long getPingLatencyP99();
+
+    /**
+     * @return the longest ping round trip duration in milliseconds
+     */
+    long getPingLatencyMax();
+
+    /**
+     * @return the median of the durations of the ping cycles in milliseconds
+     */
+    long getCycleDurationP50();
+
+    /**
+     * @return the 99th percentile of the durations of the ping cycles in milliseconds
+     */
+    long getCycleDurationP99();
+
+    /**
+     * @return the longest ping cycle duration in milliseconds
+     */
+    long getCycleDurationMax();
+
+    /**
+     * @return the 99th percentile of the durations of {@link PingManager#scheduleWork()} in microseconds
+     */
+    long getScheduleWorkP99();
+
+    /**
+     * @return the longest duration of {@link PingManager#scheduleWork()} in microseconds
+     */
+    long getScheduleWorkMax();
+
+    /**
+     * @return the number of pings handed over to the ping engine whose outcome has not been collected yet
+     */
+    int getPingsInFlight();
+
+    /**
+     * @return the number of {@link PingCycle}s whose results are being collected
+     */
+    int getCyclesInFlight();
+
+    /**
+     * @return the number of destinations deferred to the next tick by {@link TenantDispatcher}
+     */
+    int getPingsWaiting();
+
+    /**
+     * @return the number of destinations whose circuit is open, see {@link CircuitBreaker}
+     */
+    int getOpenCircuits();
+
+    /**
+     * @return the number of leased HTTP connections
+     */
+    int getPoolLeased();
+
+    /**
+     * @return the number of requests waiting for an HTTP connection
+     */
+    int getPoolPending();
+
+    /**
+     * @return the number of idle HTTP connections kept alive
+     */
+    int getPoolAvailable();
+
+    /**
+     * @return the maximal number of HTTP connections
+     */
+    int getPoolMax();
+}
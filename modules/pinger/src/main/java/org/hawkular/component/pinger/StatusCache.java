@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+
+/**
+ * Remembers the last {@link PingStatus} of each {@link PingDestination}.
+ * <p>
+ * Concurrency assumptions: all methods can be called concurrently from any random thread.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+@Singleton
+@Lock(LockType.READ)
+public class StatusCache {
+
+    private final Map<PingDestination, PingStatus> statuses = new ConcurrentHashMap<>();
+
+    /**
+     * @param status the {@link PingStatus} to remember as the last one of its {@link PingDestination}
+     */
+    public void put(PingStatus status) {
+        statuses.put(status.getDestination(), status);
+    }
+
+    /**
+     * @param destination the destination to look up
+     * @return the last {@link PingStatus} of the given {@link PingDestination} or {@code null}
+     */
+    public PingStatus get(PingDestination destination) {
+        return statuses.get(destination);
+    }
+
+    /**
+     * @param destination the destination to forget
+     */
+    public void remove(PingDestination destination) {
+        statuses.remove(destination);
+    }
+
+    /**
+     * @return the number of {@link PingDestination}s in this cache
+     */
+    public int size() {
+        return statuses.size();
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.Arrays;
+
+/**
+ * A compact table of the last reported HTTP status code per {@link PingDestination} that decides whether a new
+ * {@link PingStatus} is worth reporting: it is if its code differs from the last reported one or if the last report
+ * is older than the heartbeat interval. The values are kept in primitive arrays indexed by the
+ * {@link PingDestination#getSlot() slot} of the destination. The statuses of the destinations having no slot are
+ * always reported.
+ * <p>
+ * Concurrency assumptions: not thread safe; the owner is responsible for the synchronization.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class StatusChangeTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** The destination per slot to tell a reused slot from the one reported before */
+    private PingDestination[] destinations = new PingDestination[INITIAL_CAPACITY];
+
+    /** The number of non-null {@link #destinations} */
+    private int size;
+
+    /** The last reported HTTP status code per slot */
+    private int[] codes = new int[INITIAL_CAPACITY];
+
+    /** The timestamp of the last report per slot */
+    private long[] reportedAt = new long[INITIAL_CAPACITY];
+
+    private final long heartbeatMillis;
+
+    /**
+     * @param heartbeatMillis the time in milliseconds after which an unchanged status is reported again
+     */
+    public StatusChangeTable(long heartbeatMillis) {
+        super();
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    /**
+     * Decides whether the given {@link PingStatus} should be reported and if so, remembers it as the last reported
+     * one of its destination.
+     *
+     * @param status the status to decide about
+     * @return {@code true} if the status is the first one of its destination, if its code differs from the last
+     *         reported one or if the heartbeat is due; {@code false} otherwise
+     */
+    public boolean checkOut(PingStatus status) {
+        final PingDestination destination = status.getDestination();
+        final int slot = destination.getSlot();
+        if (slot == PingDestination.NO_SLOT) {
+            return true;
+        }
+        final int code = status.getCode();
+        final long timestamp = status.getTimestamp();
+        ensureCapacity(slot);
+        if (!isOwner(slot, destination)) {
+            if (destinations[slot] == null) {
+                size++;
+            }
+            destinations[slot] = destination;
+            codes[slot] = code;
+            reportedAt[slot] = timestamp;
+            return true;
+        }
+        if (codes[slot] != code || timestamp - reportedAt[slot] >= heartbeatMillis) {
+            codes[slot] = code;
+            reportedAt[slot] = timestamp;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forgets the given {@link PingDestination}.
+     *
+     * @param destination the destination to forget
+     */
+    public void remove(PingDestination destination) {
+        int slot = destination.getSlot();
+        if (slot != PingDestination.NO_SLOT && slot < destinations.length && isOwner(slot, destination)) {
+            destinations[slot] = null;
+            size--;
+        }
+    }
+
+    /**
+     * @return the number of {@link PingDestination}s in this table
+     */
+    public int size() {
+        return size;
+    }
+
+    private boolean isOwner(int slot, PingDestination destination) {
+        PingDestination owner = destinations[slot];
+        return owner == destination || destination.equals(owner);
+    }
+
+    private void ensureCapacity(int slot) {
+        if (slot >= destinations.length) {
+            int newLength = Math.max(slot + 1, destinations.length * 2);
+            destinations = Arrays.copyOf(destinations, newLength);
+            codes = Arrays.copyOf(codes, newLength);
+            reportedAt = Arrays.copyOf(reportedAt, newLength);
+        }
+    }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shares the ping capacity fairly among tenants. The destinations due in a given tick are queued per tenant and
+ * {@link #select(List)} takes them from the tenant queues in a round-robin fashion, one destination per tenant at a
+ * time, so that the pings of a tenant with many URLs are interleaved with the pings of all other tenants rather than
+ * queued in front of them. A tenant cannot have more than {@link PingerConfiguration#getTenantMaxInFlight()} pings in
+ * flight and more than {@link PingerConfiguration#getTenantMaxPerCycle()} pings started in a single tick. On top of
+ * that, a destination is only selected if its {@link HostThrottle} admits it. The destinations over those limits are
+ * deferred to the next tick keeping their position in the tenant queue.
+ * <p>
+ * Concurrency assumptions: {@link #done(PingDestination)}, {@link #getInFlight(String)} and
+ * {@link #drainDeferredCounts()} can be called concurrently from any random thread, all other methods are expected to
+ * be called from a single thread.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class TenantDispatcher {
+
+    /** The destinations waiting to be pinged per tenantId in the order of tenant arrival */
+    private final Map<String, LinkedHashSet<PingDestination>> queues = new LinkedHashMap<>();
+
+    /** All destinations in {@link #queues} to prevent queuing the same destination twice */
+    private final Set<PingDestination> queued = new HashSet<>();
+
+    /** The number of pings in flight per tenantId */
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    /** The number of times a destination was deferred per tenantId since the last {@link #drainDeferredCounts()} */
+    private final Map<String, Integer> deferred = new ConcurrentHashMap<>();
+
+    /** See {@link PingerConfiguration#getTenantMaxInFlight()}, {@code <= 0} for unlimited */
+    private final int maxInFlight;
+
+    /** See {@link PingerConfiguration#getTenantMaxPerCycle()}, {@code <= 0} for unlimited */
+    private final int maxPerCycle;
+
+    /** The per host limits */
+    private final HostThrottle hostThrottle;
+
+    /** The number of {@link #select(List)} invocations */
+    private long ticks;
+
+    /** The tenant to start the round-robin with is rotated in every tick */
+    private int rotation;
+
+    public TenantDispatcher() {
+        this(PingerConfiguration.getInstance().getTenantMaxInFlight(),
+                PingerConfiguration.getInstance().getTenantMaxPerCycle(), new HostThrottle());
+    }
+
+    /**
+     * Creates a new {@link TenantDispatcher} with no per host limits.
+     *
+     * @param maxInFlight the maximal number of pings in flight per tenant, {@code <= 0} for unlimited
+     * @param maxPerCycle the maximal number of pings started per tenant and tick, {@code <= 0} for unlimited
+     */
+    public TenantDispatcher(int maxInFlight, int maxPerCycle) {
+        this(maxInFlight, maxPerCycle, new HostThrottle(0, 0));
+    }
+
+    /**
+     * @param maxInFlight the maximal number of pings in flight per tenant, {@code <= 0} for unlimited
+     * @param maxPerCycle the maximal number of pings started per tenant and tick, {@code <= 0} for unlimited
+     * @param hostThrottle the per host limits
+     */
+    public TenantDispatcher(int maxInFlight, int maxPerCycle, HostThrottle hostThrottle) {
+        super();
+        this.hostThrottle = hostThrottle;
+        this.maxInFlight = maxInFlight <= 0 ? Integer.MAX_VALUE : maxInFlight;
+        this.maxPerCycle = maxPerCycle <= 0 ? Integer.MAX_VALUE : maxPerCycle;
+    }
+
+    /**
+     * Queues the given due destinations and selects the ones to ping in the current tick. The caller is expected to
+     * call {@link #done(PingDestination)} for each of the selected destinations once its ping is over.
+     *
+     * @param due the destinations that are due in the current tick
+     * @return the destinations to ping now, interleaved by tenant
+     */
+    public List<PingDestination> select(List<PingDestination> due) {
+        long now = System.currentTimeMillis();
+        if (++ticks % 60 == 0) {
+            hostThrottle.purge(now);
+        }
+        for (PingDestination destination : due) {
+            if (queued.add(destination)) {
+                queues.computeIfAbsent(destination.getTenantId(), k -> new LinkedHashSet<>()).add(destination);
+            }
+        }
+        if (queued.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> tenants = new ArrayList<>(queues.keySet());
+        Collections.rotate(tenants, -(rotation++ % tenants.size()));
+        Map<String, Integer> taken = new HashMap<>();
+        List<PingDestination> result = new ArrayList<>(Math.min(due.size(), queued.size()));
+        /*
+         * The hosts refused once stay refused for the rest of this tick, so the tenant queues are walked only once
+         * per tick and the destinations skipped due to their host keep their position for the next tick
+         */
+        Map<String, Iterator<PingDestination>> cursors = new HashMap<>();
+
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (String tenantId : tenants) {
+                Iterator<PingDestination> cursor = cursors.computeIfAbsent(tenantId, k -> queues.get(k).iterator());
+                if (!cursor.hasNext()) {
+                    continue;
+                }
+                AtomicInteger tenantInFlight = inFlight.computeIfAbsent(tenantId, k -> new AtomicInteger());
+                int tenantTaken = taken.getOrDefault(tenantId, 0);
+                if (tenantTaken >= maxPerCycle || tenantInFlight.get() >= maxInFlight) {
+                    continue;
+                }
+                PingDestination destination = null;
+                while (cursor.hasNext()) {
+                    PingDestination candidate = cursor.next();
+                    if (hostThrottle.tryAcquire(candidate, now)) {
+                        cursor.remove();
+                        destination = candidate;
+                        break;
+                    }
+                }
+                if (destination == null) {
+                    continue;
+                }
+                queued.remove(destination);
+                tenantInFlight.incrementAndGet();
+                taken.put(tenantId, tenantTaken + 1);
+                result.add(destination);
+                progress = true;
+            }
+        }
+
+        for (Iterator<Map.Entry<String, LinkedHashSet<PingDestination>>> it = queues.entrySet().iterator(); it
+                .hasNext();) {
+            Map.Entry<String, LinkedHashSet<PingDestination>> entry = it.next();
+            int waiting = entry.getValue().size();
+            if (waiting == 0) {
+                it.remove();
+            } else {
+                deferred.merge(entry.getKey(), waiting, Integer::sum);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Releases the in-flight slots of the tenant and of the host taken by the given {@link PingDestination} in
+     * {@link #select(List)}.
+     *
+     * @param destination the destination whose ping is over
+     */
+    public void done(PingDestination destination) {
+        AtomicInteger tenantInFlight = inFlight.get(destination.getTenantId());
+        if (tenantInFlight != null) {
+            tenantInFlight.decrementAndGet();
+        }
+        hostThrottle.release(destination);
+    }
+
+    /**
+     * Removes the given {@link PingDestination} from the queue of deferred destinations.
+     *
+     * @param destination the destination that is not to be pinged anymore
+     */
+    public void remove(PingDestination destination) {
+        if (queued.remove(destination)) {
+            queues.get(destination.getTenantId()).remove(destination);
+        }
+    }
+
+    /**
+     * @return the number of destinations waiting for the next tick
+     */
+    public int getWaitingCount() {
+        return queued.size();
+    }
+
+    /**
+     * @param tenantId the tenant to look up
+     * @return the number of pings of the given tenant in flight
+     */
+    public int getInFlight(String tenantId) {
+        AtomicInteger result = inFlight.get(tenantId);
+        return result == null ? 0 : result.get();
+    }
+
+    /**
+     * @return the per host limits applied by this {@link TenantDispatcher}
+     */
+    public HostThrottle getHostThrottle() {
+        return hostThrottle;
+    }
+
+    /**
+     * Returns the number of times a destination was deferred per tenantId since the last invocation of this method
+     * and resets the counters.
+     *
+     * @return a {@link Map} from tenantIds to the number of deferrals
+     */
+    public Map<String, Integer> drainDeferredCounts() {
+        Map<String, Integer> result = new HashMap<>();
+        for (String tenantId : deferred.keySet()) {
+            Integer count = deferred.remove(tenantId);
+            if (count != null) {
+                result.put(tenantId, count);
+            }
+        }
+        return result;
+    }
+
+}
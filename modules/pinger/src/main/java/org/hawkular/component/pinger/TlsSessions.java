@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.Enumeration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+
+/**
+ * Configures the TLS session caching of the {@link SSLContext}s used by the ping engines and counts the full and
+ * resumed TLS handshakes, so that it is possible to see how many costly full handshakes the session resumption
+ * saves on HTTPS-heavy URL lists.
+ * <p>
+ * JSSE resumes a session cached by the client {@link SSLSessionContext} when a new connection is opened to the same
+ * host and port. A resumed handshake hands out the very same {@link SSLSession} instance as the original full
+ * handshake, so a handshake is recognized as resumed by a marker value put into the session after the full handshake.
+ * This works up to TLS 1.2. The TLS 1.3 resumption is based on single use session tickets and every handshake yields a
+ * new {@link SSLSession} instance there, so that JSSE gives no way to tell a resumed TLS 1.3 handshake from a full one
+ * and all TLS 1.3 handshakes are counted as full.
+ * <p>
+ * If {@link PingerConfiguration#isTlsSessionResumption()} is {@code false}, the session cache is emptied right after
+ * each handshake so that every new connection does a full handshake.
+ * <p>
+ * Concurrency assumptions: all methods can be called concurrently from any random thread.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class TlsSessions {
+
+    /** The name of the {@link SSLSession} value marking the sessions already counted as a full handshake */
+    private static final String HANDSHAKE_COUNTED = TlsSessions.class.getName() + ".handshakeCounted";
+
+    /** The cipher suite of the placeholder session JSSE returns when no session could be established */
+    private static final String NULL_CIPHER_SUITE = "SSL_NULL_WITH_NULL_NULL";
+
+    /** The singleton */
+    private static final TlsSessions INSTANCE = new TlsSessions(PingerConfiguration.getInstance());
+
+    /**
+     * @return the singleton instance
+     */
+    public static TlsSessions getInstance() {
+        return INSTANCE;
+    }
+
+    /** See {@link PingerConfiguration#isTlsSessionResumption()} */
+    private final boolean resumption;
+
+    /** See {@link PingerConfiguration#getTlsSessionCacheSize()} */
+    private final int cacheSize;
+
+    /** See {@link PingerConfiguration#getTlsSessionTimeoutSeconds()} */
+    private final int timeoutSeconds;
+
+    /** The number of full handshakes since the last {@link #drainFullHandshakeCount()} */
+    private final AtomicInteger fullHandshakes = new AtomicInteger();
+
+    /** The number of resumed handshakes since the last {@link #drainResumedHandshakeCount()} */
+    private final AtomicInteger resumedHandshakes = new AtomicInteger();
+
+    TlsSessions(PingerConfiguration config) {
+        this(config.isTlsSessionResumption(), config.getTlsSessionCacheSize(), config.getTlsSessionTimeoutSeconds());
+    }
+
+    /**
+     * @param resumption see {@link PingerConfiguration#isTlsSessionResumption()}
+     * @param cacheSize see {@link PingerConfiguration#getTlsSessionCacheSize()}
+     * @param timeoutSeconds see {@link PingerConfiguration#getTlsSessionTimeoutSeconds()}
+     */
+    public TlsSessions(boolean resumption, int cacheSize, int timeoutSeconds) {
+        super();
+        this.resumption = resumption;
+        this.cacheSize = cacheSize;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * Sets the size and timeout of the client session cache of the given {@link SSLContext}.
+     *
+     * @param sslContext the {@link SSLContext} to configure, can be {@code null}
+     * @return {@code sslContext}
+     */
+    public SSLContext configure(SSLContext sslContext) {
+        if (sslContext != null) {
+            SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+            if (sessionContext != null) {
+                /* JSSE uses 0 for unlimited */
+                sessionContext.setSessionCacheSize(resumption ? Math.max(cacheSize, 0) : 1);
+                sessionContext.setSessionTimeout(Math.max(timeoutSeconds, 0));
+            }
+        }
+        return sslContext;
+    }
+
+    /**
+     * Counts the handshake that has produced the given {@link SSLSession} either as a full or as a resumed one. To be
+     * called once per connection right after the handshake has finished.
+     *
+     * @param session the session established by the handshake
+     * @return {@code true} if the session was resumed, {@code false} otherwise
+     */
+    public boolean handshakeCompleted(SSLSession session) {
+        if (session == null || NULL_CIPHER_SUITE.equals(session.getCipherSuite())) {
+            return false;
+        }
+        boolean resumed = session.getValue(HANDSHAKE_COUNTED) != null;
+        if (resumed) {
+            resumedHandshakes.incrementAndGet();
+        } else {
+            fullHandshakes.incrementAndGet();
+            session.putValue(HANDSHAKE_COUNTED, Boolean.TRUE);
+        }
+        if (!resumption) {
+            session.invalidate();
+            SSLSessionContext sessionContext = session.getSessionContext();
+            if (sessionContext != null) {
+                /* the size of the cache is 1, see configure() */
+                for (Enumeration<byte[]> ids = sessionContext.getIds(); ids.hasMoreElements();) {
+                    SSLSession cached = sessionContext.getSession(ids.nextElement());
+                    if (cached != null) {
+                        cached.invalidate();
+                    }
+                }
+            }
+        }
+        return resumed;
+    }
+
+    /**
+     * @return the number of full handshakes since the last call of this method
+     */
+    public int drainFullHandshakeCount() {
+        return fullHandshakes.getAndSet(0);
+    }
+
+    /**
+     * @return the number of resumed handshakes since the last call of this method
+     */
+    public int drainResumedHandshakeCount() {
+        return resumedHandshakes.getAndSet(0);
+    }
+
+}
@@ -17,11 +17,12 @@
 package org.hawkular.component.pinger;
 
 import java.net.InetAddress;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.http.Header;
 import org.apache.http.HeaderIterator;
@@ -45,15 +46,49 @@ public class Traits {
         X_POWERED_BY("x-powered-by"),
         X_VERSION("x-version");
 
-        private static final Map<String, TraitHeader> index;
+        /**
+         * The {@link TraitHeader}s indexed by the length of their names. The length alone is a perfect hash over the
+         * present set of header names, so that {@link #classify(String)} needs a single case-insensitive comparison
+         * for a trait header and usually none for any other header. A header added in the future having the same
+         * length as some existing one would just make the given bucket longer than one.
+         */
+        private static final TraitHeader[][] byLength;
         static {
-            TraitHeader[] traitHeaders = TraitHeader.values();
-            Map<String, TraitHeader> tmp = new HashMap<String, TraitHeader>(traitHeaders.length + traitHeaders.length
-                    / 2);
-            for (TraitHeader h : traitHeaders) {
-                tmp.put(h.toString(), h);
+            int maxLength = 0;
+            for (TraitHeader h : TraitHeader.values()) {
+                maxLength = Math.max(maxLength, h.header.length());
+            }
+            TraitHeader[][] tmp = new TraitHeader[maxLength + 1][];
+            for (TraitHeader h : TraitHeader.values()) {
+                int len = h.header.length();
+                TraitHeader[] bucket = tmp[len] == null ? new TraitHeader[1] : Arrays.copyOf(tmp[len],
+                        tmp[len].length + 1);
+                bucket[bucket.length - 1] = h;
+                tmp[len] = bucket;
+            }
+            byLength = tmp;
+        }
+
+        /**
+         * A case-insensitive and null-tolerant variant of {@link #valueOf(String)} that does not allocate anything.
+         *
+         * @param header
+         *            the header name to transform to a {@link TraitHeader}, can be {@code null}
+         * @return the corresponding {@link TraitHeader} or {@code null} if there is no such {@link TraitHeader}
+         */
+        public static TraitHeader classify(String header) {
+            if (header == null || header.length() >= byLength.length) {
+                return null;
             }
-            index = Collections.unmodifiableMap(tmp);
+            TraitHeader[] bucket = byLength[header.length()];
+            if (bucket != null) {
+                for (int i = 0; i < bucket.length; i++) {
+                    if (bucket[i].header.equalsIgnoreCase(header)) {
+                        return bucket[i];
+                    }
+                }
+            }
+            return null;
         }
 
         /**
@@ -62,9 +97,10 @@ public class Traits {
          * @param header
          *            the header name to transform to a {@link TraitHeader}
          * @return the corresponding {@link TraitHeader} or {@code null} if there si no such {@link TraitHeader}
+         * @see #classify(String)
          */
         public static TraitHeader fastValueOf(String header) {
-            return index.get(header.toLowerCase(Locale.US));
+            return classify(header);
         }
 
         /** The name of the header */
@@ -81,13 +117,79 @@ public class Traits {
         }
     }
 
+    /**
+     * A sorted set of distinct {@link String}s backed by an array. A lightweight replacement for a {@link TreeSet}
+     * that is good enough for the few {@code X-Powered-By} items a response typically has.
+     */
+    private static class SortedItems {
+        private String[] items = new String[4];
+        private int size;
+
+        public void add(String item) {
+            int i = Arrays.binarySearch(items, 0, size, item);
+            if (i >= 0) {
+                return;
+            }
+            i = -(i + 1);
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            System.arraycopy(items, i, items, i + 1, size - i);
+            items[i] = item;
+            size++;
+        }
+
+        public void remove(String item) {
+            int i = Arrays.binarySearch(items, 0, size, item);
+            if (i >= 0) {
+                size--;
+                System.arraycopy(items, i + 1, items, i, size - i);
+                items[size] = null;
+            }
+        }
+    }
+
     private static final String ASP_NET = "ASP.NET";
 
+    /** The maximal number of entries in {@link #poweredByCache} */
+    private static final int POWERED_BY_CACHE_SIZE = 4096;
+
+    /**
+     * Canonical instances of the {@link #poweredBy} values. The same few values occur over and over again so that the
+     * {@link Traits} held e.g. in {@link TraitsCache} can share them rather than each holding its own copy.
+     */
+    private static final Map<String, String> poweredByCache = new ConcurrentHashMap<>();
+
+    /**
+     * @param value the value to look up, can be {@code null}
+     * @return the canonical instance equal to {@code value} or {@code value} itself
+     */
+    static String canonicalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String result = poweredByCache.get(value);
+        if (result == null) {
+            if (poweredByCache.size() >= POWERED_BY_CACHE_SIZE) {
+                return value;
+            }
+            result = poweredByCache.putIfAbsent(value, value);
+            if (result == null) {
+                result = value;
+            }
+        }
+        return result;
+    }
+
     /**
      * Collects the traits from the given {@link HttpResponse}.
      * <p>
      * Header keys tha occur multiple times, are concantenated into a single comma-separated string in alphabetical
      * order.
+     * <p>
+     * This runs for every ping, therefore it avoids allocations in the common cases: the header names are classified
+     * without lower-casing them, a single {@code Server} or {@code X-Powered-By} value is used as is without copying
+     * and the resulting value is canonicalized through a cache.
      *
      * @param httpResponse the HTTP reponse to collect traits from
      * @param timestamp the UNIX timestamp when the response was received
@@ -95,35 +197,46 @@ public class Traits {
      */
     public static Traits collect(HttpResponse httpResponse, long timestamp, InetAddress remoteAddress) {
 
-        TreeSet<String> xPoweredBy = null;
-        StringBuilder poweredByBuilder = new StringBuilder();
+        final boolean trace = Log.LOG.isTraceEnabled();
+        String server = null;
+        StringBuilder servers = null;
+        SortedItems xPoweredBy = null;
         boolean hasAspNet = false;
 
         HeaderIterator headers = httpResponse.headerIterator();
         while (headers.hasNext()) {
             Header header = headers.nextHeader();
-            Log.LOG.tracef("Is this a trait header? %s:%s from %s", header.getName(), header.getValue(), remoteAddress);
-            TraitHeader traitHeader = TraitHeader.fastValueOf(header.getName());
-            if (traitHeader != null) {
-                Log.LOG.tracef("Found a trait header: %s:%s from %s", header.getName(), header.getValue(),
+            if (trace) {
+                Log.LOG.tracef("Is this a trait header? %s:%s from %s", header.getName(), header.getValue(),
                         remoteAddress);
+            }
+            TraitHeader traitHeader = TraitHeader.classify(header.getName());
+            if (traitHeader != null) {
+                if (trace) {
+                    Log.LOG.tracef("Found a trait header: %s:%s from %s", header.getName(), header.getValue(),
+                            remoteAddress);
+                }
 
                 switch (traitHeader) {
                 case SERVER:
-                    if (poweredByBuilder.length() != 0) {
+                    if (server == null) {
+                        server = header.getValue();
+                    } else {
                         /* multiple server headers do not make much sense, but let us be prepared */
-                        poweredByBuilder.append(", ");
+                        if (servers == null) {
+                            servers = new StringBuilder(server);
+                        }
+                        servers.append(", ").append(header.getValue());
                     }
-                    poweredByBuilder.append(header.getValue());
                     break;
                 case X_POWERED_BY:
                     String powBy = header.getValue();
                     if (xPoweredBy == null) {
-                        xPoweredBy = new TreeSet<>();
+                        xPoweredBy = new SortedItems();
                     }
                     if (ASP_NET.equals(powBy)) {
                         if (!hasAspNet) {
-                            xPoweredBy.add(powBy);
+                            xPoweredBy.add(ASP_NET);
                         }
                         hasAspNet = true;
                     } else {
@@ -131,13 +244,12 @@ public class Traits {
                     }
                     break;
                 case X_ASPNET_VERSION:
-                    if (hasAspNet) {
-                        xPoweredBy.remove(ASP_NET);
-                    }
                     if (xPoweredBy == null) {
-                        xPoweredBy = new TreeSet<>();
+                        xPoweredBy = new SortedItems();
+                    } else if (hasAspNet) {
+                        xPoweredBy.remove(ASP_NET);
                     }
-                    xPoweredBy.add(ASP_NET +"/"+ header.getValue());
+                    xPoweredBy.add(ASP_NET + "/" + header.getValue());
                     hasAspNet = true;
                     break;
                 default:
@@ -146,19 +258,31 @@ public class Traits {
             }
         }
 
-        /* server was added to poweredByBuilder already
-         * now lets add the x-powered-by items in alphabetic order */
-        if (xPoweredBy != null) {
-            for (String val : xPoweredBy) {
+        if (servers != null) {
+            server = servers.toString();
+        }
+        String poweredBy;
+        if (xPoweredBy == null || xPoweredBy.size == 0) {
+            poweredBy = server;
+        } else if (server == null && xPoweredBy.size == 1) {
+            poweredBy = xPoweredBy.items[0];
+        } else {
+            /* server first, then the x-powered-by items in alphabetic order */
+            StringBuilder poweredByBuilder = new StringBuilder();
+            if (server != null) {
+                poweredByBuilder.append(server);
+            }
+            for (int i = 0; i < xPoweredBy.size; i++) {
                 if (poweredByBuilder.length() != 0) {
                     poweredByBuilder.append(", ");
                 }
-                poweredByBuilder.append(val);
+                poweredByBuilder.append(xPoweredBy.items[i]);
             }
+            poweredBy = poweredByBuilder.toString();
         }
 
         return new Traits(timestamp, remoteAddress,
-                poweredByBuilder.length() == 0 ? null : poweredByBuilder.toString());
+                poweredBy == null || poweredBy.isEmpty() ? null : canonicalize(poweredBy));
     };
 
     /**
@@ -216,6 +340,16 @@ public class Traits {
         return timestamp;
     }
 
+    /**
+     * @param other the {@link Traits} to compare with
+     * @return {@code true} if the given {@link Traits} have the same values as this {@link Traits} ignoring the
+     *         {@link #timestamp}, {@code false} otherwise
+     */
+    public boolean hasSameValues(Traits other) {
+        return other != null && Objects.equals(remoteAddress, other.remoteAddress)
+                && Objects.equals(poweredBy, other.poweredBy);
+    }
+
     /** @see java.lang.Object#equals(java.lang.Object) */
     @Override
     public boolean equals(Object obj) {
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+
+/**
+ * Remembers the {@link Traits} last written to Hawkular Inventory for each URL resource so that
+ * {@link TraitsPublisher} writes only when a trait value has actually changed or when the last write is older than
+ * {@link PingerConfiguration#getTraitsRefreshSeconds()}. The latter keeps {@code trait-collected-on} reasonably
+ * fresh as a "still seen" mark.
+ * <p>
+ * Concurrency assumptions: all methods can be called concurrently from any random thread.
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+@Singleton
+@Lock(LockType.READ)
+public class TraitsCache {
+
+    /** The {@link Traits} last written per key as returned by {@link #key(PingDestination)} */
+    private final Map<String, Traits> written = new ConcurrentHashMap<>();
+
+    /** See {@link PingerConfiguration#getTraitsRefreshSeconds()} */
+    private final long refreshMillis = TimeUnit.SECONDS
+            .toMillis(PingerConfiguration.getInstance().getTraitsRefreshSeconds());
+
+    private static String key(PingDestination destination) {
+        return destination.getTenantId() + '/' + destination.getEnvironmentId() + '/' + destination.getResourceId();
+    }
+
+    /**
+     * Decides whether the given {@link Traits} need to be written to Hawkular Inventory and if so, remembers them as
+     * written. The caller is expected to call {@link #invalidate(PingDestination)} if the write fails.
+     *
+     * @param destination the destination the {@code traits} were collected from
+     * @param traits the newly collected {@link Traits}
+     * @return {@code true} if {@code traits} should be written, {@code false} otherwise
+     */
+    public boolean checkOut(PingDestination destination, Traits traits) {
+        boolean[] result = new boolean[1];
+        written.compute(key(destination), (k, old) -> {
+            if (old != null && old.hasSameValues(traits)
+                    && traits.getTimestamp() - old.getTimestamp() < refreshMillis) {
+                return old;
+            }
+            result[0] = true;
+            return traits;
+        });
+        return result[0];
+    }
+
+    /**
+     * @param destination the destination to look up
+     * @return the {@link Traits} of the given {@link PingDestination} last written to Hawkular Inventory or
+     *         {@code null}
+     */
+    public Traits get(PingDestination destination) {
+        return written.get(key(destination));
+    }
+
+    /**
+     * Remembers the given {@link Traits} as written unless some {@link Traits} are known for the given
+     * {@link PingDestination} already. Used when restoring a {@link PingerSnapshot}.
+     *
+     * @param destination the destination the {@code traits} were collected from
+     * @param traits the {@link Traits} written to Hawkular Inventory before
+     */
+    public void restore(PingDestination destination, Traits traits) {
+        written.putIfAbsent(key(destination), traits);
+    }
+
+    /**
+     * Forgets the {@link Traits} of the given {@link PingDestination} so that the next ones are written
+     * unconditionally.
+     *
+     * @param destination the destination to forget
+     */
+    public void invalidate(PingDestination destination) {
+        written.remove(key(destination));
+    }
+
+    /**
+     * @return the number of URL resources in this cache
+     */
+    public int size() {
+        return written.size();
+    }
+
+}
@@ -17,22 +17,33 @@
 package org.hawkular.component.pinger;
 
 import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
-import javax.ejb.Asynchronous;
-import javax.ejb.Stateless;
+import javax.annotation.PreDestroy;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
 
 import org.hawkular.inventory.api.EntityNotFoundException;
 import org.hawkular.inventory.api.Inventory;
 import org.hawkular.inventory.api.Resources;
+import org.hawkular.inventory.api.TransactionFrame;
 import org.hawkular.inventory.api.model.Resource;
 import org.hawkular.inventory.api.model.Resource.Update.Builder;
 
 /**
- * Stores ping results to Hawkular Inventory.
+ * Stores ping results to Hawkular Inventory. The {@link Traits} that {@link TraitsCache} considers worth writing are
+ * not written immediately, rather they are collected and written in one inventory transaction once there are
+ * {@link PingerConfiguration#getTraitsBatchSize()} of them or once the oldest of them is older than
+ * {@link PingerConfiguration#getTraitsFlushIntervalMillis()}. Only the latest {@link Traits} per URL resource are
+ * kept in between the flushes. The updates are grouped by tenant and environment so that the path to the
+ * {@link Resources} of a given environment is walked only once per flush.
  *
  * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
  */
-@Stateless
+@Singleton
 public class TraitsPublisher {
 
     private static final String TRAIT_PROPERTY_PREFIX = "trait-";
@@ -40,21 +51,103 @@ public class TraitsPublisher {
     @javax.annotation.Resource(lookup = "java:global/Hawkular/Inventory")
     private Inventory inventory;
 
+    @EJB
+    TraitsCache traitsCache;
+
+    /** The pending updates per tenantId, environmentId and destination */
+    private final Map<String, Map<String, Map<PingDestination, Traits>>> pending = new HashMap<>();
+
+    /** The number of {@link Traits} in {@link #pending} */
+    private int pendingCount;
+
+    /** The value of {@code System.nanoTime()} when the oldest of the {@link #pending} updates was added */
+    private long oldestPendingNanos;
+
+    /** See {@link PingerConfiguration#getTraitsBatchSize()} */
+    private final int batchSize = PingerConfiguration.getInstance().getTraitsBatchSize();
+
+    /** See {@link PingerConfiguration#getTraitsFlushIntervalMillis()} */
+    private final long flushIntervalNanos = TimeUnit.MILLISECONDS
+            .toNanos(PingerConfiguration.getInstance().getTraitsFlushIntervalMillis());
+
     /**
-     * Stores the {@link Traits} of the given {@link PingStatus} in Hawkular Inventory.
+     * Queues the {@link Traits} of the given {@link PingStatus} for being stored in Hawkular Inventory unless they
+     * are the same as the ones written recently as decided by {@link TraitsCache}.
      *
      * @param status the {@link PingStatus} to publish
      */
-    @Asynchronous
     public void publish(PingStatus status) {
         final Traits traits = status.getTraits();
 
         PingDestination dest = status.getDestination();
 
+        if (!traitsCache.checkOut(dest, traits)) {
+            Log.LOG.tracef("Traits of %s unchanged", dest.getResourceId());
+            return;
+        }
+
+        if (pendingCount == 0) {
+            oldestPendingNanos = System.nanoTime();
+        }
+        Traits replaced = pending.computeIfAbsent(dest.getTenantId(), k -> new HashMap<>())
+                .computeIfAbsent(dest.getEnvironmentId(), k -> new HashMap<>()).put(dest, traits);
+        if (replaced == null) {
+            pendingCount++;
+        }
+        if (pendingCount >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Invoked every second to write the pending updates if the oldest of them is older than
+     * {@link PingerConfiguration#getTraitsFlushIntervalMillis()}.
+     */
+    @Schedule(minute = "*", hour = "*", second = "*", persistent = false)
+    public void flushExpired() {
+        if (pendingCount > 0 && System.nanoTime() - oldestPendingNanos >= flushIntervalNanos) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes all pending updates to Hawkular Inventory in a single transaction.
+     */
+    public void flush() {
+        if (pendingCount == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        int count = pendingCount;
+
+        TransactionFrame transaction = inventory.newTransactionFrame();
+        Inventory boundInventory = transaction.boundInventory();
         try {
-            Resources.ReadWrite resourceAccess = inventory.tenants().get(dest.getTenantId()).environments()
-                    .get(dest.getEnvironmentId()).resources();
+            for (Map.Entry<String, Map<String, Map<PingDestination, Traits>>> tenantEntry : pending.entrySet()) {
+                for (Map.Entry<String, Map<PingDestination, Traits>> envEntry : tenantEntry.getValue().entrySet()) {
+                    Resources.ReadWrite resourceAccess = boundInventory.tenants().get(tenantEntry.getKey())
+                            .environments().get(envEntry.getKey()).resources();
+                    for (Map.Entry<PingDestination, Traits> entry : envEntry.getValue().entrySet()) {
+                        update(resourceAccess, entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            transaction.commit();
+            Log.LOG.dTraitsFlushed(count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            transaction.rollback();
+            /* make sure the failed updates get retried */
+            pending.values().stream().flatMap(m -> m.values().stream()).flatMap(m -> m.keySet().stream())
+                    .forEach(traitsCache::invalidate);
+            Log.LOG.wCouldNotWriteTraits(count, e);
+        } finally {
+            pending.clear();
+            pendingCount = 0;
+        }
+    }
 
+    private void update(Resources.ReadWrite resourceAccess, PingDestination dest, Traits traits) {
+        try {
             Resource resource = resourceAccess.get(dest.getResourceId()).entity();
 
             Builder updateBuilder = Resource.Update.builder();
@@ -76,11 +169,16 @@ public class TraitsPublisher {
                 updateBuilder.withProperty(TRAIT_PROPERTY_PREFIX + "powered-by", poweredBy);
             }
 
-            inventory.tenants().get(dest.getTenantId()).environments().get(dest.getEnvironmentId()).resources()
-                    .update(dest.getResourceId(), updateBuilder.build());
+            resourceAccess.update(dest.getResourceId(), updateBuilder.build());
         } catch (EntityNotFoundException e) {
+            traitsCache.invalidate(dest);
             Log.LOG.iResourceNotFound(dest.getResourceId(), dest.getTenantId());
         }
     }
 
+    @PreDestroy
+    public void shutDown() {
+        flush();
+    }
+
 }
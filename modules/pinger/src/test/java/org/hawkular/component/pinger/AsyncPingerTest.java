@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+
+/**
+ * A test for the non-blocking {@link AsyncPinger}
+ *
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class AsyncPingerTest {
+
+    private static final String TEST_RESOURCE_ID = "test-rsrc";
+    private static final String TEST_TENANT_ID = "test-tenat";
+    private static final String TEST_ENVIRONMENT_ID = "test-env";
+    public static final String TEST_HOST = "localhost";
+    private static final int HTTP_PORT;
+    private static final int HTTPS_PORT;
+    static {
+        HTTP_PORT = Integer.parseInt(System.getProperty(PingerTest.HTTP_PORT_PROPERTY, "8877"));
+        HTTPS_PORT = Integer.parseInt(System.getProperty(PingerTest.HTTPS_PORT_PROPERTY, "8878"));
+    }
+
+    @Rule
+    public WireMockRule testServer = new WireMockRule(WireMockConfiguration.wireMockConfig().port(HTTP_PORT)
+            .httpsPort(HTTPS_PORT));
+
+    private AsyncPinger pinger;
+
+    @Before
+    public void before() throws Exception {
+        pinger = new AsyncPinger();
+    }
+
+    @After
+    public void after() throws Exception {
+        pinger.close();
+    }
+
+    private PingStatus ping(String url, String method) throws InterruptedException {
+        return ping(new PingDestination(TEST_TENANT_ID, TEST_ENVIRONMENT_ID, TEST_RESOURCE_ID, url, method));
+    }
+
+    private PingStatus ping(PingDestination destination) throws InterruptedException {
+        PingCycle cycle = new PingCycle(5000, 16);
+        cycle.add(destination);
+        pinger.ping(destination, cycle);
+        PingStatus status = cycle.next();
+        Assert.assertNotNull("No result within the cycle deadline", status);
+        Assert.assertEquals(destination, status.getDestination());
+        return status;
+    }
+
+    @Test
+    public void testPinger() throws Exception {
+        testServer.stubFor(WireMock.get(WireMock.urlMatching(".*")).willReturn(
+                WireMock.aResponse().withHeader("Content-Type", "text/plain").withHeader("Server", "test-server")
+                        .withBody("Hello world!")));
+
+        PingStatus status = ping("http://" + TEST_HOST + ":" + HTTP_PORT, "GET");
+
+        Assert.assertEquals(200, status.getCode());
+        Assert.assertFalse(status.isTimedOut());
+        Assert.assertEquals("test-server", status.getTraits().getPoweredBy());
+        Assert.assertNotNull(status.getTraits().getRemoteAddress());
+    }
+
+    @Test
+    public void testHeadPinger() throws Exception {
+        testServer.stubFor(WireMock.head(WireMock.urlMatching(".*")).willReturn(
+                WireMock.aResponse().withHeader("Content-Type", "text/plain")));
+
+        PingStatus status = ping("http://" + TEST_HOST + ":" + HTTP_PORT, "HEAD");
+
+        Assert.assertEquals(200, status.getCode());
+        Assert.assertFalse(status.isTimedOut());
+    }
+
+    @Test
+    public void testSslPinger() throws Exception {
+        testServer.stubFor(WireMock.get(WireMock.urlMatching(".*")).willReturn(
+                WireMock.aResponse().withHeader("Content-Type", "text/plain").withBody("Hello world!")));
+
+        PingStatus status = ping("https://" + TEST_HOST + ":" + HTTPS_PORT, "GET");
+
+        Assert.assertEquals(200, status.getCode());
+        Assert.assertFalse(status.isTimedOut());
+    }
+
+    @Test
+    public void testUnknownHost() throws Exception {
+        PingStatus status = ping("http://no-such-host.invalid", "GET");
+
+        Assert.assertEquals(404, status.getCode());
+    }
+
+    @Test
+    public void testBodyPolicy() throws Exception {
+        StringBuilder body = new StringBuilder(100000);
+        for (int i = 0; i < 100000; i++) {
+            body.append('x');
+        }
+        testServer.stubFor(WireMock.get(WireMock.urlMatching(".*")).willReturn(
+                WireMock.aResponse().withHeader("Content-Type", "text/plain").withBody(body.toString())));
+        testServer.stubFor(WireMock.head(WireMock.urlMatching(".*")).willReturn(
+                WireMock.aResponse().withHeader("Content-Type", "text/plain")));
+
+        String url = "http://" + TEST_HOST + ":" + HTTP_PORT;
+        PingStatus full = ping(newDestination(url, BodyPolicy.FULL));
+        Assert.assertEquals(200, full.getCode());
+        Assert.assertEquals(100000, full.getBytesRead());
+
+        for (BodyPolicy policy : new BodyPolicy[] { BodyPolicy.HEADERS, BodyPolicy.capped(1000) }) {
+            PingStatus status = ping(newDestination(url, policy));
+            Assert.assertEquals(200, status.getCode());
+            Assert.assertNull(status.getFailureKind());
+            /* the reading stops in the first buffer that crosses the limit */
+            Assert.assertTrue("Unexpected " + status.getBytesRead(), status.getBytesRead() < 100000);
+        }
+
+        /* HEADERS is sent as HEAD */
+        testServer.verify(1, WireMock.headRequestedFor(WireMock.urlMatching(".*")));
+        /* the connection of the truncated responses must not be reused */
+        Assert.assertEquals(100000, ping(newDestination(url, BodyPolicy.FULL)).getBytesRead());
+    }
+
+    private static PingDestination newDestination(String url, BodyPolicy bodyPolicy) {
+        return new PingDestination(TEST_TENANT_ID, TEST_ENVIRONMENT_ID, TEST_RESOURCE_ID, url, "GET",
+                PingDestination.DEFAULT_INTERVAL, null, bodyPolicy);
+    }
+
+}
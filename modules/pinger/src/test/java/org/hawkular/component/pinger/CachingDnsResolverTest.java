@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.conn.DnsResolver;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class CachingDnsResolverTest {
+
+    /** Resolves {@code "good"} to the loopback address and fails for all other hosts */
+    private static class CountingResolver implements DnsResolver {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            count.incrementAndGet();
+            if ("good".equals(host)) {
+                return new InetAddress[] { InetAddress.getLoopbackAddress() };
+            }
+            throw new UnknownHostException(host);
+        }
+    }
+
+    @Test
+    public void testPositiveCaching() throws UnknownHostException {
+        CountingResolver delegate = new CountingResolver();
+        CachingDnsResolver resolver = new CachingDnsResolver(delegate, 60, 10);
+
+        Assert.assertEquals(InetAddress.getLoopbackAddress(), resolver.resolve("good")[0]);
+        Assert.assertEquals(InetAddress.getLoopbackAddress(), resolver.resolve("good")[0]);
+        Assert.assertEquals(1, delegate.count.get());
+        Assert.assertEquals(1, resolver.size());
+    }
+
+    @Test
+    public void testNegativeCaching() {
+        CountingResolver delegate = new CountingResolver();
+        CachingDnsResolver resolver = new CachingDnsResolver(delegate, 60, 10);
+
+        UnknownHostException[] thrown = new UnknownHostException[2];
+        for (int i = 0; i < thrown.length; i++) {
+            try {
+                resolver.resolve("bad");
+                Assert.fail("UnknownHostException expected");
+            } catch (UnknownHostException expected) {
+                thrown[i] = expected;
+            }
+        }
+        Assert.assertEquals(1, delegate.count.get());
+
+        /* each call gets its own exception caused by the cached one */
+        Assert.assertNotSame(thrown[0], thrown[1]);
+        Assert.assertNotNull(thrown[0].getCause());
+        Assert.assertSame(thrown[0].getCause(), thrown[1].getCause());
+        Assert.assertEquals("bad", thrown[1].getMessage());
+    }
+
+    @Test
+    public void testIndependentTtls() {
+        CountingResolver delegate = new CountingResolver();
+        /* failures must not be cached when only the positive TTL is set */
+        CachingDnsResolver resolver = new CachingDnsResolver(delegate, 60, 0);
+        for (int i = 0; i < 2; i++) {
+            try {
+                resolver.resolve("bad");
+                Assert.fail("UnknownHostException expected");
+            } catch (UnknownHostException expected) {
+            }
+        }
+        Assert.assertEquals(2, delegate.count.get());
+        Assert.assertEquals(0, resolver.size());
+
+        /* and failures must be cached when only the negative TTL is set */
+        resolver = new CachingDnsResolver(delegate, 0, 10);
+        for (int i = 0; i < 2; i++) {
+            try {
+                resolver.resolve("bad");
+                Assert.fail("UnknownHostException expected");
+            } catch (UnknownHostException expected) {
+            }
+        }
+        Assert.assertEquals(3, delegate.count.get());
+        Assert.assertEquals(1, resolver.size());
+    }
+
+    @Test
+    public void testExpiry() throws UnknownHostException {
+        CountingResolver delegate = new CountingResolver();
+        /* zero TTLs - nothing should be cached */
+        CachingDnsResolver resolver = new CachingDnsResolver(delegate, 0, 0);
+
+        resolver.resolve("good");
+        resolver.resolve("good");
+        Assert.assertEquals(2, delegate.count.get());
+        resolver.purgeExpired();
+        Assert.assertEquals(0, resolver.size());
+    }
+
+}
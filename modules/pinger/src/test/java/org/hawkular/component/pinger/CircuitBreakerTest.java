@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import org.hawkular.component.pinger.CircuitBreaker.Decision;
+import org.hawkular.component.pinger.PingStatus.FailureKind;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class CircuitBreakerTest {
+
+    private static final PingDestination DEST = PingerTestUtils.createTestPingDestination();
+
+    private static PingStatus failure(long timestamp) {
+        return PingStatus.failure(DEST, FailureKind.CONNECT_TIMEOUT, timestamp, 2000);
+    }
+
+    @Test
+    public void testBackoff() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 1000, 3000);
+
+        breaker.record(failure(0));
+        breaker.record(failure(20));
+        Assert.assertEquals(Decision.PING, breaker.decide(DEST, 40));
+        breaker.record(failure(40));
+        Assert.assertEquals(1, breaker.getOpenCount());
+
+        /* open for 1000 ms */
+        Assert.assertEquals(Decision.SKIP, breaker.decide(DEST, 500));
+        Assert.assertEquals(Decision.PROBE, breaker.decide(DEST, 1040));
+        /* only a single probe at a time */
+        Assert.assertEquals(Decision.SKIP, breaker.decide(DEST, 1050));
+
+        /* a failed probe doubles the backoff */
+        breaker.record(failure(1100));
+        Assert.assertEquals(Decision.SKIP, breaker.decide(DEST, 3000));
+        Assert.assertEquals(Decision.PROBE, breaker.decide(DEST, 3100));
+        breaker.record(failure(3100));
+        /* capped at 3000 ms */
+        Assert.assertEquals(Decision.SKIP, breaker.decide(DEST, 6000));
+        Assert.assertEquals(Decision.PROBE, breaker.decide(DEST, 6100));
+
+        /* success closes the circuit */
+        breaker.record(new PingStatus(DEST, 200, 6200, 10, Traits.empty(6200)));
+        Assert.assertEquals(0, breaker.getOpenCount());
+        Assert.assertEquals(Decision.PING, breaker.decide(DEST, 6300));
+    }
+
+    @Test
+    public void testIgnoredFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 1000, 3000);
+        for (int i = 0; i < 5; i++) {
+            /* an HTTP error response, a full pool and a synthetic status are not the destination being down */
+            breaker.record(PingStatus.error(DEST, 500, i));
+            breaker.record(PingStatus.failure(DEST, FailureKind.POOL_EXHAUSTED, i, 500));
+            breaker.record(PingStatus.failure(DEST, FailureKind.CIRCUIT_OPEN, i, -1));
+        }
+        /* error() is an IO_ERROR though */
+        Assert.assertEquals(1, breaker.getOpenCount());
+
+        breaker = new CircuitBreaker(2, 1000, 3000);
+        for (int i = 0; i < 5; i++) {
+            breaker.record(new PingStatus(DEST, 500, i, 10, Traits.empty(i)));
+            breaker.record(PingStatus.failure(DEST, FailureKind.POOL_EXHAUSTED, i, 500));
+        }
+        Assert.assertEquals(0, breaker.getOpenCount());
+    }
+
+    @Test
+    public void testDisabled() {
+        CircuitBreaker breaker = new CircuitBreaker(0, 1000, 3000);
+        for (int i = 0; i < 10; i++) {
+            breaker.record(failure(i));
+        }
+        Assert.assertEquals(Decision.PING, breaker.decide(DEST, 100));
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hawkular.inventory.api.ResolvableToMany;
+import org.hawkular.inventory.api.model.Resource;
+import org.hawkular.inventory.api.paging.Page;
+import org.hawkular.inventory.api.paging.Pager;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class DestinationLoaderTest {
+
+    /** A fake inventory query serving {@code total} URL resources */
+    private static ResolvableToMany<Resource> query(int total, boolean failFirst) {
+        @SuppressWarnings("unchecked")
+        ResolvableToMany<Resource> query = Mockito.mock(ResolvableToMany.class);
+        final boolean[] failed = { !failFirst };
+        Mockito.when(query.entities(Mockito.any(Pager.class))).thenAnswer(invocation -> {
+            if (!failed[0]) {
+                failed[0] = true;
+                throw new IllegalStateException("Simulated inventory failure");
+            }
+            Pager pager = (Pager) invocation.getArguments()[0];
+            List<Resource> resources = new ArrayList<>();
+            for (int i = pager.getStart(); i < Math.min(pager.getEnd(), total); i++) {
+                resources.add(PingerTestUtils.createTestResource("r" + i));
+            }
+            return new Page<>(resources.iterator(), pager, total);
+        });
+        return query;
+    }
+
+    @Test
+    public void testPages() {
+        DestinationLoader loader = new DestinationLoader(query(25, false), 10);
+        List<PingDestination> destinations = new ArrayList<>();
+
+        Assert.assertEquals(10, loader.loadNextPage(destinations::add));
+        Assert.assertFalse(loader.isDone());
+        Assert.assertEquals(10, loader.loadNextPage(destinations::add));
+        Assert.assertFalse(loader.isDone());
+        Assert.assertEquals(5, loader.loadNextPage(destinations::add));
+        Assert.assertTrue(loader.isDone());
+        Assert.assertEquals(0, loader.loadNextPage(destinations::add));
+
+        Assert.assertEquals(25, loader.getCount());
+        Assert.assertEquals(25, destinations.size());
+        Assert.assertEquals("r0", destinations.get(0).getResourceId());
+        Assert.assertEquals("r24", destinations.get(24).getResourceId());
+    }
+
+    @Test
+    public void testExactMultiple() {
+        DestinationLoader loader = new DestinationLoader(query(20, false), 10);
+        List<PingDestination> destinations = new ArrayList<>();
+        while (!loader.isDone()) {
+            loader.loadNextPage(destinations::add);
+        }
+        Assert.assertEquals(20, destinations.size());
+    }
+
+    @Test
+    public void testRetry() {
+        DestinationLoader loader = new DestinationLoader(query(5, true), 10);
+        List<PingDestination> destinations = new ArrayList<>();
+
+        Assert.assertEquals(0, loader.loadNextPage(destinations::add));
+        Assert.assertFalse(loader.isDone());
+        Assert.assertEquals(5, loader.loadNextPage(destinations::add));
+        Assert.assertTrue(loader.isDone());
+        Assert.assertEquals(5, destinations.size());
+    }
+
+}
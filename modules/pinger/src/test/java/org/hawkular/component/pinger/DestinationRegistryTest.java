@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hawkular.inventory.api.model.Resource;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class DestinationRegistryTest {
+
+    @Test
+    public void testAdd() {
+
+        DestinationRegistry registry = new DestinationRegistry();
+        Resource urlResource = PingerTestUtils.createTestResource();
+
+        registry.getUrlCreatedAction().call(urlResource);
+        Assert.assertEquals(1, registry.size());
+        Assert.assertEquals(1, registry.getVersion());
+
+        Set<PingDestination> destinations = new HashSet<PingDestination>();
+        Assert.assertEquals(1, registry.drainChanges(destinations::add, destinations::remove));
+
+        Assert.assertEquals(1, destinations.size());
+        Assert.assertEquals(PingerTestUtils.createTestPingDestination(), destinations.iterator().next());
+
+        /* nothing more to drain */
+        Assert.assertEquals(0, registry.drainChanges(destinations::add, destinations::remove));
+
+        /* adding twice has no effect */
+        registry.getUrlCreatedAction().call(urlResource);
+        Assert.assertEquals(1, registry.getVersion());
+        Assert.assertEquals(0, registry.drainChanges(destinations::add, destinations::remove));
+    }
+
+    @Test
+    public void testAddRemoveSeparateDrain() {
+
+        DestinationRegistry registry = new DestinationRegistry();
+        Resource urlResource = PingerTestUtils.createTestResource();
+
+        registry.getUrlCreatedAction().call(urlResource);
+
+        Set<PingDestination> destinations = new HashSet<PingDestination>();
+        registry.drainChanges(destinations::add, destinations::remove);
+
+        Assert.assertEquals(1, destinations.size());
+        Assert.assertEquals(PingerTestUtils.createTestPingDestination(), destinations.iterator().next());
+
+        registry.getUrlDeletedAction().call(urlResource);
+        registry.drainChanges(destinations::add, destinations::remove);
+        Assert.assertEquals(0, destinations.size());
+        Assert.assertEquals(0, registry.size());
+        Assert.assertEquals(2, registry.getVersion());
+    }
+
+    @Test
+    public void testAddRemoveSameDrain() {
+
+        DestinationRegistry registry = new DestinationRegistry();
+        Resource urlResource = PingerTestUtils.createTestResource();
+
+        registry.getUrlCreatedAction().call(urlResource);
+        registry.getUrlDeletedAction().call(urlResource);
+
+        Set<PingDestination> destinations = new HashSet<PingDestination>();
+        registry.drainChanges(destinations::add, destinations::remove);
+
+        Assert.assertEquals(0, destinations.size());
+    }
+
+    @Test
+    public void testConcurrentAdd() throws InterruptedException {
+        final int threadCount = 4;
+        final int perThread = 1000;
+        DestinationRegistry registry = new DestinationRegistry();
+        Set<PingDestination> destinations = new HashSet<PingDestination>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            final int offset = t * perThread;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    registry.add(new PingDestination(PingerTestUtils.TEST_TENANT_ID,
+                            PingerTestUtils.TEST_ENVIRONMENT_ID, "r" + (offset + i), PingerTestUtils.TEST_URL,
+                            PingerTestUtils.GET_METHOD));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        /* drain while the producers are running */
+        for (Thread thread : threads) {
+            registry.drainChanges(destinations::add, destinations::remove);
+            thread.join();
+        }
+        registry.drainChanges(destinations::add, destinations::remove);
+
+        Assert.assertEquals(threadCount * perThread, registry.size());
+        Assert.assertEquals(threadCount * perThread, registry.getVersion());
+        Assert.assertEquals(threadCount * perThread, destinations.size());
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class DestinationTableTest {
+
+    private static PingDestination newDestination(String resourceId) {
+        return new PingDestination(PingerTestUtils.TEST_TENANT_ID, PingerTestUtils.TEST_ENVIRONMENT_ID, resourceId,
+                PingerTestUtils.TEST_URL);
+    }
+
+    @Test
+    public void testSlots() {
+        DestinationTable table = new DestinationTable();
+        PingDestination r0 = newDestination("r0");
+        PingDestination r1 = newDestination("r1");
+        Assert.assertTrue(table.add(r0));
+        Assert.assertTrue(table.add(r1));
+        Assert.assertEquals(0, r0.getSlot());
+        Assert.assertEquals(1, r1.getSlot());
+
+        /* an equal one is not added and the canonical instance stays */
+        PingDestination r0Copy = newDestination("r0");
+        Assert.assertFalse(table.add(r0Copy));
+        Assert.assertEquals(PingDestination.NO_SLOT, r0Copy.getSlot());
+        Assert.assertSame(r0, table.get(r0Copy));
+
+        /* the slot is reserved until released */
+        Assert.assertSame(r0, table.remove(r0Copy));
+        Assert.assertNull(table.get(r0Copy));
+        Assert.assertEquals(0, r0.getSlot());
+        PingDestination r2 = newDestination("r2");
+        table.add(r2);
+        Assert.assertEquals(2, r2.getSlot());
+
+        table.release(r0);
+        Assert.assertEquals(PingDestination.NO_SLOT, r0.getSlot());
+        PingDestination r3 = newDestination("r3");
+        table.add(r3);
+        Assert.assertEquals(0, r3.getSlot());
+        Assert.assertEquals(3, table.getSlotCount());
+        Assert.assertEquals(3, table.size());
+
+        /* releasing a destination still in the table has no effect */
+        table.release(r3);
+        Assert.assertEquals(0, r3.getSlot());
+    }
+
+    @Test
+    public void testReAddBeforeRelease() {
+        DestinationTable table = new DestinationTable();
+        PingDestination r0 = newDestination("r0");
+        table.add(r0);
+        table.remove(r0);
+        /* keeps its slot */
+        Assert.assertTrue(table.add(r0));
+        Assert.assertEquals(0, r0.getSlot());
+        table.release(r0);
+        Assert.assertEquals(0, r0.getSlot());
+        Assert.assertEquals(1, table.getSlotCount());
+    }
+
+    @Test
+    public void testConcurrentAdd() throws InterruptedException {
+        final int threadCount = 4;
+        final int count = 2000;
+        DestinationTable table = new DestinationTable();
+        List<PingDestination> dests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            dests.add(newDestination("r" + i));
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            /* all threads race to add the same destinations */
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    table.add(newDestination("r" + i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(count, table.size());
+        /* the slots of the losers were recycled so the slots are dense and unique */
+        BitSet slots = new BitSet();
+        for (PingDestination dest : dests) {
+            int slot = table.get(dest).getSlot();
+            Assert.assertFalse("Duplicate slot " + slot, slots.get(slot));
+            slots.set(slot);
+        }
+        Assert.assertTrue(table.getSlotCount() <= count + threadCount);
+    }
+
+}
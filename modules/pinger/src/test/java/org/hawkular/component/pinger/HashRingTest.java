@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class HashRingTest {
+
+    private static final int KEY_COUNT = 10000;
+
+    @Test
+    public void testSpread() {
+        HashRing ring = new HashRing(Arrays.asList("node-a", "node-b", "node-c", "node-d"), 128);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEY_COUNT; i++) {
+            counts.merge(ring.ownerOf("resource-" + i), 1, Integer::sum);
+        }
+        Assert.assertEquals(4, counts.size());
+        for (Map.Entry<String, Integer> en : counts.entrySet()) {
+            int count = en.getValue();
+            Assert.assertTrue(en.getKey() + " owns " + count,
+                    count > KEY_COUNT / 4 * 0.7 && count < KEY_COUNT / 4 * 1.3);
+        }
+    }
+
+    @Test
+    public void testJoin() {
+        HashRing before = new HashRing(Arrays.asList("node-a", "node-b", "node-c"), 128);
+        HashRing after = new HashRing(Arrays.asList("node-c", "node-b", "node-a", "node-d"), 128);
+        int moved = 0;
+        for (int i = 0; i < KEY_COUNT; i++) {
+            String key = "resource-" + i;
+            String oldOwner = before.ownerOf(key);
+            String newOwner = after.ownerOf(key);
+            if (!oldOwner.equals(newOwner)) {
+                /* keys may only move to the newcomer */
+                Assert.assertEquals("node-d", newOwner);
+                moved++;
+            }
+        }
+        Assert.assertTrue("Moved " + moved, moved > KEY_COUNT / 4 * 0.7 && moved < KEY_COUNT / 4 * 1.3);
+    }
+
+    @Test
+    public void testSingleNode() {
+        HashRing ring = new HashRing(Arrays.asList("node-a"), 1);
+        PingDestination dest = PingerTestUtils.createTestPingDestination();
+        Assert.assertTrue(ring.owns("node-a", dest));
+        Assert.assertFalse(ring.owns("node-b", dest));
+    }
+
+    @Test
+    public void testMembership() {
+        ClusterMembership membership = new ClusterMembership("node-a", true, 16, 5, 15);
+        HashRing initial = membership.getRing();
+        Assert.assertEquals(Arrays.asList("node-a"), Arrays.asList(initial.getNodes().toArray()));
+
+        long now = 0;
+        membership.heartbeat("node-b", false, now);
+        Assert.assertEquals(2, membership.getRing().getNodes().size());
+
+        /* a repeated heartbeat does not change the ring */
+        HashRing two = membership.getRing();
+        membership.heartbeat("node-b", false, now + 1);
+        Assert.assertSame(two, membership.getRing());
+
+        /* node-b expires */
+        membership.expire(now + 1 + TimeUnit.SECONDS.toNanos(16));
+        Assert.assertEquals(1, membership.getRing().getNodes().size());
+
+        /* explicit leave */
+        membership.heartbeat("node-c", false, now);
+        membership.heartbeat("node-c", true, now);
+        Assert.assertEquals(1, membership.getRing().getNodes().size());
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import org.hawkular.component.pinger.LatencyHistogram.Snapshot;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testIndexOf() {
+        /* the buckets are contiguous and every value falls into its own bucket */
+        int lastIndex = -1;
+        for (long value = 0; value < 1 << 20; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            Assert.assertTrue(index == lastIndex || index == lastIndex + 1);
+            Assert.assertTrue(value <= LatencyHistogram.highestEquivalentValue(index));
+            if (index > 0) {
+                Assert.assertTrue(value > LatencyHistogram.highestEquivalentValue(index - 1));
+            }
+            lastIndex = index;
+        }
+    }
+
+    @Test
+    public void testPrecision() {
+        for (long value = 256; value < 1L << 40; value = value * 3 / 2 + 1) {
+            long highest = LatencyHistogram.highestEquivalentValue(LatencyHistogram.indexOf(value));
+            Assert.assertTrue("" + value, (double) (highest - value) / value < 1.0 / 128);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram(3600000);
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-1);
+        Snapshot snapshot = histogram.drain();
+
+        Assert.assertEquals(1000, snapshot.getCount());
+        Assert.assertEquals(1000, snapshot.getMax());
+        Assert.assertEquals(500.5, snapshot.getMean(), 0.001);
+        Assert.assertEquals(1, snapshot.getValueAtPercentile(0));
+        assertWithin(500, snapshot.getValueAtPercentile(50));
+        assertWithin(900, snapshot.getValueAtPercentile(90));
+        assertWithin(990, snapshot.getValueAtPercentile(99));
+        Assert.assertEquals(1000, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testDrain() {
+        LatencyHistogram histogram = new LatencyHistogram(1000);
+        histogram.record(5);
+        histogram.record(5000);
+        Snapshot snapshot = histogram.drain();
+        Assert.assertEquals(2, snapshot.getCount());
+        Assert.assertEquals(1000, snapshot.getMax());
+        Assert.assertEquals(5, snapshot.getValueAtPercentile(50));
+
+        Snapshot empty = histogram.drain();
+        Assert.assertEquals(0, empty.getCount());
+        Assert.assertEquals(0, empty.getMax());
+        Assert.assertEquals(0, empty.getValueAtPercentile(99));
+        Assert.assertEquals(0, empty.getMean(), 0);
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        Assert.assertTrue(actual + " is not within 1/128 of " + expected,
+                actual >= expected && actual - expected <= expected / 128);
+    }
+
+}
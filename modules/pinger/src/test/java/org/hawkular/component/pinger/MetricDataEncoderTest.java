@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hawkular.component.pinger.MetricDataMessage.MetricData;
+import org.hawkular.component.pinger.MetricDataMessage.SingleMetric;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class MetricDataEncoderTest {
+
+    private static String toJson(String tenantId, List<SingleMetric> data) {
+        MetricData metricData = new MetricData();
+        metricData.setTenantId(tenantId);
+        metricData.setData(data);
+        return new MetricDataMessage(metricData).toJSON();
+    }
+
+    @Test
+    public void testSameAsDatabind() {
+        String tenantId = "tenant \"with\" quotes";
+        String longId = new String(new char[200]).replace('\0', 'x');
+        String[] resourceIds = { "r1", "résumé", "tab\there", longId };
+        double[] values = { 200, 1.5, -1, 1234567890123.0 };
+
+        List<SingleMetric> expected = new ArrayList<>();
+        MetricDataEncoder encoder = new MetricDataEncoder(tenantId, new StringWriter());
+        long timestamp = 1462288000000L;
+        for (String resourceId : resourceIds) {
+            for (double value : values) {
+                expected.add(new SingleMetric(resourceId + ".status.code", timestamp, value));
+                encoder.add(resourceId, ".status.code", timestamp, value);
+                timestamp++;
+            }
+        }
+        Assert.assertEquals(resourceIds.length * values.length, encoder.size());
+        Assert.assertEquals(toJson(tenantId, expected), encoder.finish());
+    }
+
+    @Test
+    public void testReuse() {
+        StringWriter buffer = new StringWriter();
+        MetricDataEncoder encoder = new MetricDataEncoder("t1", buffer);
+        encoder.add("r1", ".status.duration", 1000L, 42);
+        String first = encoder.finish();
+
+        encoder = new MetricDataEncoder("t2", MetricDataEncoder.reset(buffer));
+        String second = encoder.finish();
+        Assert.assertEquals("{\"metricData\":{\"tenantId\":\"t2\",\"data\":[]}}", second);
+        List<SingleMetric> expected = new ArrayList<>();
+        expected.add(new SingleMetric("r1.status.duration", 1000L, 42));
+        Assert.assertEquals(toJson("t1", expected), first);
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import javax.jms.JMSProducer;
+import javax.jms.Queue;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class MetricPublisherTest {
+
+    private static MetricPublisher newPublisher() {
+        MetricPublisher publisher = new MetricPublisher();
+        publisher.gaugesQueue = Mockito.mock(Queue.class);
+        publisher.producer = Mockito.mock(JMSProducer.class);
+        return publisher;
+    }
+
+    private static PingStatus newStatus(String tenantId, String resourceId) {
+        PingDestination destination = new PingDestination(tenantId, PingerTestUtils.TEST_ENVIRONMENT_ID, resourceId,
+                PingerTestUtils.TEST_URL);
+        return new PingStatus(destination, 200, 1000L, 10, Traits.empty(1000L));
+    }
+
+    @Test
+    public void testBatchPerTenant() {
+        MetricPublisher publisher = newPublisher();
+        final int batchSize = PingerConfiguration.getInstance().getMetricsBatchSize();
+        /* each status without timings yields two metrics */
+        final int statusCount = batchSize / 2;
+
+        for (int i = 0; i < statusCount - 1; i++) {
+            publisher.publish(newStatus("t1", "r" + i));
+            publisher.publish(newStatus("t2", "r" + i));
+        }
+        Mockito.verifyZeroInteractions(publisher.producer);
+
+        publisher.publish(newStatus("t1", "last"));
+        ArgumentCaptor<String> json = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(publisher.producer, Mockito.times(1)).send(Mockito.eq(publisher.gaugesQueue), json.capture());
+        Assert.assertTrue(json.getValue().contains("\"t1\""));
+        Assert.assertFalse(json.getValue().contains("\"t2\""));
+
+        publisher.flush();
+        Mockito.verify(publisher.producer, Mockito.times(2)).send(Mockito.eq(publisher.gaugesQueue),
+                json.capture());
+        Assert.assertTrue(json.getValue().contains("\"t2\""));
+
+        /* nothing left to send */
+        publisher.flush();
+        Mockito.verify(publisher.producer, Mockito.times(2)).send(Mockito.eq(publisher.gaugesQueue),
+                Mockito.anyString());
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class PingCycleCollectorTest {
+
+    private static PingDestination newDestination(String resourceId) {
+        return new PingDestination(PingerTestUtils.TEST_TENANT_ID, PingerTestUtils.TEST_ENVIRONMENT_ID, resourceId,
+                PingerTestUtils.TEST_URL);
+    }
+
+    private static PingCycleCollector newCollector() {
+        PingCycleCollector collector = new PingCycleCollector();
+        collector.metricPublisher = Mockito.mock(MetricPublisher.class);
+        collector.traitsPublisher = Mockito.mock(TraitsPublisher.class);
+        collector.statusCache = new StatusCache();
+        collector.circuitBreaker = new CircuitBreaker();
+        return collector;
+    }
+
+    @Test
+    public void testOverlappingCycles() throws InterruptedException {
+        PingCycleCollector collector = newCollector();
+
+        PingDestination dest1 = newDestination("r1");
+        PingDestination dest2 = newDestination("r2");
+        PingDestination dest3 = newDestination("r3");
+
+        PingCycle slowCycle = new PingCycle(200, 16, d -> {
+        }, collector.getArrivalSignal());
+        slowCycle.add(dest1);
+        slowCycle.add(dest2);
+        Map<PingDestination, Future<?>> slowFutures = new HashMap<>();
+        slowFutures.put(dest1, new CompletableFuture<Void>());
+        CompletableFuture<Void> hanging = new CompletableFuture<>();
+        slowFutures.put(dest2, hanging);
+        collector.submit(slowCycle, slowFutures, 200);
+
+        PingCycle fastCycle = new PingCycle(5000, 16, d -> {
+        }, collector.getArrivalSignal());
+        fastCycle.add(dest3);
+        Map<PingDestination, Future<?>> fastFutures = new HashMap<>();
+        fastFutures.put(dest3, new CompletableFuture<Void>());
+        collector.submit(fastCycle, fastFutures, 5000);
+
+        PingStatus status1 = PingStatus.error(dest1, 500, 0);
+        PingStatus status3 = PingStatus.error(dest3, 500, 0);
+        new Thread(() -> {
+            slowCycle.complete(status1);
+            fastCycle.complete(status3);
+        }).start();
+
+        collector.collectAll();
+
+        ArgumentCaptor<PingStatus> captor = ArgumentCaptor.forClass(PingStatus.class);
+        Mockito.verify(collector.metricPublisher, Mockito.times(3)).publish(captor.capture());
+        Assert.assertTrue(captor.getAllValues().contains(status1));
+        Assert.assertTrue(captor.getAllValues().contains(status3));
+        PingStatus timedOut = captor.getAllValues().stream().filter(PingStatus::isTimedOut).findFirst().get();
+        Assert.assertEquals(dest2, timedOut.getDestination());
+        Assert.assertTrue(hanging.isCancelled());
+        Assert.assertTrue(slowCycle.isDone());
+        Assert.assertTrue(fastCycle.isDone());
+    }
+
+    @Test
+    public void testRunLoop() throws InterruptedException {
+        PingCycleCollector collector = newCollector();
+        Thread loop = new Thread(collector::run);
+        loop.start();
+
+        PingDestination dest1 = newDestination("r1");
+        PingCycle cycle = new PingCycle(5000, 16, d -> {
+        }, collector.getArrivalSignal());
+        cycle.add(dest1);
+        Map<PingDestination, Future<?>> futures = new HashMap<>();
+        futures.put(dest1, new CompletableFuture<Void>());
+        collector.submit(cycle, futures, 5000);
+
+        PingStatus status1 = PingStatus.error(dest1, 500, 0);
+        cycle.complete(status1);
+
+        Mockito.verify(collector.metricPublisher, Mockito.timeout(5000)).publish(status1);
+
+        collector.shutDown();
+        loop.join(5000);
+        Assert.assertFalse(loop.isAlive());
+    }
+
+}
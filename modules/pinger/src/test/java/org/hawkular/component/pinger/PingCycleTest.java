@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class PingCycleTest {
+
+    private static PingDestination newDestination(String resourceId) {
+        return new PingDestination(PingerTestUtils.TEST_TENANT_ID, PingerTestUtils.TEST_ENVIRONMENT_ID, resourceId,
+                PingerTestUtils.TEST_URL);
+    }
+
+    @Test
+    public void testCompleteInOrderOfArrival() throws InterruptedException {
+        PingDestination dest1 = newDestination("r1");
+        PingDestination dest2 = newDestination("r2");
+
+        PingCycle cycle = new PingCycle(5000, 16);
+        cycle.add(dest1);
+        cycle.add(dest2);
+
+        PingStatus status2 = PingStatus.error(dest2, 500, 0);
+        PingStatus status1 = PingStatus.error(dest1, 500, 0);
+        cycle.complete(status2);
+        cycle.complete(status1);
+
+        Assert.assertSame(status2, cycle.next());
+        Assert.assertSame(status1, cycle.next());
+        /* must return immediately as there is nothing pending */
+        Assert.assertNull(cycle.next());
+        Assert.assertTrue(cycle.expire().isEmpty());
+        Assert.assertTrue(cycle.getElapsedMillis() < 5000);
+    }
+
+    @Test
+    public void testDeadline() throws InterruptedException {
+        PingDestination dest1 = newDestination("r1");
+        PingDestination dest2 = newDestination("r2");
+
+        PingCycle cycle = new PingCycle(100, 16);
+        cycle.add(dest1);
+        cycle.add(dest2);
+
+        PingStatus status1 = PingStatus.error(dest1, 500, 0);
+        cycle.complete(status1);
+
+        Assert.assertSame(status1, cycle.next());
+        Assert.assertNull(cycle.next());
+        Assert.assertTrue(cycle.getElapsedMillis() >= 100);
+
+        List<PingDestination> expired = cycle.expire();
+        Assert.assertEquals(1, expired.size());
+        Assert.assertEquals(dest2, expired.get(0));
+
+        /* a late result must be ignored */
+        cycle.complete(PingStatus.error(dest2, 500, 0));
+        Assert.assertNull(cycle.next());
+    }
+
+    @Test
+    public void testBackpressure() throws InterruptedException {
+        PingDestination dest1 = newDestination("r1");
+        PingDestination dest2 = newDestination("r2");
+
+        PingCycle cycle = new PingCycle(5000, 1);
+        cycle.add(dest1);
+        cycle.add(dest2);
+
+        PingStatus status1 = PingStatus.error(dest1, 500, 0);
+        PingStatus status2 = PingStatus.error(dest2, 500, 0);
+        cycle.complete(status1);
+
+        Thread producer = new Thread(() -> cycle.complete(status2));
+        producer.start();
+        producer.join(200);
+        /* the buffer is full so the producer must still be waiting */
+        Assert.assertTrue(producer.isAlive());
+
+        Assert.assertSame(status1, cycle.next());
+        Assert.assertSame(status2, cycle.next());
+        producer.join(1000);
+        Assert.assertFalse(producer.isAlive());
+    }
+
+    @Test
+    public void testOfferDoesNotBlock() throws InterruptedException {
+        PingDestination dest1 = newDestination("r1");
+        PingDestination dest2 = newDestination("r2");
+
+        PingCycle cycle = new PingCycle(200, 1);
+        cycle.add(dest1);
+        cycle.add(dest2);
+
+        PingStatus status1 = PingStatus.error(dest1, 500, 0);
+        Assert.assertTrue(cycle.offer(status1));
+        /* the buffer is full, the result must be dropped right away */
+        long start = System.nanoTime();
+        Assert.assertFalse(cycle.offer(PingStatus.error(dest2, 500, 0)));
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+        Assert.assertEquals(1, cycle.getDroppedCount());
+
+        Assert.assertSame(status1, cycle.next());
+        Assert.assertNull(cycle.next());
+        /* the dropped one is reported as a timeout */
+        Assert.assertEquals(Collections.singletonList(dest2), cycle.expire());
+
+        /* a late result is ignored but not counted as dropped */
+        Assert.assertFalse(cycle.offer(PingStatus.error(dest2, 500, 0)));
+        Assert.assertEquals(1, cycle.getDroppedCount());
+    }
+
+    @Test
+    public void testOnDone() throws InterruptedException {
+        PingDestination dest1 = newDestination("r1");
+        PingDestination dest2 = newDestination("r2");
+        List<PingDestination> done = new ArrayList<>();
+        PingCycle cycle = new PingCycle(100, 16, done::add);
+        cycle.add(dest1);
+        cycle.add(dest2);
+
+        cycle.complete(new PingStatus(dest1, 200, 1000L, 10, Traits.empty(1000L)));
+        Assert.assertTrue(done.isEmpty());
+        Assert.assertNotNull(cycle.next());
+        Assert.assertEquals(Collections.singletonList(dest1), done);
+
+        Assert.assertNull(cycle.next());
+        cycle.expire();
+        Assert.assertEquals(Arrays.asList(dest1, dest2), done);
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class PingDestinationTest {
+
+    /**
+     * Counts the distinct {@link String} instances held by many destinations of a few tenants: only the resourceIds
+     * and URLs should be held per destination, the rest should be shared.
+     */
+    @Test
+    public void testFootprint() {
+        final int count = 10000;
+        final int tenantCount = 10;
+        Set<String> strings = Collections.newSetFromMap(new IdentityHashMap<>());
+        PingDestination[] dests = new PingDestination[count];
+        for (int i = 0; i < count; i++) {
+            /* new String() to simulate the values coming from separately deserialized resources */
+            dests[i] = new PingDestination(new String("tenant-" + (i % tenantCount)),
+                    new String(PingerTestUtils.TEST_ENVIRONMENT_ID), "r" + i, "http://example.com/" + i,
+                    new String("HEAD"));
+        }
+        for (PingDestination dest : dests) {
+            strings.add(dest.getTenantId());
+            strings.add(dest.getEnvironmentId());
+            strings.add(dest.getMethod());
+            strings.add(dest.getResourceId());
+            strings.add(dest.getUrl());
+        }
+        Assert.assertEquals(2 * count + tenantCount + 2, strings.size());
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        PingDestination dest1 = new PingDestination(PingerTestUtils.TEST_TENANT_ID,
+                PingerTestUtils.TEST_ENVIRONMENT_ID, "r1", PingerTestUtils.TEST_URL);
+        PingDestination dest2 = new PingDestination(new String(PingerTestUtils.TEST_TENANT_ID),
+                PingerTestUtils.TEST_ENVIRONMENT_ID, new String("r1"), PingerTestUtils.TEST_URL);
+        PingDestination dest3 = new PingDestination(PingerTestUtils.TEST_TENANT_ID,
+                PingerTestUtils.TEST_ENVIRONMENT_ID, "r1", PingerTestUtils.TEST_URL, "POST");
+        Assert.assertEquals(dest1, dest2);
+        Assert.assertEquals(dest1.hashCode(), dest2.hashCode());
+        Assert.assertNotEquals(dest1, dest3);
+        Assert.assertSame(dest1.getTenantId(), dest2.getTenantId());
+
+        /* the slot does not enter equals() */
+        DestinationTable table = new DestinationTable();
+        table.add(dest1);
+        Assert.assertEquals(0, dest1.getSlot());
+        Assert.assertEquals(PingDestination.NO_SLOT, dest2.getSlot());
+        Assert.assertEquals(dest1, dest2);
+    }
+
+    @Test
+    public void testRequestMethod() {
+        String url = PingerTestUtils.TEST_URL;
+        PingDestination get = new PingDestination(PingerTestUtils.TEST_TENANT_ID,
+                PingerTestUtils.TEST_ENVIRONMENT_ID, "r1", url, null, PingDestination.DEFAULT_INTERVAL, null,
+                BodyPolicy.HEADERS);
+        Assert.assertEquals("GET", get.getMethod());
+        Assert.assertEquals("HEAD", get.getRequestMethod());
+
+        PingDestination post = new PingDestination(PingerTestUtils.TEST_TENANT_ID,
+                PingerTestUtils.TEST_ENVIRONMENT_ID, "r1", url, "POST", PingDestination.DEFAULT_INTERVAL, null,
+                BodyPolicy.HEADERS);
+        Assert.assertEquals("POST", post.getRequestMethod());
+
+        PingDestination full = new PingDestination(PingerTestUtils.TEST_TENANT_ID,
+                PingerTestUtils.TEST_ENVIRONMENT_ID, "r1", url, "GET", PingDestination.DEFAULT_INTERVAL, null,
+                BodyPolicy.FULL);
+        Assert.assertEquals("GET", full.getRequestMethod());
+    }
+
+}
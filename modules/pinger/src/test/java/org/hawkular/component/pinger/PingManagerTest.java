@@ -35,26 +35,35 @@ public class PingManagerTest {
 
         PingManager manager = new PingManager();
         manager.pinger = new Pinger();
+        manager.membership = new ClusterMembership();
 
         Resource urlResource = PingerTestUtils.createTestResource();
 
-        manager.urlChangesCollector.getUrlCreatedAction().call(urlResource);
+        manager.registry.getUrlCreatedAction().call(urlResource);
 
-        manager.metricPublisher = Mockito.mock(MetricPublisher.class);
-        manager.traitsPublisher = Mockito.mock(TraitsPublisher.class);
+        PingCycleCollector collector = new PingCycleCollector();
+        collector.metricPublisher = Mockito.mock(MetricPublisher.class);
+        collector.traitsPublisher = Mockito.mock(TraitsPublisher.class);
+        collector.statusCache = new StatusCache();
+        collector.circuitBreaker = new CircuitBreaker();
+        manager.circuitBreaker = collector.circuitBreaker;
+        manager.cycleCollector = collector;
 
+        /* a newly created URL is pinged in the very next tick */
         manager.scheduleWork();
+        /* there is no container to run the collecting loop */
+        collector.collectAll();
 
         PingDestination expectedDest = PingerTestUtils.createTestPingDestination();
 
         String expectedPoweredBy = "GitHub.com";
 
         ArgumentCaptor<PingStatus> metricsRestStatusCaptor = ArgumentCaptor.forClass(PingStatus.class);
-        Mockito.verify(manager.metricPublisher).publish(metricsRestStatusCaptor.capture());
+        Mockito.verify(collector.metricPublisher).publish(metricsRestStatusCaptor.capture());
         assertStatus(expectedDest, expectedPoweredBy, metricsRestStatusCaptor.getValue());
 
         ArgumentCaptor<PingStatus> traitsStatusCaptor = ArgumentCaptor.forClass(PingStatus.class);
-        Mockito.verify(manager.traitsPublisher).publish(traitsStatusCaptor.capture());
+        Mockito.verify(collector.traitsPublisher).publish(traitsStatusCaptor.capture());
         assertStatus(expectedDest, expectedPoweredBy, traitsStatusCaptor.getValue());
 
     }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class PingSchedulerTest {
+
+    private final DestinationTable destinations = new DestinationTable();
+
+    private PingDestination newDestination(String resourceId, int interval) {
+        PingDestination result = new PingDestination(PingerTestUtils.TEST_TENANT_ID,
+                PingerTestUtils.TEST_ENVIRONMENT_ID, resourceId, PingerTestUtils.TEST_URL, PingerTestUtils.GET_METHOD,
+                interval);
+        destinations.add(result);
+        return result;
+    }
+
+    @Test
+    public void testInterval() {
+        /* a small wheel so that the destinations have to survive several rounds */
+        PingScheduler scheduler = new PingScheduler(7);
+        PingDestination dest20 = newDestination("r20", 20);
+        PingDestination dest45 = newDestination("r45", 45);
+        scheduler.add(dest20);
+        scheduler.add(dest45);
+        Assert.assertEquals(2, scheduler.size());
+
+        int count20 = 0;
+        int count45 = 0;
+        long last20 = -1;
+        for (long tick = 1; tick <= 900; tick++) {
+            for (PingDestination due : scheduler.tick()) {
+                if (due == dest20) {
+                    count20++;
+                    if (last20 >= 0) {
+                        Assert.assertEquals(20, tick - last20);
+                    }
+                    last20 = tick;
+                    Assert.assertEquals(PingScheduler.phase(dest20), tick % 20);
+                } else if (due == dest45) {
+                    count45++;
+                    Assert.assertEquals(PingScheduler.phase(dest45), tick % 45);
+                } else {
+                    Assert.fail("Unexpected destination " + due);
+                }
+            }
+        }
+        Assert.assertEquals(900 / 20, count20);
+        Assert.assertEquals(900 / 45, count45);
+    }
+
+    @Test
+    public void testSpread() {
+        final int destinationCount = 2000;
+        final int interval = 20;
+        PingScheduler scheduler = new PingScheduler();
+        for (int i = 0; i < destinationCount; i++) {
+            scheduler.add(newDestination("resource-" + i, interval));
+        }
+
+        int total = 0;
+        final int expectedPerTick = destinationCount / interval;
+        for (int tick = 0; tick < interval; tick++) {
+            int dueCount = scheduler.tick().size();
+            total += dueCount;
+            Assert.assertTrue("Too many destinations in a single tick: " + dueCount, dueCount < 2 * expectedPerTick);
+        }
+        Assert.assertEquals(destinationCount, total);
+    }
+
+    @Test
+    public void testRemove() {
+        PingScheduler scheduler = new PingScheduler();
+        PingDestination dest = newDestination("r1", 5);
+        scheduler.add(dest);
+        /* adding twice has no effect */
+        scheduler.add(dest);
+
+        int count = 0;
+        for (int tick = 0; tick < 5; tick++) {
+            count += scheduler.tick().size();
+        }
+        Assert.assertEquals(1, count);
+
+        scheduler.remove(dest);
+        Assert.assertEquals(0, scheduler.size());
+        for (int tick = 0; tick < 10; tick++) {
+            List<PingDestination> due = scheduler.tick();
+            Assert.assertTrue(due.isEmpty());
+        }
+    }
+
+    @Test
+    public void testAddNow() {
+        PingScheduler scheduler = new PingScheduler();
+        PingDestination dest = newDestination("r1", 20);
+        scheduler.addNow(dest);
+
+        long last = -1;
+        int count = 0;
+        for (long tick = 1; tick <= 100; tick++) {
+            if (!scheduler.tick().isEmpty()) {
+                if (count == 0) {
+                    /* pinged right away */
+                    Assert.assertEquals(1, tick);
+                } else {
+                    /* then back in its phase */
+                    Assert.assertEquals(PingScheduler.phase(dest), tick % 20);
+                    Assert.assertTrue(tick - last >= 10);
+                }
+                count++;
+                last = tick;
+            }
+        }
+        Assert.assertTrue(count >= 5);
+    }
+
+    @Test
+    public void testReusedSlot() {
+        PingScheduler scheduler = new PingScheduler();
+        PingDestination dest = newDestination("r1", 5);
+        scheduler.add(dest);
+        destinations.remove(dest);
+        destinations.release(dest);
+
+        /* gets the slot of dest which is still scheduled */
+        PingDestination other = newDestination("r2", 5);
+        Assert.assertEquals(0, other.getSlot());
+        scheduler.add(other);
+        Assert.assertEquals(1, scheduler.size());
+        for (int tick = 0; tick < 5; tick++) {
+            for (PingDestination due : scheduler.tick()) {
+                Assert.assertSame(other, due);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnregistered() {
+        new PingScheduler().add(new PingDestination(PingerTestUtils.TEST_TENANT_ID,
+                PingerTestUtils.TEST_ENVIRONMENT_ID, "r1", PingerTestUtils.TEST_URL));
+    }
+
+}
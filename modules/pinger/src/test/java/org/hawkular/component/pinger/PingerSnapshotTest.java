@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hawkular.component.pinger.PingStatus.FailureKind;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class PingerSnapshotTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        PingDestination dest1 = PingerTestUtils.createTestPingDestination();
+        PingDestination dest2 = new PingDestination(PingerTestUtils.TEST_TENANT_ID,
+                PingerTestUtils.TEST_ENVIRONMENT_ID, "r2", "https://example.com/", "HEAD", 60,
+                PingTimeouts.of(1000, 200, 3000), BodyPolicy.capped(512));
+        PingDestination dest3 = new PingDestination("other-tenant", "other-env", "r3", "http://example.org/", "GET");
+
+        Traits traits = new Traits(1000L, InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 }), "Servlet/3.1");
+        PingStatus ok = new PingStatus(dest1, 200, 2000L, 150, PingTimings.UNKNOWN, 1234, traits);
+        PingStatus failed = PingStatus.failure(dest2, FailureKind.CONNECT_TIMEOUT, 3000L, 1000);
+
+        List<PingerSnapshot.Entry> written = new ArrayList<>();
+        written.add(new PingerSnapshot.Entry(dest1, ok, traits));
+        written.add(new PingerSnapshot.Entry(dest2, failed, null));
+        written.add(new PingerSnapshot.Entry(dest3, null, null));
+
+        Path file = tmp.getRoot().toPath().resolve("sub/snapshot.bin");
+        int count = PingerSnapshot.write(file, writer -> {
+            for (PingerSnapshot.Entry entry : written) {
+                writer.write(entry);
+            }
+        });
+        Assert.assertEquals(3, count);
+        Assert.assertFalse(Files.exists(file.resolveSibling("snapshot.bin.tmp")));
+
+        List<PingerSnapshot.Entry> read = new ArrayList<>();
+        Assert.assertEquals(3, PingerSnapshot.read(file, read::add));
+
+        Assert.assertEquals(dest1, read.get(0).getDestination());
+        PingStatus okRead = read.get(0).getStatus();
+        Assert.assertEquals(200, okRead.getCode());
+        Assert.assertEquals(2000L, okRead.getTimestamp());
+        Assert.assertEquals(150, okRead.getDuration());
+        Assert.assertEquals(1234, okRead.getBytesRead());
+        Assert.assertNull(okRead.getFailureKind());
+        Assert.assertTrue(traits.hasSameValues(read.get(0).getTraits()));
+        Assert.assertEquals(1000L, read.get(0).getTraits().getTimestamp());
+
+        Assert.assertEquals(dest2, read.get(1).getDestination());
+        Assert.assertEquals(FailureKind.CONNECT_TIMEOUT, read.get(1).getStatus().getFailureKind());
+        Assert.assertTrue(read.get(1).getStatus().isTimedOut());
+        Assert.assertNull(read.get(1).getTraits());
+
+        Assert.assertEquals(dest3, read.get(2).getDestination());
+        Assert.assertNull(read.get(2).getStatus());
+        Assert.assertNull(read.get(2).getTraits());
+    }
+
+    @Test
+    public void testIncompleteDestinationSkipped() throws IOException {
+        PingDestination valid = PingerTestUtils.createTestPingDestination();
+        PingDestination noTenant = new PingDestination(null, PingerTestUtils.TEST_ENVIRONMENT_ID, "r2",
+                "http://example.com/");
+        PingDestination noUrl = new PingDestination(PingerTestUtils.TEST_TENANT_ID,
+                PingerTestUtils.TEST_ENVIRONMENT_ID, "r3", null);
+
+        Path file = tmp.getRoot().toPath().resolve("snapshot.bin");
+        int count = PingerSnapshot.write(file, writer -> {
+            writer.write(new PingerSnapshot.Entry(noTenant, null, null));
+            writer.write(new PingerSnapshot.Entry(valid, null, null));
+            writer.write(new PingerSnapshot.Entry(noUrl, null, null));
+        });
+        Assert.assertEquals(1, count);
+
+        List<PingerSnapshot.Entry> read = new ArrayList<>();
+        Assert.assertEquals(1, PingerSnapshot.read(file, read::add));
+        Assert.assertEquals(valid, read.get(0).getDestination());
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotASnapshot() throws IOException {
+        Path file = tmp.newFile().toPath();
+        Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        PingerSnapshot.read(file, entry -> Assert.fail());
+    }
+
+}
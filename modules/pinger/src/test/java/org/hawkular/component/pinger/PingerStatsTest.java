@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.http.pool.PoolStats;
+import org.hawkular.component.pinger.PingStatus.FailureKind;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class PingerStatsTest {
+
+    private static PingStatus ok(int duration) {
+        return new PingStatus(PingerTestUtils.createTestPingDestination(), 200, 1000, duration, Traits.empty(1000));
+    }
+
+    private static PingStatus failure(FailureKind kind) {
+        return PingStatus.failure(PingerTestUtils.createTestPingDestination(), kind, 1000, 4000);
+    }
+
+    @Test
+    public void testRoll() {
+        PingerStats stats = new PingerStats();
+        for (int i = 1; i <= 100; i++) {
+            stats.record(ok(i));
+        }
+        stats.record(failure(FailureKind.READ_TIMEOUT));
+        stats.record(failure(FailureKind.CYCLE_TIMEOUT));
+        stats.record(failure(FailureKind.IO_ERROR));
+        stats.record(failure(FailureKind.CIRCUIT_OPEN));
+        stats.recordCycle(2500);
+        stats.recordScheduleWork(TimeUnit.MICROSECONDS.toNanos(300));
+        stats.pingStarted();
+        stats.pingStarted();
+        stats.pingDone();
+        stats.cycleStarted();
+        stats.setPingsWaiting(7);
+
+        PingerStats.Interval interval = stats.roll(5000, new PoolStats(3, 1, 2, 10), 4);
+        Assert.assertEquals(5000, interval.getEnd());
+        Assert.assertEquals(100, interval.getCount(null));
+        Assert.assertEquals(2, interval.getTimedOutCount());
+        Assert.assertEquals(1, interval.getFailedCount());
+        Assert.assertEquals(1, interval.getCount(FailureKind.CIRCUIT_OPEN));
+        Assert.assertEquals(100, interval.getPingLatency().getCount());
+        Assert.assertEquals(100, interval.getPingLatency().getMax());
+
+        Assert.assertEquals(5000, stats.getIntervalEnd());
+        Assert.assertEquals(100, stats.getPingsOk());
+        Assert.assertEquals(2, stats.getPingsTimedOut());
+        Assert.assertEquals(1, stats.getPingsFailed());
+        Assert.assertEquals(1, stats.getPingsSkipped());
+        Assert.assertEquals(50, stats.getPingLatencyP50());
+        Assert.assertEquals(99, stats.getPingLatencyP99());
+        Assert.assertEquals(2500, stats.getCycleDurationMax());
+        Assert.assertEquals(300, stats.getScheduleWorkMax());
+        Assert.assertEquals(1, stats.getPingsInFlight());
+        Assert.assertEquals(1, stats.getCyclesInFlight());
+        Assert.assertEquals(7, stats.getPingsWaiting());
+        Assert.assertEquals(4, stats.getOpenCircuits());
+        Assert.assertEquals(3, stats.getPoolLeased());
+        Assert.assertEquals(1, stats.getPoolPending());
+        Assert.assertEquals(2, stats.getPoolAvailable());
+        Assert.assertEquals(10, stats.getPoolMax());
+
+        /* the counts of the next interval start from zero while the MBean totals keep growing */
+        stats.record(ok(10));
+        interval = stats.roll(65000, null, 0);
+        Assert.assertEquals(1, interval.getCount(null));
+        Assert.assertEquals(0, interval.getTimedOutCount());
+        Assert.assertEquals(0, interval.getCycleDuration().getCount());
+        Assert.assertEquals(101, stats.getPingsOk());
+        Assert.assertEquals(10, stats.getPingLatencyMax());
+    }
+
+    @Test
+    public void testForEachGauge() {
+        PingerStats stats = new PingerStats();
+        stats.record(ok(42));
+        stats.record(failure(FailureKind.CONNECT_TIMEOUT));
+
+        Map<String, Double> gauges = new LinkedHashMap<>();
+        stats.roll(5000, null, 0).forEachGauge((suffix, value) -> gauges.put(suffix, value));
+
+        Assert.assertEquals(1.0, gauges.get(".pings.ok"), 0);
+        Assert.assertEquals(1.0, gauges.get(".pings.connect-timeout"), 0);
+        Assert.assertEquals(0.0, gauges.get(".pings.circuit-open"), 0);
+        Assert.assertEquals(42.0, gauges.get(".ping.latency.p99"), 0);
+        Assert.assertEquals(0.0, gauges.get(".cycle.duration.max"), 0);
+        Assert.assertEquals(0.0, gauges.get(".pool.max"), 0);
+        Assert.assertEquals(FailureKind.values().length + 1 + 3 * 4 + 8, gauges.size());
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        PingerStats stats = new PingerStats();
+        stats.record(ok(42));
+        stats.registerMBean();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(PingerStats.OBJECT_NAME);
+            Assert.assertEquals(1L, server.getAttribute(name, "PingsOk"));
+            Assert.assertEquals(0, server.getAttribute(name, "PingsInFlight"));
+        } finally {
+            stats.unregisterMBean();
+        }
+        Assert.assertFalse(ManagementFactory.getPlatformMBeanServer()
+                .isRegistered(new ObjectName(PingerStats.OBJECT_NAME)));
+    }
+
+}
@@ -16,7 +16,10 @@
  */
 package org.hawkular.component.pinger;
 
+import org.apache.http.pool.PoolStats;
+import org.hawkular.component.pinger.PingStatus.FailureKind;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
@@ -49,6 +52,12 @@ public class PingerTest {
     public WireMockRule testServer = new WireMockRule(WireMockConfiguration.wireMockConfig().port(HTTP_PORT)
             .httpsPort(HTTPS_PORT));
 
+    @Before
+    public void before() {
+        /* the pooled connections were opened against the server of the previous test */
+        PingerConnectionPool.getInstance().closeIdleConnections();
+    }
+
     private static PingDestination newDestination(String url, String method) {
         return new PingDestination(TEST_TENANT_ID, TEST_ENVIRONMENT_ID, TEST_RESOURCE_ID, url, method);
     }
@@ -73,6 +82,12 @@ public class PingerTest {
 
         Assert.assertEquals(200, status.getCode());
         Assert.assertFalse(status.isTimedOut());
+        PingTimings timings = status.getTimings();
+        Assert.assertTrue(timings.getDns() >= 0);
+        Assert.assertTrue(timings.getConnect() >= 0);
+        Assert.assertEquals(0, timings.getTls());
+        Assert.assertTrue(timings.getTtfb() >= 0);
+        Assert.assertTrue(timings.getBody() >= 0);
 
     }
 
@@ -118,4 +133,149 @@ public class PingerTest {
         Assert.assertFalse(status.isTimedOut());
     }
 
+    @Test
+    public void testConnectionReuse() throws Exception {
+        testServer.stubFor(WireMock.get(WireMock.urlMatching(".*")).willReturn(
+                WireMock.aResponse().withHeader("Content-Type", "text/plain").withBody("Hello world!")));
+
+        PoolStats before = PingerConnectionPool.getInstance().getStats();
+
+        PingDestination destination = newDestination(httpUrl(), "GET");
+        for (int i = 0; i < 3; i++) {
+            /* different instances share the same pool */
+            PingStatus status = new Pinger().ping(destination).get();
+            Assert.assertEquals(200, status.getCode());
+        }
+
+        PoolStats after = PingerConnectionPool.getInstance().getStats();
+        Assert.assertEquals(0, after.getLeased());
+        Assert.assertEquals(PingerConfiguration.getInstance().getPoolMaxTotal(), after.getMax());
+        /* all three pings went through a single kept-alive connection */
+        Assert.assertTrue(after.getAvailable() <= before.getAvailable() + 1);
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        testServer.stubFor(WireMock.get(WireMock.urlMatching(".*")).willReturn(
+                WireMock.aResponse().withHeader("Content-Type", "text/plain").withFixedDelay(2000)));
+
+        PingDestination destination = new PingDestination(TEST_TENANT_ID, TEST_ENVIRONMENT_ID, TEST_RESOURCE_ID,
+                httpUrl(), "GET", PingDestination.DEFAULT_INTERVAL, PingTimeouts.of(-1, -1, 200), null);
+        PingStatus status = new Pinger().ping(destination).get();
+
+        Assert.assertEquals(PingStatus.FailureKind.READ_TIMEOUT, status.getFailureKind());
+        Assert.assertEquals(503, status.getCode());
+        Assert.assertTrue(status.isTimedOut());
+        Assert.assertTrue(status.getDuration() < 2000);
+    }
+
+    @Test
+    public void testAbortOnCycleExpiry() throws Exception {
+        testServer.stubFor(WireMock.get(WireMock.urlMatching(".*")).willReturn(
+                WireMock.aResponse().withHeader("Content-Type", "text/plain").withFixedDelay(3000)));
+
+        PingDestination destination = newDestination(httpUrl(), "GET");
+        PingCycle cycle = new PingCycle(200, 16);
+        cycle.add(destination);
+
+        long start = System.currentTimeMillis();
+        Thread pingThread = new Thread(() -> new Pinger().ping(destination, cycle));
+        pingThread.start();
+
+        Assert.assertNull(cycle.next());
+        Assert.assertEquals(1, cycle.expire().size());
+
+        /* the hung request must have been aborted rather than waiting for the response */
+        pingThread.join(2000);
+        Assert.assertFalse(pingThread.isAlive());
+        Assert.assertTrue(System.currentTimeMillis() - start < 2500);
+    }
+
+    @Test
+    public void testTtfb() throws Exception {
+        testServer.stubFor(WireMock.get(WireMock.urlMatching(".*")).willReturn(
+                WireMock.aResponse().withHeader("Content-Type", "text/plain").withFixedDelay(300)));
+
+        PingStatus status = new Pinger().ping(newDestination(httpUrl(), "GET")).get();
+
+        Assert.assertEquals(200, status.getCode());
+        PingTimings timings = status.getTimings();
+        Assert.assertTrue("Unexpected " + timings, timings.getTtfb() >= 300);
+        Assert.assertTrue("Unexpected " + timings, timings.getConnect() < 300);
+    }
+
+    private static PingDestination newDestination(String url, BodyPolicy bodyPolicy) {
+        return new PingDestination(TEST_TENANT_ID, TEST_ENVIRONMENT_ID, TEST_RESOURCE_ID, url, "GET",
+                PingDestination.DEFAULT_INTERVAL, null, bodyPolicy);
+    }
+
+    @Test
+    public void testBodyPolicy() throws Exception {
+        StringBuilder body = new StringBuilder(100000);
+        for (int i = 0; i < 100000; i++) {
+            body.append('x');
+        }
+        testServer.stubFor(WireMock.get(WireMock.urlMatching(".*")).willReturn(
+                WireMock.aResponse().withHeader("Content-Type", "text/plain").withBody(body.toString())));
+        testServer.stubFor(WireMock.head(WireMock.urlMatching(".*")).willReturn(
+                WireMock.aResponse().withHeader("Content-Type", "text/plain")));
+
+        Pinger pinger = new Pinger();
+        PingerConnectionPool pool = PingerConnectionPool.getInstance();
+        Assert.assertEquals(100000, pinger.ping(newDestination(httpUrl(), BodyPolicy.FULL)).get().getBytesRead());
+        /* the body was read whole, so the connection is back in the pool */
+        Assert.assertEquals(1, pool.getStats().getAvailable());
+
+        PingStatus headers = pinger.ping(newDestination(httpUrl(), BodyPolicy.HEADERS)).get();
+        Assert.assertEquals(200, headers.getCode());
+        Assert.assertEquals(0, headers.getBytesRead());
+        /* HEAD instead of GET, so the connection went back to the pool */
+        testServer.verify(1, WireMock.headRequestedFor(WireMock.urlMatching(".*")));
+        Assert.assertEquals(0, pool.getStats().getLeased());
+        Assert.assertEquals(1, pool.getStats().getAvailable());
+
+        long capped = pinger.ping(newDestination(httpUrl(), BodyPolicy.capped(1000))).get().getBytesRead();
+        /* one more byte is read when checking the end of a chunked body */
+        Assert.assertTrue("Unexpected " + capped, capped == 1000 || capped == 1001);
+        /* the pooled connection was reused and shut down because of the unread body */
+        Assert.assertEquals(0, pool.getStats().getLeased());
+        Assert.assertEquals(0, pool.getStats().getAvailable());
+        /* a body shorter than the limit is read whole */
+        PingStatus status = pinger.ping(newDestination(httpUrl(), BodyPolicy.capped(200000))).get();
+        Assert.assertEquals(100000, status.getBytesRead());
+        Assert.assertEquals(200, status.getCode());
+    }
+
+    @Test
+    public void testProbe() throws Exception {
+        testServer.stubFor(WireMock.get(WireMock.urlMatching(".*")).willReturn(
+                WireMock.aResponse().withStatus(204)));
+
+        Pinger pinger = new Pinger();
+        PingCycle cycle = new PingCycle(5000, 16);
+        PingDestination up = newDestination(httpUrl(), "GET");
+        cycle.add(up);
+        /* the TCP connect succeeds, so the regular ping follows */
+        Assert.assertEquals(204, pinger.probe(up, cycle).get().getCode());
+        Assert.assertEquals(204, cycle.next().getCode());
+
+        /* nobody listens on the discard port */
+        PingDestination down = newDestination("http://" + TEST_HOST + ":9", "GET");
+        cycle.add(down);
+        PingStatus status = pinger.probe(down, cycle).get();
+        Assert.assertNotNull(status.getFailureKind());
+        Assert.assertSame(status, cycle.next());
+        /* only the first probe got through to the server */
+        Assert.assertEquals(1, testServer.findAll(WireMock.getRequestedFor(WireMock.urlMatching(".*"))).size());
+
+        /* no host at all, the cycle must get a failure rather than time out */
+        for (String url : new String[] { "http:///x", "http://under_score.example.com/" }) {
+            PingDestination noHost = newDestination(url, "GET");
+            cycle.add(noHost);
+            status = pinger.probe(noHost, cycle).get();
+            Assert.assertEquals(FailureKind.UNKNOWN_HOST, status.getFailureKind());
+            Assert.assertSame(status, cycle.next());
+        }
+    }
+
 }
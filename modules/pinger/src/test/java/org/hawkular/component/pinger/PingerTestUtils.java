@@ -36,13 +36,17 @@ public class PingerTestUtils {
     public static final String GET_METHOD = "GET";
 
     public static Resource createTestResource() {
+        return createTestResource(TEST_RESOURCE_ID);
+    }
+
+    public static Resource createTestResource(String resourceId) {
         Map<String, Object> props = new HashMap<>();
         props.put(ResourceField.url.name(), PingerTestUtils.TEST_URL);
         props.put(ResourceField.method.name(), PingerTestUtils.GET_METHOD);
         ResourceType urlType = new ResourceType(CanonicalPath.of().tenant(TEST_TENANT_ID)
                 .resourceType(PingDestination.URL_TYPE).get());
         Resource urlResource = new Resource(CanonicalPath.of().tenant(TEST_TENANT_ID).environment(TEST_ENVIRONMENT_ID)
-                .resource(TEST_RESOURCE_ID).get(), urlType, props);
+                .resource(resourceId).get(), urlType, props);
         return urlResource;
     }
 
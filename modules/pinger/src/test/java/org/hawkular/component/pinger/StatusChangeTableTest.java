@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class StatusChangeTableTest {
+
+    private final DestinationTable destinations = new DestinationTable();
+
+    private PingDestination newDestination(String resourceId) {
+        PingDestination result = new PingDestination(PingerTestUtils.TEST_TENANT_ID,
+                PingerTestUtils.TEST_ENVIRONMENT_ID, resourceId, PingerTestUtils.TEST_URL);
+        destinations.add(result);
+        return destinations.get(result);
+    }
+
+    private static PingStatus newStatus(PingDestination destination, int code, long timestamp) {
+        return new PingStatus(destination, code, timestamp, 10, Traits.empty(timestamp));
+    }
+
+    @Test
+    public void testChangesAndHeartbeat() {
+        StatusChangeTable table = new StatusChangeTable(60000);
+        PingDestination dest = newDestination("r1");
+
+        /* the first one is always reported */
+        Assert.assertTrue(table.checkOut(newStatus(dest, 200, 0)));
+        /* unchanged */
+        Assert.assertFalse(table.checkOut(newStatus(dest, 200, 20000)));
+        Assert.assertFalse(table.checkOut(newStatus(dest, 200, 40000)));
+        /* a transition and back */
+        Assert.assertTrue(table.checkOut(newStatus(dest, 503, 45000)));
+        Assert.assertTrue(table.checkOut(newStatus(dest, 200, 50000)));
+        Assert.assertFalse(table.checkOut(newStatus(dest, 200, 100000)));
+        /* heartbeat */
+        Assert.assertTrue(table.checkOut(newStatus(dest, 200, 110000)));
+        Assert.assertFalse(table.checkOut(newStatus(dest, 200, 130000)));
+    }
+
+    @Test
+    public void testSlots() {
+        StatusChangeTable table = new StatusChangeTable(60000);
+        final int count = 1000;
+        PingDestination[] dests = new PingDestination[count];
+        for (int i = 0; i < count; i++) {
+            dests[i] = newDestination("r" + i);
+            Assert.assertTrue(table.checkOut(newStatus(dests[i], 200, 0)));
+        }
+        Assert.assertEquals(count, table.size());
+        for (int i = 0; i < count; i++) {
+            Assert.assertFalse(table.checkOut(newStatus(newDestination("r" + i), 200, 1000)));
+        }
+
+        /* a removed destination starts from scratch and its slot does not leak into the others */
+        table.remove(dests[0]);
+        destinations.remove(dests[0]);
+        destinations.release(dests[0]);
+        Assert.assertEquals(count - 1, table.size());
+        PingDestination newDest = newDestination("new");
+        Assert.assertEquals(0, newDest.getSlot());
+        Assert.assertTrue(table.checkOut(newStatus(newDest, 200, 2000)));
+        Assert.assertTrue(table.checkOut(newStatus(newDestination("r0"), 200, 2000)));
+        Assert.assertFalse(table.checkOut(newStatus(newDestination("r1"), 200, 2000)));
+        Assert.assertFalse(table.checkOut(newStatus(newDest, 200, 3000)));
+        Assert.assertEquals(count + 1, table.size());
+    }
+
+    @Test
+    public void testNoSlot() {
+        StatusChangeTable table = new StatusChangeTable(60000);
+        PingDestination dest = new PingDestination(PingerTestUtils.TEST_TENANT_ID,
+                PingerTestUtils.TEST_ENVIRONMENT_ID, "r1", PingerTestUtils.TEST_URL);
+        Assert.assertTrue(table.checkOut(newStatus(dest, 200, 0)));
+        Assert.assertTrue(table.checkOut(newStatus(dest, 200, 1000)));
+        Assert.assertEquals(0, table.size());
+    }
+
+}
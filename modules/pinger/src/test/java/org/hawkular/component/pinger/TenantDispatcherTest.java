@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class TenantDispatcherTest {
+
+    private static List<PingDestination> destinations(String tenantId, int count) {
+        List<PingDestination> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(new PingDestination(tenantId, PingerTestUtils.TEST_ENVIRONMENT_ID, tenantId + "-r" + i,
+                    PingerTestUtils.TEST_URL));
+        }
+        return result;
+    }
+
+    @Test
+    public void testInterleaving() {
+        TenantDispatcher dispatcher = new TenantDispatcher(0, 0);
+        List<PingDestination> due = new ArrayList<>();
+        due.addAll(destinations("big", 100));
+        due.addAll(destinations("small", 2));
+
+        List<PingDestination> selected = dispatcher.select(due);
+        Assert.assertEquals(102, selected.size());
+        /* the small tenant does not have to wait for all pings of the big one */
+        int firstSmall = -1;
+        for (int i = 0; i < selected.size(); i++) {
+            if ("small".equals(selected.get(i).getTenantId())) {
+                firstSmall = i;
+                break;
+            }
+        }
+        Assert.assertTrue("First small at " + firstSmall, firstSmall >= 0 && firstSmall <= 1);
+        Assert.assertEquals(0, dispatcher.getWaitingCount());
+    }
+
+    @Test
+    public void testLimits() {
+        TenantDispatcher dispatcher = new TenantDispatcher(10, 4);
+        List<PingDestination> big = destinations("big", 20);
+        List<PingDestination> small = destinations("small", 3);
+        List<PingDestination> due = new ArrayList<>(big);
+        due.addAll(small);
+
+        /* max 4 per cycle */
+        List<PingDestination> selected = dispatcher.select(due);
+        Assert.assertEquals(4 + 3, selected.size());
+        Assert.assertEquals(16, dispatcher.getWaitingCount());
+        Assert.assertEquals(4, dispatcher.getInFlight("big"));
+
+        /* the deferred ones come first and they are not queued twice */
+        selected = dispatcher.select(big.subList(4, 10));
+        Assert.assertEquals(big.subList(4, 8), selected);
+        Assert.assertEquals(8, dispatcher.getInFlight("big"));
+
+        /* max 10 in flight */
+        selected = dispatcher.select(Collections.emptyList());
+        Assert.assertEquals(2, selected.size());
+        Assert.assertTrue(dispatcher.select(Collections.emptyList()).isEmpty());
+
+        for (int i = 0; i < 10; i++) {
+            dispatcher.done(big.get(i));
+        }
+        Assert.assertEquals(4, dispatcher.select(Collections.emptyList()).size());
+
+        Map<String, Integer> deferred = dispatcher.drainDeferredCounts();
+        Assert.assertEquals(Integer.valueOf(16 + 12 + 10 + 10 + 6), deferred.get("big"));
+        Assert.assertNull(deferred.get("small"));
+        Assert.assertTrue(dispatcher.drainDeferredCounts().isEmpty());
+    }
+
+    @Test
+    public void testHostThrottle() {
+        TenantDispatcher dispatcher = new TenantDispatcher(0, 0, new HostThrottle(1, 0));
+        List<PingDestination> due = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            due.add(new PingDestination("t", PingerTestUtils.TEST_ENVIRONMENT_ID, "a" + i,
+                    "http://a.example.com/" + i));
+        }
+        PingDestination b = new PingDestination("t", PingerTestUtils.TEST_ENVIRONMENT_ID, "b", "http://b.example.com/");
+        due.add(b);
+
+        /* the destinations of a host that is at its limit do not block the other hosts */
+        Assert.assertEquals(Arrays.asList(due.get(0), b), dispatcher.select(due));
+        Assert.assertEquals(2, dispatcher.getWaitingCount());
+        Assert.assertTrue(dispatcher.select(Collections.emptyList()).isEmpty());
+
+        dispatcher.done(due.get(0));
+        Assert.assertEquals(Collections.singletonList(due.get(1)), dispatcher.select(Collections.emptyList()));
+        Assert.assertEquals(1, dispatcher.getHostThrottle().getInFlight("a.example.com"));
+        Assert.assertEquals(2, dispatcher.getInFlight("t"));
+    }
+
+    @Test
+    public void testRemove() {
+        TenantDispatcher dispatcher = new TenantDispatcher(0, 1);
+        List<PingDestination> due = destinations("t", 3);
+        Assert.assertEquals(1, dispatcher.select(due).size());
+        dispatcher.remove(due.get(1));
+        Assert.assertEquals(Collections.singletonList(due.get(2)), dispatcher.select(Collections.emptyList()));
+        Assert.assertEquals(0, dispatcher.getWaitingCount());
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+
+import org.apache.http.conn.ssl.SSLContexts;
+import org.apache.http.conn.ssl.TrustStrategy;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class TlsSessionsTest {
+    private static final int HTTP_PORT = Integer.parseInt(System.getProperty(PingerTest.HTTP_PORT_PROPERTY, "8877"));
+    private static final int HTTPS_PORT = Integer
+            .parseInt(System.getProperty(PingerTest.HTTPS_PORT_PROPERTY, "8878"));
+
+    @Rule
+    public WireMockRule testServer = new WireMockRule(WireMockConfiguration.wireMockConfig().port(HTTP_PORT)
+            .httpsPort(HTTPS_PORT));
+
+    private static SSLContext trustAll() throws Exception {
+        return SSLContexts.custom().loadTrustMaterial(null, new TrustStrategy() {
+            @Override
+            public boolean isTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+                return true;
+            }
+        }).build();
+    }
+
+    private static boolean handshake(SSLContext sslContext, TlsSessions tlsSessions) throws Exception {
+        try (SSLSocket socket = (SSLSocket) sslContext.getSocketFactory().createSocket(PingerTest.TEST_HOST,
+                HTTPS_PORT)) {
+            /* resumed TLS 1.3 handshakes cannot be recognized */
+            socket.setEnabledProtocols(new String[] { "TLSv1.2" });
+            socket.startHandshake();
+            return tlsSessions.handshakeCompleted(socket.getSession());
+        }
+    }
+
+    @Test
+    public void testResumption() throws Exception {
+        TlsSessions tlsSessions = new TlsSessions(true, 16, 60);
+        SSLContext sslContext = tlsSessions.configure(trustAll());
+
+        Assert.assertFalse(handshake(sslContext, tlsSessions));
+        Assert.assertTrue(handshake(sslContext, tlsSessions));
+        Assert.assertTrue(handshake(sslContext, tlsSessions));
+
+        Assert.assertEquals(1, tlsSessions.drainFullHandshakeCount());
+        Assert.assertEquals(2, tlsSessions.drainResumedHandshakeCount());
+        Assert.assertEquals(0, tlsSessions.drainFullHandshakeCount());
+        Assert.assertEquals(0, tlsSessions.drainResumedHandshakeCount());
+    }
+
+    @Test
+    public void testNoResumption() throws Exception {
+        TlsSessions tlsSessions = new TlsSessions(false, 16, 60);
+        SSLContext sslContext = tlsSessions.configure(trustAll());
+
+        Assert.assertFalse(handshake(sslContext, tlsSessions));
+        Assert.assertFalse(handshake(sslContext, tlsSessions));
+
+        Assert.assertEquals(2, tlsSessions.drainFullHandshakeCount());
+        Assert.assertEquals(0, tlsSessions.drainResumedHandshakeCount());
+    }
+
+}
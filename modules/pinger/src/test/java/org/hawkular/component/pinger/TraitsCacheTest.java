@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.component.pinger;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="https://github.com/ppalaga">Peter Palaga</a>
+ */
+public class TraitsCacheTest {
+
+    @Test
+    public void testCheckOut() throws Exception {
+        TraitsCache cache = new TraitsCache();
+        PingDestination dest = PingerTestUtils.createTestPingDestination();
+        InetAddress address = InetAddress.getLoopbackAddress();
+        long refreshMillis = TimeUnit.SECONDS.toMillis(PingerConfiguration.getInstance().getTraitsRefreshSeconds());
+
+        Assert.assertTrue(cache.checkOut(dest, new Traits(1000, address, "Apache")));
+        /* same values */
+        Assert.assertFalse(cache.checkOut(dest, new Traits(2000, address, "Apache")));
+        /* changed value */
+        Assert.assertTrue(cache.checkOut(dest, new Traits(3000, address, "nginx")));
+        Assert.assertFalse(cache.checkOut(dest, new Traits(4000, address, "nginx")));
+        /* refresh due */
+        Assert.assertFalse(cache.checkOut(dest, new Traits(3000 + refreshMillis - 1, address, "nginx")));
+        Assert.assertTrue(cache.checkOut(dest, new Traits(3000 + refreshMillis, address, "nginx")));
+
+        cache.invalidate(dest);
+        Assert.assertEquals(0, cache.size());
+        Assert.assertTrue(cache.checkOut(dest, new Traits(3000 + refreshMillis + 1, address, "nginx")));
+    }
+
+}
@@ -140,4 +140,33 @@ public class TraitsTest {
 
 
     }
+
+    @Test
+    public void testClassify() {
+        Assert.assertEquals(Traits.TraitHeader.SERVER, Traits.TraitHeader.classify("Server"));
+        Assert.assertEquals(Traits.TraitHeader.X_POWERED_BY, Traits.TraitHeader.classify("x-POWERED-by"));
+        Assert.assertEquals(Traits.TraitHeader.X_ASPNET_VERSION, Traits.TraitHeader.classify("X-AspNet-Version"));
+        Assert.assertEquals(Traits.TraitHeader.X_VERSION, Traits.TraitHeader.classify("X-Version"));
+        /* same length as X-Powered-By */
+        Assert.assertNull(Traits.TraitHeader.classify("Content-Type"));
+        Assert.assertNull(Traits.TraitHeader.classify("Transfer-Encoding"));
+        Assert.assertNull(Traits.TraitHeader.classify(""));
+        Assert.assertNull(Traits.TraitHeader.classify(null));
+    }
+
+    @Test
+    public void testCollectShared() {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_0, HttpStatus.SC_OK, "OK");
+        response.addHeader("Server", new String("nginx"));
+        response.addHeader("X-Powered-By", "PHP/5.6");
+        Traits first = Traits.collect(response, 0, null);
+
+        response = new BasicHttpResponse(HttpVersion.HTTP_1_0, HttpStatus.SC_OK, "OK");
+        response.addHeader("Server", new String("nginx"));
+        response.addHeader("X-Powered-By", "PHP/5.6");
+        Traits second = Traits.collect(response, 1, null);
+
+        Assert.assertEquals("nginx, PHP/5.6", first.getPoweredBy());
+        Assert.assertSame(first.getPoweredBy(), second.getPoweredBy());
+    }
 }